@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Collections.singletonList;
+import static org.osc.controller.nsfc.TestData.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstack4j.api.Builders;
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.api.networking.NetworkingService;
+import org.openstack4j.api.networking.ext.ServiceFunctionChainService;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.osc.controller.nsfc.api.NeutronSfcSdnRedirectionApi;
+import org.osc.controller.nsfc.entities.FlowClassifierElement;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.RedirectionApiUtils;
+import org.osc.sdk.controller.element.NetworkElement;
+
+/**
+ * Allocation benchmarks of the redirection api hot paths against the in-memory Neutron fakes. Run with the
+ * gc profiler (see the benchmark profile of the pom) and compare gc.alloc.rate.norm, the bytes allocated per
+ * operation, between revisions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedirectionApiAllocationBenchmark {
+
+    @Param({ "10", "1000" })
+    public int portCount;
+
+    private NeutronSfcSdnRedirectionApi redirectionApi;
+    private RedirectionApiUtils utils;
+
+    private String inspectedPortId;
+    private FlowClassifierElement inspectionHook;
+    private NetworkElement serviceFunctionChain;
+
+    @Setup
+    public void setup() {
+        setupDataObjects();
+
+        ServiceFunctionChainService sfcService = Mockito.mock(ServiceFunctionChainService.class);
+        NetworkingService networkingService = Mockito.mock(NetworkingService.class);
+        OSClientV3 osClient = Mockito.mock(OSClientV3.class);
+        Mockito.when(networkingService.port()).thenReturn(portService);
+        Mockito.when(sfcService.portchains()).thenReturn(portChainService);
+        Mockito.when(sfcService.portpairs()).thenReturn(portPairService);
+        Mockito.when(sfcService.portpairgroups()).thenReturn(portPairGroupService);
+        Mockito.when(sfcService.flowclassifiers()).thenReturn(flowClassifierService);
+        Mockito.when(osClient.sfc()).thenReturn(sfcService);
+        Mockito.when(osClient.networking()).thenReturn(networkingService);
+
+        // Workload ports on many subnets, with the router interface of the inspected subnet listed last
+        for (int i = 0; i < this.portCount; i++) {
+            String subnet = "subnet" + i;
+            portService.create(Builders.port().macAddress(String.format("fa:16:3e:00:%02x:%02x", i / 256, i % 256))
+                    .fixedIp("10.1." + i / 256 + "." + i % 256, subnet).build());
+            portService.create(Builders.port().fixedIp("10.2." + i / 256 + "." + i % 256, subnet)
+                    .deviceOwner("network:router_interface").build());
+        }
+        Port inspectedPort = portService.create(Builders.port().macAddress("fa:16:3e:ff:ff:01")
+                .fixedIp("10.3.0.1", "inspectedSubnet").build());
+        portService.create(Builders.port().fixedIp("10.3.0.254", "inspectedSubnet")
+                .deviceOwner("network:router_interface").build());
+        this.inspectedPortId = inspectedPort.getId();
+
+        PortPairGroup portPairGroup = portPairGroupService.create(Builders.portPairGroup()
+                .portPairs(new ArrayList<>()).build());
+        FlowClassifier flowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .logicalDestinationPort(this.inspectedPortId).build());
+        List<String> flowClassifiers = new ArrayList<>();
+        flowClassifiers.add(flowClassifier.getId());
+        PortChain portChain = portChainService.create(Builders.portChain()
+                .portPairGroups(singletonList(portPairGroup.getId()))
+                .flowClassifiers(flowClassifiers).build());
+
+        NetworkElementImpl inspectedPortElement = RedirectionApiUtils.toNetworkElement(inspectedPort, null);
+        ServiceFunctionChainElement sfc = new ServiceFunctionChainElement(portChain.getId());
+        this.inspectionHook = new FlowClassifierElement(flowClassifier.getId(), inspectedPortElement, sfc);
+        this.serviceFunctionChain = sfc;
+
+        this.redirectionApi = new NeutronSfcSdnRedirectionApi(osClient);
+        this.utils = new RedirectionApiUtils(new OsCalls(osClient));
+    }
+
+    @Benchmark
+    public Port fetchDefaultGatewayPort() {
+        return this.utils.fetchDefaultGatewayPort(this.inspectedPortId);
+    }
+
+    @Benchmark
+    public void updateInspectionHookUnchanged() throws Exception {
+        this.redirectionApi.updateInspectionHook(this.inspectionHook);
+    }
+
+    @Benchmark
+    public List<NetworkElement> getNetworkElements() throws Exception {
+        return this.redirectionApi.getNetworkElements(this.serviceFunctionChain);
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.api;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The performance profile of the controller, the component property type of the
+ * {@code org.osc.nsfc.SdnController} configuration. Each property is named after its method with the
+ * underscores replaced by dots, e.g. {@code read.threads}, and defaults to the method default.
+ *
+ * Apart from {@link #journal_dir()}, which only applies to the VCs first used after the change, all of them are
+ * applied to the running component when the configuration is updated.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ControllerConfig {
+
+    long health_probe_interval_seconds() default ControllerDefaults.HEALTH_PROBE_INTERVAL_SECONDS;
+
+    /**
+     * @return the directory of the operation journals, empty to use the bundle data area
+     */
+    String journal_dir() default ControllerDefaults.JOURNAL_DIR;
+
+    int read_threads() default ControllerDefaults.READ_THREADS;
+
+    /**
+     * @return the sustained Neutron requests per second of each VC, zero for no limit
+     */
+    double rate_limit_per_second() default ControllerDefaults.RATE_LIMIT_PER_SECOND;
+
+    /**
+     * @return the Neutron requests of each VC allowed at once after a quiet period, at least one
+     */
+    int rate_limit_burst() default ControllerDefaults.RATE_LIMIT_BURST;
+
+    /**
+     * @return the file to export traces to, empty to log them
+     */
+    String trace_file() default ControllerDefaults.TRACE_FILE;
+
+    long trace_slow_threshold_millis() default ControllerDefaults.TRACE_SLOW_THRESHOLD_MILLIS;
+
+    /**
+     * @return how long a missing resource is remembered, zero to disable the negative cache
+     */
+    long negative_cache_ttl_millis() default ControllerDefaults.NEGATIVE_CACHE_TTL_MILLIS;
+
+    /**
+     * @return how long the port chain view serves its entries, zero to read through to openstack
+     */
+    long chain_view_ttl_millis() default ControllerDefaults.CHAIN_VIEW_TTL_MILLIS;
+
+    /**
+     * @return whether the topology of each VC is loaded when it is warmed up or first used
+     */
+    boolean prefetch_enabled() default ControllerDefaults.PREFETCH_ENABLED;
+
+    /**
+     * @return the interval between the rounds of the staleness sampler, zero or less to disable it
+     */
+    long staleness_sample_interval_millis() default ControllerDefaults.STALENESS_SAMPLE_INTERVAL_MILLIS;
+
+    /**
+     * @return the number of entries of each type verified per round
+     */
+    int staleness_sample_size() default ControllerDefaults.STALENESS_SAMPLE_SIZE;
+
+    /**
+     * @return the fraction of mismatched samples in a window above which the sampled state is invalidated,
+     * between 0 and 1
+     */
+    double staleness_mismatch_threshold() default ControllerDefaults.STALENESS_MISMATCH_THRESHOLD;
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.api;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * The defaults of {@link ControllerConfig}. The constants are the defaults of its methods, and the instance is the
+ * configuration of the component when it is not activated through DS.
+ */
+final class ControllerDefaults implements ControllerConfig {
+
+    static final long HEALTH_PROBE_INTERVAL_SECONDS = 30;
+    static final String JOURNAL_DIR = "";
+    static final int READ_THREADS = 8;
+    static final double RATE_LIMIT_PER_SECOND = 50;
+    static final int RATE_LIMIT_BURST = 100;
+    static final String TRACE_FILE = "";
+    static final long TRACE_SLOW_THRESHOLD_MILLIS = 10000;
+    static final long NEGATIVE_CACHE_TTL_MILLIS = 10000;
+    static final long CHAIN_VIEW_TTL_MILLIS = 30000;
+    static final boolean PREFETCH_ENABLED = false;
+    static final long STALENESS_SAMPLE_INTERVAL_MILLIS = 10000;
+    static final int STALENESS_SAMPLE_SIZE = 5;
+    static final double STALENESS_MISMATCH_THRESHOLD = 0.2;
+
+    static final ControllerConfig CONFIG = new ControllerDefaults();
+
+    private ControllerDefaults() {
+    }
+
+    @Override
+    public Class<? extends Annotation> annotationType() {
+        return ControllerConfig.class;
+    }
+
+    @Override
+    public long health_probe_interval_seconds() {
+        return HEALTH_PROBE_INTERVAL_SECONDS;
+    }
+
+    @Override
+    public String journal_dir() {
+        return JOURNAL_DIR;
+    }
+
+    @Override
+    public int read_threads() {
+        return READ_THREADS;
+    }
+
+    @Override
+    public double rate_limit_per_second() {
+        return RATE_LIMIT_PER_SECOND;
+    }
+
+    @Override
+    public int rate_limit_burst() {
+        return RATE_LIMIT_BURST;
+    }
+
+    @Override
+    public String trace_file() {
+        return TRACE_FILE;
+    }
+
+    @Override
+    public long trace_slow_threshold_millis() {
+        return TRACE_SLOW_THRESHOLD_MILLIS;
+    }
+
+    @Override
+    public long negative_cache_ttl_millis() {
+        return NEGATIVE_CACHE_TTL_MILLIS;
+    }
+
+    @Override
+    public long chain_view_ttl_millis() {
+        return CHAIN_VIEW_TTL_MILLIS;
+    }
+
+    @Override
+    public boolean prefetch_enabled() {
+        return PREFETCH_ENABLED;
+    }
+
+    @Override
+    public long staleness_sample_interval_millis() {
+        return STALENESS_SAMPLE_INTERVAL_MILLIS;
+    }
+
+    @Override
+    public int staleness_sample_size() {
+        return STALENESS_SAMPLE_SIZE;
+    }
+
+    @Override
+    public double staleness_mismatch_threshold() {
+        return STALENESS_MISMATCH_THRESHOLD;
+    }
+}
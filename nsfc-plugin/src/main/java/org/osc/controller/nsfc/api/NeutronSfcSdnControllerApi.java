@@ -16,22 +16,65 @@
  *******************************************************************************/
 package org.osc.controller.nsfc.api;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.osc.sdk.controller.Constants.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-import org.apache.commons.lang.NotImplementedException;
 import org.openstack4j.api.OSClient.OSClientV3;
 import org.openstack4j.api.client.IOSClientBuilder.V3;
 import org.openstack4j.model.common.Identifier;
+import org.openstack4j.model.network.Port;
 import org.openstack4j.openstack.OSFactory;
+import org.osc.controller.nsfc.utils.HealthProbe;
+import org.osc.controller.nsfc.utils.LazyOsClient;
+import org.osc.controller.nsfc.utils.OperationJournal;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.RequestScheduler;
+import org.osc.controller.nsfc.utils.RequestScheduler.Priority;
+import org.osc.controller.nsfc.utils.StalenessSampler;
+import org.osc.controller.nsfc.utils.TopologyChange;
+import org.osc.controller.nsfc.utils.TopologyFeed;
+import org.osc.controller.nsfc.utils.TopologyPrefetcher;
+import org.osc.controller.nsfc.utils.Tracer;
+import org.osc.controller.nsfc.utils.VcContext;
 import org.osc.sdk.controller.FlowInfo;
 import org.osc.sdk.controller.FlowPortInfo;
 import org.osc.sdk.controller.Status;
 import org.osc.sdk.controller.api.SdnControllerApi;
 import org.osc.sdk.controller.api.SdnRedirectionApi;
 import org.osc.sdk.controller.element.VirtualizationConnectorElement;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @Component(configurationPid = "org.osc.nsfc.SdnController",
     property = { PLUGIN_NAME + "=Neutron-sfc",
@@ -39,32 +82,504 @@ import org.osgi.service.component.annotations.Component;
                  SUPPORT_SFC + ":Boolean=false",
                  SUPPORT_FAILURE_POLICY + ":Boolean=false",
                  USE_PROVIDER_CREDS + ":Boolean=true",
-                 QUERY_PORT_INFO + ":Boolean=false",
+                 QUERY_PORT_INFO + ":Boolean=true",
                  SUPPORT_PORT_GROUP + ":Boolean=false",
                  SUPPORT_NEUTRON_SFC + ":Boolean=true"})
 public class NeutronSfcSdnControllerApi implements SdnControllerApi {
 
+    private static final Logger LOG = LoggerFactory.getLogger(NeutronSfcSdnControllerApi.class);
+
     private static final String VERSION = "0.1";
     private static final String NAME = "Neutron-sfc";
 
     private static final String AUTH_URL_LOCAL = "/v3";
     private static final int AUTH_URL_PORT = 5000;
 
+    private static final int READ_QUEUE_CAPACITY = 1024;
+
+    private final ConcurrentMap<String, VcContext> vcContexts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, VcClient> vcClients = new ConcurrentHashMap<>();
+    private final List<Consumer<TopologyChange>> topologyListeners = new CopyOnWriteArrayList<>();
+
+    private volatile HealthProbe healthProbe;
+    private volatile File journalDir;
+    private volatile ThreadPoolExecutor readExecutor;
+    private volatile ExecutorService regionExecutor;
+    private volatile Tracer tracer;
+    private volatile ScheduledExecutorService samplerScheduler;
+    private ScheduledFuture<?> sampling;
+    private volatile ControllerConfig config;
+
     public NeutronSfcSdnControllerApi() {
         // For dependency injection. could be package private?
     }
 
+    @Activate
+    void activate(BundleContext context, ControllerConfig config) {
+        checkConfig(config);
+        this.healthProbe = new HealthProbe(TimeUnit.SECONDS.toMillis(config.health_probe_interval_seconds()));
+        this.journalDir = journalDir(context, config);
+
+        this.readExecutor = createReadExecutor(config.read_threads());
+        // Region work and prefetches block on their own reads, so they must not take threads of the read executor
+        AtomicInteger regionThreads = new AtomicInteger();
+        this.regionExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "nsfc-region-" + regionThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.tracer = new Tracer(config.trace_slow_threshold_millis(), file(config.trace_file()));
+
+        this.samplerScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "nsfc-staleness-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleSampling(config.staleness_sample_interval_millis());
+        this.config = config;
+    }
+
+    /**
+     * Applies a configuration update to the running component. The executors, rate limiters, caches and
+     * probes are adjusted in place, so in-flight operations carry on and the caches keep their content; a
+     * journal directory change only applies to the VCs first used after it.
+     */
+    @Modified
+    synchronized void modified(BundleContext context, ControllerConfig config) {
+        if (this.config == null) {
+            activate(context, config);
+            return;
+        }
+
+        checkConfig(config);
+        LOG.info("Applying the updated controller configuration");
+
+        this.healthProbe.setIntervalMillis(TimeUnit.SECONDS.toMillis(config.health_probe_interval_seconds()));
+        this.journalDir = journalDir(context, config);
+        resizeReadExecutor(config.read_threads());
+
+        this.tracer.setSlowThresholdMillis(config.trace_slow_threshold_millis());
+        this.tracer.setExportFile(file(config.trace_file()));
+
+        if (config.staleness_sample_interval_millis() != this.config.staleness_sample_interval_millis()) {
+            scheduleSampling(config.staleness_sample_interval_millis());
+        }
+
+        this.config = config;
+        for (VcContext vcContext : this.vcContexts.values()) {
+            applyConfig(vcContext, config);
+        }
+    }
+
+    @Deactivate
+    void deactivate() {
+        if (this.healthProbe != null) {
+            this.healthProbe.close();
+        }
+        this.vcContexts.values().forEach(VcContext::close);
+        this.vcContexts.clear();
+        this.vcClients.clear();
+        if (this.readExecutor != null) {
+            this.readExecutor.shutdown();
+        }
+        if (this.regionExecutor != null) {
+            this.regionExecutor.shutdown();
+        }
+        if (this.tracer != null) {
+            this.tracer.close();
+        }
+        if (this.samplerScheduler != null) {
+            this.samplerScheduler.shutdownNow();
+        }
+    }
+
     @Override
     public Status getStatus(VirtualizationConnectorElement vc, String region) throws Exception {
-        return new Status(NAME, VERSION, true);
+        HealthProbe.Result result = getHealth(vc, region);
+
+        if (!result.isHealthy()) {
+            LOG.warn("SDN controller for VC {} region {} is not healthy: {}", vc.getName(), region, result);
+        }
+
+        return new Status(NAME, VERSION, result.isHealthy());
+    }
+
+    /**
+     * @return the latest cached Keystone and Neutron SFC reachability and latency for the VC and region
+     */
+    public HealthProbe.Result getHealth(VirtualizationConnectorElement vc, String region) {
+        checkVc(vc);
+
+        return healthProbe().getResult(vc.getName() + "/" + region, () -> authenticate(vc, region));
+    }
+
+    /**
+     * @return the request rate limiter of the VC in its default region, with its queue depth and wait time
+     * per priority
+     */
+    public RequestScheduler getRequestScheduler(VirtualizationConnectorElement vc) {
+        return getRequestScheduler(vc, null);
+    }
+
+    /**
+     * @return the request rate limiter of the VC in the region, with its queue depth and wait time per priority
+     */
+    public RequestScheduler getRequestScheduler(VirtualizationConnectorElement vc, String region) {
+        checkVc(vc);
+
+        return getVcContext(vc, region).getRequestScheduler();
+    }
+
+    /**
+     * @return the verification of the local topology state of the VC in the region against openstack, with the
+     * age of the sampled state and the mismatches found
+     */
+    public StalenessSampler getStalenessSampler(VirtualizationConnectorElement vc, String region) {
+        checkVc(vc);
+
+        return getVcContext(vc, region).getStalenessSampler();
     }
 
     @Override
     public SdnRedirectionApi createRedirectionApi(VirtualizationConnectorElement vc, String region) {
+        checkVc(vc);
+
+        VcContext vcContext = getVcContext(vc, region);
+        LazyOsClient osClient = getClient(vc, region);
+        NeutronSfcSdnRedirectionApi redirectionApi = new NeutronSfcSdnRedirectionApi(osClient, vcContext,
+                Priority.INTERACTIVE);
+        // Verifies with the latest client of the VC, whose credentials may have changed
+        vcContext.getStalenessSampler().setOsCalls(
+                new OsCalls(osClient, vcContext).withReadPriority(Priority.BACKGROUND));
+
+        if (vcContext.claimJournalRecovery()) {
+            try {
+                new NeutronSfcSdnRedirectionApi(osClient, vcContext, Priority.BACKGROUND).recoverUnfinishedOperations();
+            } catch (IOException e) {
+                LOG.error("Failed to read the operation journal of VC {} region {}", vc.getName(), region, e);
+            }
+        }
+
+        if (this.config.prefetch_enabled() && vcContext.claimPrefetch()) {
+            prefetch(vc, osClient, vcContext);
+        }
+
+        return redirectionApi;
+    }
+
+    /**
+     * Runs the work against the redirection api of each region concurrently, for reads and reconciliation
+     * spanning the regions of a VC. Each region has its own client, caches and rate limit.
+     *
+     * @return the outcome of the work in each region, by region
+     */
+    public <T> Map<String, CompletableFuture<T>> runInRegions(VirtualizationConnectorElement vc,
+            Collection<String> regions, RegionWork<T> work) {
+        checkVc(vc);
+        ensureActivated();
+
+        Map<String, CompletableFuture<T>> results = new LinkedHashMap<>();
+        for (String region : regions) {
+            SdnRedirectionApi redirectionApi = createRedirectionApi(vc, region);
+            results.put(region, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return work.run(redirectionApi);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, this.regionExecutor));
+        }
+        return results;
+    }
+
+    /**
+     * @return the feed of the changes to the SFC objects of the VC in the region, to catch up with the changes
+     * since a known sequence number
+     */
+    public TopologyFeed getTopologyFeed(VirtualizationConnectorElement vc, String region) {
+        checkVc(vc);
+
+        return getVcContext(vc, region).getTopologyFeed();
+    }
+
+    /**
+     * Subscribes to the changes of every VC and region, in sequence order per VC and region. The changes are
+     * also posted to Event Admin when it is available, see {@link TopologyEventPublisher}.
+     */
+    public void addTopologyListener(Consumer<TopologyChange> listener) {
+        this.topologyListeners.add(listener);
+    }
+
+    public void removeTopologyListener(Consumer<TopologyChange> listener) {
+        this.topologyListeners.remove(listener);
+    }
+
+    /**
+     * Authenticates the given VCs concurrently, so that the first requests against each of them do not wait
+     * for Keystone. Failures are logged and leave the VC to authenticate on its first request.
+     *
+     * When {@link ControllerConfig#prefetch_enabled()} is set, the topology of each VC is also prefetched once
+     * it is authenticated, see {@link TopologyPrefetcher}; the VCs are prefetched concurrently too.
+     *
+     * @return completes once every VC has been tried
+     */
+    public CompletableFuture<Void> warmUp(Collection<? extends VirtualizationConnectorElement> vcs) {
+        ensureActivated();
+        List<CompletableFuture<Void>> authentications = new ArrayList<>(vcs.size());
+        for (VirtualizationConnectorElement vc : vcs) {
+            checkVc(vc);
+            LazyOsClient osClient = getClient(vc);
+            CompletableFuture<Void> authentication = CompletableFuture.runAsync(osClient::authenticate,
+                    this.readExecutor).exceptionally(e -> {
+                        LOG.warn("Failed to authenticate VC {} during warm-up", vc.getName(), e);
+                        return null;
+                    });
+
+            if (this.config.prefetch_enabled()) {
+                VcContext vcContext = getVcContext(vc, null);
+                authentication = authentication.thenCompose(
+                        v -> osClient.isAuthenticated() && vcContext.claimPrefetch() ? prefetch(vc, osClient, vcContext)
+                                : CompletableFuture.completedFuture(null));
+            }
+
+            authentications.add(authentication);
+        }
+        return CompletableFuture.allOf(authentications.toArray(new CompletableFuture<?>[0]));
+    }
+
+    @Override
+    public HashMap<String, FlowPortInfo> queryPortInfo(VirtualizationConnectorElement vc, String region,
+            HashMap<String, FlowInfo> portsQuery) throws Exception {
+        checkVc(vc);
+        HashMap<String, FlowPortInfo> retVal = new HashMap<>();
+
+        if (portsQuery == null || portsQuery.isEmpty()) {
+            return retVal;
+        }
+
+        Set<String> ipAddresses = new HashSet<>();
+        for (FlowInfo flow : portsQuery.values()) {
+            if (flow.sourceIpAddress != null) {
+                ipAddresses.add(flow.sourceIpAddress);
+            }
+            if (flow.destinationIpAddress != null) {
+                ipAddresses.add(flow.destinationIpAddress);
+            }
+        }
+
+        VcContext vcContext = getVcContext(vc, region);
+        OsCalls osCalls = new OsCalls(getClient(vc, region), vcContext);
+        Map<String, Port> portsByIp = vcContext.getPortAddressIndex().getPortsByIp(ipAddresses, osCalls);
+
+        for (Map.Entry<String, FlowInfo> entry : portsQuery.entrySet()) {
+            FlowInfo flow = entry.getValue();
+            Port sourcePort = flow.sourceIpAddress != null ? portsByIp.get(flow.sourceIpAddress) : null;
+            Port destinationPort = flow.destinationIpAddress != null ? portsByIp.get(flow.destinationIpAddress) : null;
+
+            FlowPortInfo flowPortInfo = new FlowPortInfo();
+            flowPortInfo.requestId = entry.getKey();
+            flowPortInfo.flow = flow;
+            flowPortInfo.sourceMacAddress = sourcePort != null ? sourcePort.getMacAddress() : null;
+            flowPortInfo.destinationMacAddress = destinationPort != null ? destinationPort.getMacAddress() : null;
+            retVal.put(entry.getKey(), flowPortInfo);
+        }
+
+        return retVal;
+    }
+
+    @Override
+    public void close() throws Exception {
+        //no-op
+    }
+
+    private HealthProbe healthProbe() {
+        ensureActivated();
+        return this.healthProbe;
+    }
+
+    private synchronized void ensureActivated() {
+        if (this.config == null) {
+            // Not activated through DS
+            activate(null, ControllerDefaults.CONFIG);
+        }
+    }
+
+    /**
+     * @return the lazily authenticated client of the VC, shared by its redirection apis until its
+     * credentials change
+     */
+    private LazyOsClient getClient(VirtualizationConnectorElement vc) {
+        return getVcClient(vc).osClient;
+    }
+
+    /**
+     * @return the client of the VC for the region, sharing the token of the VC
+     */
+    private LazyOsClient getClient(VirtualizationConnectorElement vc, String region) {
+        if (region == null || region.isEmpty()) {
+            return getClient(vc);
+        }
+        VcClient vcClient = getVcClient(vc);
+        return vcClient.regionClients.computeIfAbsent(region, vcClient.osClient::forRegion);
+    }
+
+    private VcClient getVcClient(VirtualizationConnectorElement vc) {
+        List<String> credentials = Arrays.asList(vc.getProviderIpAddress(), vc.getProviderAdminDomainId(),
+                vc.getProviderUsername(), vc.getProviderPassword(), vc.getProviderAdminTenantName());
+        return this.vcClients.compute(vc.getName(), (name, current) -> current != null
+                && current.credentials.equals(credentials) ? current
+                        : new VcClient(credentials, new LazyOsClient(() -> authenticate(vc, null))));
+    }
+
+    /**
+     * Neutron objects, and so the caches, indexes and journal of a context, belong to one region.
+     */
+    VcContext getVcContext(VirtualizationConnectorElement vc, String region) {
+        String key = region == null || region.isEmpty() ? vc.getName() : vc.getName() + "@" + region;
+        return this.vcContexts.computeIfAbsent(key, this::createVcContext);
+    }
+
+    private VcContext createVcContext(String vcName) {
+        ensureActivated();
+        ControllerConfig config = this.config;
+        RequestScheduler requestScheduler = new RequestScheduler(config.rate_limit_per_second(),
+                config.rate_limit_burst());
+        TopologyFeed topologyFeed = new TopologyFeed(vcName);
+        topologyFeed.addListener(this::publishTopologyChange);
+
+        OperationJournal journal = OperationJournal.disabled();
+        File dir = this.journalDir;
+        if (dir != null) {
+            File journalFile = new File(dir, vcName.replaceAll("[^A-Za-z0-9._-]", "_") + ".journal");
+            try {
+                journal = new OperationJournal(journalFile);
+            } catch (IOException e) {
+                LOG.error("Cannot open operation journal {}, continuing without it", journalFile, e);
+            }
+        }
+
+        VcContext vcContext = new VcContext(journal, this.readExecutor, requestScheduler, this.tracer, topologyFeed);
+        applyConfig(vcContext, config);
+        return vcContext;
+    }
+
+    /**
+     * Prefetches in the background with the lowest priority, so operations started meanwhile are not delayed.
+     * The prefetch waits on its own reads, so it must not take threads of the read executor.
+     */
+    private CompletableFuture<Void> prefetch(VirtualizationConnectorElement vc, LazyOsClient osClient,
+            VcContext vcContext) {
+        OsCalls osCalls = new OsCalls(osClient, vcContext).withReadPriority(Priority.BACKGROUND);
+        return CompletableFuture.runAsync(() -> new TopologyPrefetcher(vcContext).prefetch(osCalls),
+                this.regionExecutor).exceptionally(e -> {
+                    LOG.warn("Failed to prefetch the topology of VC {}", vc.getName(), e);
+                    return null;
+                });
+    }
+
+    private static File journalDir(BundleContext context, ControllerConfig config) {
+        File journalDir = file(config.journal_dir());
+        if (journalDir != null) {
+            return journalDir;
+        }
+        // null if not running in a framework, or if the framework has no file system support
+        return context != null ? context.getDataFile("journal") : null;
+    }
+
+    private static void applyConfig(VcContext vcContext, ControllerConfig config) {
+        vcContext.getRequestScheduler().setRate(config.rate_limit_per_second(), config.rate_limit_burst());
+        vcContext.getNegativeCache().setTtlMillis(config.negative_cache_ttl_millis());
+        vcContext.getPortChainView().setTtlMillis(config.chain_view_ttl_millis());
+        vcContext.getStalenessSampler().setSampleSize(config.staleness_sample_size());
+        vcContext.getStalenessSampler().setMismatchThreshold(config.staleness_mismatch_threshold());
+    }
+
+    private static void checkConfig(ControllerConfig config) {
+        checkArgument(config.health_probe_interval_seconds() > 0, "health.probe.interval.seconds must be positive: %s",
+                config.health_probe_interval_seconds());
+        checkArgument(config.read_threads() > 0, "read.threads must be positive: %s", config.read_threads());
+        checkArgument(config.rate_limit_per_second() >= 0 && !Double.isInfinite(config.rate_limit_per_second()),
+                "rate.limit.per.second must be zero or positive: %s", config.rate_limit_per_second());
+        checkArgument(config.rate_limit_burst() > 0, "rate.limit.burst must be positive: %s",
+                config.rate_limit_burst());
+        checkArgument(config.negative_cache_ttl_millis() >= 0, "negative.cache.ttl.millis must be zero or positive: %s",
+                config.negative_cache_ttl_millis());
+        checkArgument(config.chain_view_ttl_millis() >= 0, "chain.view.ttl.millis must be zero or positive: %s",
+                config.chain_view_ttl_millis());
+        checkArgument(config.staleness_mismatch_threshold() >= 0 && config.staleness_mismatch_threshold() <= 1,
+                "staleness.mismatch.threshold must be between 0 and 1: %s", config.staleness_mismatch_threshold());
+    }
+
+    /**
+     * @return the file of a path property, or null if it is empty
+     */
+    private static File file(String path) {
+        return path.trim().isEmpty() ? null : new File(path.trim());
+    }
+
+    /**
+     * Runs a round of the staleness sampler of every VC at the interval, replacing the previous schedule.
+     */
+    private synchronized void scheduleSampling(long intervalMillis) {
+        if (this.sampling != null) {
+            this.sampling.cancel(false);
+            this.sampling = null;
+        }
+        if (intervalMillis > 0) {
+            this.sampling = this.samplerScheduler.scheduleWithFixedDelay(() -> {
+                for (VcContext vcContext : this.vcContexts.values()) {
+                    vcContext.getStalenessSampler().sample();
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Queued and running reads are kept. Extra threads are started as reads arrive; surplus threads finish
+     * their current read and then time out.
+     */
+    private void resizeReadExecutor(int threads) {
+        ThreadPoolExecutor executor = this.readExecutor;
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else if (threads < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    private void publishTopologyChange(TopologyChange change) {
+        for (Consumer<TopologyChange> listener : this.topologyListeners) {
+            listener.accept(change);
+        }
+    }
+
+    /**
+     * Bounded in threads and queued tasks; when both are full the caller runs the read itself.
+     */
+    private static ThreadPoolExecutor createReadExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(READ_QUEUE_CAPACITY), r -> {
+                    Thread thread = new Thread(r, "nsfc-read-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void checkVc(VirtualizationConnectorElement vc) {
         if (vc == null || vc.getName() == null || vc.getName().length() == 0) {
             throw new IllegalArgumentException("Non-null VC with non-empty name required!");
         }
+    }
 
+    private static OSClientV3 authenticate(VirtualizationConnectorElement vc, String region) {
         String domain = vc.getProviderAdminDomainId();
         String username = vc.getProviderUsername();
         String password = vc.getProviderPassword();
@@ -76,22 +591,31 @@ public class NeutronSfcSdnControllerApi implements SdnControllerApi {
                 .scopeToProject(Identifier.byName(tenantName), Identifier.byName(domain));
 
         OSClientV3 osClient = v3.authenticate();
-
-        return new NeutronSfcSdnRedirectionApi(osClient);
+        if (region != null && !region.isEmpty()) {
+            osClient.useRegion(region);
+        }
+        return osClient;
     }
 
-    @Override
-    public HashMap<String, FlowPortInfo> queryPortInfo(VirtualizationConnectorElement vc, String region,
-            HashMap<String, FlowInfo> portsQuery) throws Exception {
-        throw new NotImplementedException("Neutron SFC SDN Controller does not support flow based query");
+    private static String authUrl(String ip) {
+        return "http://" + ip + ":" + AUTH_URL_PORT + AUTH_URL_LOCAL;
     }
 
-    @Override
-    public void close() throws Exception {
-        //no-op
+    /**
+     * Work run against one region by {@link NeutronSfcSdnControllerApi#runInRegions}.
+     */
+    public interface RegionWork<T> {
+        T run(SdnRedirectionApi redirectionApi) throws Exception;
     }
 
-    private static String authUrl(String ip) {
-        return "http://" + ip + ":" + AUTH_URL_PORT + AUTH_URL_LOCAL;
+    private static final class VcClient {
+        private final List<String> credentials;
+        private final LazyOsClient osClient;
+        private final ConcurrentMap<String, LazyOsClient> regionClients = new ConcurrentHashMap<>();
+
+        VcClient(List<String> credentials, LazyOsClient osClient) {
+            this.credentials = credentials;
+            this.osClient = osClient;
+        }
     }
 }
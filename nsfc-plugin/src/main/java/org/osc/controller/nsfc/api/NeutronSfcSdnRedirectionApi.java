@@ -19,19 +19,40 @@ package org.osc.controller.nsfc.api;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static java.util.stream.Collectors.toList;
 import static org.osc.controller.nsfc.utils.ArgumentCheckUtil.throwExceptionIfNullOrEmptyNetworkElementList;
+import static org.osc.controller.nsfc.utils.FilteredListings.NAME;
 
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Set;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.openstack4j.api.Builders;
 import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.model.common.Resource;
+import org.openstack4j.model.network.IP;
 import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
@@ -42,8 +63,25 @@ import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.entities.PortPairElement;
 import org.osc.controller.nsfc.entities.PortPairGroupElement;
 import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.exceptions.SdnControllerResponseNsfcException;
+import org.osc.controller.nsfc.utils.AggregateHookIndex;
+import org.osc.controller.nsfc.utils.CidrBlocks;
+import org.osc.controller.nsfc.utils.DevicePortIndex;
+import org.osc.controller.nsfc.utils.GatewayPortIndex;
+import org.osc.controller.nsfc.utils.InspectionHookIndex;
+import org.osc.controller.nsfc.utils.LazyOsClient;
+import org.osc.controller.nsfc.utils.NameIndex;
+import org.osc.controller.nsfc.utils.OperationGraph;
+import org.osc.controller.nsfc.utils.OperationJournal;
+import org.osc.controller.nsfc.utils.OperationJournal.PendingOperation;
 import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.PortChainView;
 import org.osc.controller.nsfc.utils.RedirectionApiUtils;
+import org.osc.controller.nsfc.utils.RequestScheduler.Priority;
+import org.osc.controller.nsfc.utils.ResourceNames;
+import org.osc.controller.nsfc.utils.Span;
+import org.osc.controller.nsfc.utils.Tracer;
+import org.osc.controller.nsfc.utils.VcContext;
 import org.osc.sdk.controller.FailurePolicyType;
 import org.osc.sdk.controller.TagEncapsulationType;
 import org.osc.sdk.controller.api.SdnRedirectionApi;
@@ -62,36 +100,159 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
     private static final String CHAIN_PARAM_SYMMETRIC_TRAFFIC_FLOW = "symmetric";
     private static final String SYMMETRIC_CHAIN_ENABLED = "true";
 
+    // Journaled operations and their steps
+    private static final String OP_REGISTER_INSPECTION_PORT = "registerInspectionPort";
+    private static final String OP_REMOVE_INSPECTION_PORT = "removeInspectionPort";
+    private static final String OP_REMOVE_INSPECTION_PORTS = "removeInspectionPorts";
+    private static final String OP_INSTALL_INSPECTION_HOOK = "installInspectionHook";
+    private static final String OP_UPDATE_NETWORK_ELEMENT = "updateNetworkElement";
+    private static final String OP_AGGREGATE_INSPECTION_HOOKS = "aggregateInspectionHooks";
+
+    private static final String STEP_PORT_PAIR_CREATED = "portPairCreated";
+    private static final String STEP_PORT_PAIR_GROUP_CREATED = "portPairGroupCreated";
+    private static final String STEP_PORT_PAIR_GROUP_UPDATED = "portPairGroupUpdated";
+    private static final String STEP_FLOW_CLASSIFIER_CREATED = "flowClassifierCreated";
+    private static final String STEP_FLOW_CLASSIFIERS_CREATED = "flowClassifiersCreated";
+    private static final String STEP_PORT_CHAIN_CLEARED = "portChainCleared";
+    private static final String STEP_PORT_CHAIN_UPDATED = "portChainUpdated";
+
     private RedirectionApiUtils utils;
     private OsCalls osCalls;
+    private InspectionHookIndex hookIndex;
+    private AggregateHookIndex aggregateHookIndex;
+    private DevicePortIndex devicePortIndex;
+    private GatewayPortIndex gatewayPortIndex;
+    private OperationJournal journal;
+    private NameIndex nameIndex;
+    private PortChainView portChainView;
+    private Tracer tracer;
+    private Executor executor;
 
     public NeutronSfcSdnRedirectionApi() {
     }
 
     public NeutronSfcSdnRedirectionApi(OSClientV3 osClient) {
-        this.osCalls = new OsCalls(osClient);
-        this.utils = new RedirectionApiUtils(this.osCalls);
+        this(osClient, new VcContext());
+    }
+
+    public NeutronSfcSdnRedirectionApi(OSClientV3 osClient, VcContext vcContext) {
+        this(osClient, vcContext, Priority.INTERACTIVE);
+    }
+
+    /**
+     * @param readPriority the priority of the reads of this instance against the rate limit of the VC
+     */
+    public NeutronSfcSdnRedirectionApi(OSClientV3 osClient, VcContext vcContext, Priority readPriority) {
+        this(() -> osClient, vcContext, readPriority);
+    }
+
+    /**
+     * @param osClient supplies the client when the first request is made, see {@link LazyOsClient}
+     * @param readPriority the priority of the reads of this instance against the rate limit of the VC
+     */
+    public NeutronSfcSdnRedirectionApi(Supplier<OSClientV3> osClient, VcContext vcContext, Priority readPriority) {
+        this.osCalls = new OsCalls(osClient, vcContext).withReadPriority(readPriority);
+        this.gatewayPortIndex = vcContext.getGatewayPortIndex();
+        this.utils = new RedirectionApiUtils(this.osCalls, this.gatewayPortIndex);
+        this.hookIndex = vcContext.getInspectionHookIndex();
+        this.aggregateHookIndex = vcContext.getAggregateHookIndex();
+        this.devicePortIndex = vcContext.getDevicePortIndex();
+        this.journal = vcContext.getJournal();
+        this.nameIndex = vcContext.getNameIndex();
+        this.portChainView = vcContext.getPortChainView();
+        this.tracer = vcContext.getTracer();
+        this.executor = vcContext.getReadExecutor();
     }
 
     // Inspection port methods
     @Override
     public InspectionPortElement getInspectionPort(InspectionPortElement inspectionPort) throws Exception {
-        if (inspectionPort == null) {
-            LOG.warn("Attempt to find null InspectionPort");
+        try (Span span = this.tracer.start("getInspectionPort")) {
+            if (inspectionPort == null) {
+                LOG.warn("Attempt to find null InspectionPort");
+                return null;
+            }
+
+            PortPair portPair = this.utils.fetchPortPairForInspectionPort(inspectionPort);
+
+            if (portPair != null) {
+                NetworkElement ingress = inspectionPort.getIngressPort();
+                NetworkElement egress = inspectionPort.getEgressPort();
+                NetworkElementImpl ingressElement = null;
+                NetworkElementImpl egressElement = null;
+
+                if (ingress != null) {
+                    ingressElement = new NetworkElementImpl(ingress.getElementId(), ingress.getMacAddresses(),
+                            ingress.getPortIPs(), ingress.getParentId());
+                }
+
+                if (egress != null) {
+                    egressElement = new NetworkElementImpl(egress.getElementId(), egress.getMacAddresses(),
+                            egress.getPortIPs(), egress.getParentId());
+                }
+
+                // only id is ever used
+                return new PortPairElement(portPair.getId(), null, ingressElement, egressElement);
+            }
+
             return null;
         }
+    }
 
-        PortPair portPair = this.utils.fetchPortPairForInspectionPort(inspectionPort);
-
-        if (portPair != null) {
+    @Override
+    public Element registerInspectionPort(InspectionPortElement inspectionPort) throws Exception {
+        try (Span span = this.tracer.start("registerInspectionPort")) {
+            if (inspectionPort == null) {
+                throw new IllegalArgumentException("Attempt to register null InspectionPort");
+            }
+            PortPairGroup portPairGroup = null;
+            String inspectionPortPairGroupId = inspectionPort.getParentId();
             NetworkElement ingress = inspectionPort.getIngressPort();
             NetworkElement egress = inspectionPort.getEgressPort();
+
+            // The group and the existing pair are looked up concurrently
+            OperationGraph graph = newGraph();
+            OperationGraph.Step<PortPairGroup> groupStep = graph.step(calls -> inspectionPort.getParentId() != null
+                    ? calls.getPortPairGroup(inspectionPort.getParentId()) : null);
+            OperationGraph.Step<PortPair> portPairStep = graph.step(
+                    calls -> fetchPortPairByNetworkElements(calls, ingress, egress));
+
+            if (inspectionPortPairGroupId != null) {
+                portPairGroup = groupStep.get();
+                checkArgument(portPairGroup != null,
+                        "Cannot find %s by id: %s!", "Port Pair Group", inspectionPortPairGroupId);
+            }
+
+            PortPair portPair = portPairStep.get();
+
+            try (OperationJournal.Operation op = this.journal.begin(OP_REGISTER_INSPECTION_PORT,
+                    elementId(ingress), elementId(egress), inspectionPortPairGroupId)) {
+                if (portPair == null) {
+                    portPair = createPortPair(this.osCalls, ingress, egress);
+                    op.step(STEP_PORT_PAIR_CREATED, portPair.getId());
+                }
+
+                if (portPairGroup == null) {
+                    portPairGroup = createPortPairGroup(this.osCalls, Collections.singletonList(portPair.getId()));
+                    inspectionPortPairGroupId = portPairGroup.getId();
+                    op.step(STEP_PORT_PAIR_GROUP_CREATED, inspectionPortPairGroupId);
+                } else {
+
+                    if (!portPairGroup.getPortPairs().contains(portPair.getId())) {
+                        portPairGroup.getPortPairs().add(portPair.getId());
+                    }
+
+                    this.osCalls.updatePortPairGroup(portPairGroup.getId(), portPairGroup);
+                    op.step(STEP_PORT_PAIR_GROUP_UPDATED, portPairGroup.getId());
+                }
+            }
+
             NetworkElementImpl ingressElement = null;
             NetworkElementImpl egressElement = null;
 
             if (ingress != null) {
                 ingressElement = new NetworkElementImpl(ingress.getElementId(), ingress.getMacAddresses(),
-                        ingress.getPortIPs(), ingress.getParentId());
+                                                         ingress.getPortIPs(), ingress.getParentId());
             }
 
             if (egress != null) {
@@ -99,119 +260,144 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
                         egress.getPortIPs(), egress.getParentId());
             }
 
-            // only id is ever used
-            return new PortPairElement(portPair.getId(), null, ingressElement, egressElement);
+            // Only parent id of the return value is ever used
+            PortPairGroupElement ppgElement = new PortPairGroupElement(inspectionPortPairGroupId);
+            PortPairElement retVal = new PortPairElement(portPair.getId(), ppgElement, ingressElement, egressElement);
+            ppgElement.getPortPairs().add(retVal);
+            return retVal;
         }
-
-        return null;
     }
 
     @Override
-    public Element registerInspectionPort(InspectionPortElement inspectionPort) throws Exception {
-        if (inspectionPort == null) {
-            throw new IllegalArgumentException("Attempt to register null InspectionPort");
-        }
-        PortPairGroup portPairGroup = null;
-        String inspectionPortPairGroupId = inspectionPort.getParentId();
-
-        if (inspectionPortPairGroupId != null) {
-            portPairGroup = this.osCalls.getPortPairGroup(inspectionPortPairGroupId);
-            checkArgument(portPairGroup != null,
-                    "Cannot find %s by id: %s!", "Port Pair Group", inspectionPortPairGroupId);
-        }
+    public void removeInspectionPort(InspectionPortElement inspectionPort)
+            throws NetworkPortNotFoundException, Exception {
+        try (Span span = this.tracer.start("removeInspectionPort")) {
+            if (inspectionPort == null) {
+                LOG.warn("Attempt to remove a null Inspection Port");
+                return;
+            }
 
-        NetworkElement ingress = inspectionPort.getIngressPort();
-        NetworkElement egress = inspectionPort.getEgressPort();
-        PortPair portPair = this.utils.fetchPortPairByNetworkElements(ingress, egress);
+            PortPair portPair = this.utils.fetchPortPairForInspectionPort(inspectionPort);
 
-        if (portPair == null) {
-            portPair = Builders.portPair().egressId(egress.getElementId())
-                            .ingressId(ingress.getElementId())
-                            .name("OSCPortPair-" + UUID.randomUUID().toString().substring(0, 8))
-                            .description("Port Pair created by OSC")
-                            .build();
-            portPair = this.osCalls.createPortPair(portPair);
-            checkArgument(portPair != null, "Failed to create port pair for ingress %s, egress %s!",
-                          ingress.getElementId(), egress.getElementId());
+            if (portPair != null) {
+                try (OperationJournal.Operation op = this.journal.begin(OP_REMOVE_INSPECTION_PORT, portPair.getId(),
+                        elementId(inspectionPort.getIngressPort()), elementId(inspectionPort.getEgressPort()))) {
+                    removePortPair(portPair);
+                }
+            } else {
+                LOG.warn("Attempt to remove nonexistent Port Pair for ingress {} and egress {}",
+                        inspectionPort.getIngressPort(), inspectionPort.getEgressPort());
+            }
         }
+    }
 
-        if (portPairGroup == null) {
-            portPairGroup = Builders.portPairGroup()
-                    .description("Port Pair Group created by OSC")
-                    .name("OSCPortPairGroup-" + UUID.randomUUID().toString().substring(0, 8))
-                    .portPairs(new ArrayList<>())
-                    .build();
-            portPairGroup.getPortPairs().add(portPair.getId());
-            portPairGroup = this.osCalls.createPortPairGroup(portPairGroup);
-            inspectionPortPairGroupId = portPairGroup.getId();
-        } else {
-
-            if (!portPairGroup.getPortPairs().contains(portPair.getId())) {
-                portPairGroup.getPortPairs().add(portPair.getId());
+    /**
+     * Removes many inspection ports at once. The affected port pair groups and port chains are read with one
+     * listing each and get a single membership update each, whatever the number of removed pairs they hold.
+     * The requests of each stage run concurrently: group and chain updates first, then the deletes of the
+     * emptied groups, then the deletes of the port pairs.
+     */
+    public void removeInspectionPorts(Collection<? extends InspectionPortElement> inspectionPorts) throws Exception {
+        try (Span span = this.tracer.start("removeInspectionPorts")) {
+            checkArgument(inspectionPorts != null, "null passed for %s !", "Inspection Port list");
+
+            Set<String> portPairIds = new LinkedHashSet<>();
+            List<PortPair> portPairs = supplyAll(inspectionPorts,
+                    inspectionPort -> calls -> utils(calls).fetchPortPairForInspectionPort(inspectionPort));
+            for (PortPair portPair : portPairs) {
+                if (portPair != null) {
+                    portPairIds.add(portPair.getId());
+                }
+            }
+            if (portPairIds.size() < inspectionPorts.size()) {
+                LOG.warn("Attempt to remove nonexistent Port Pairs: found {} of {} Inspection Ports",
+                        portPairIds.size(), inspectionPorts.size());
+            }
+            if (portPairIds.isEmpty()) {
+                return;
             }
 
-            this.osCalls.updatePortPairGroup(portPairGroup.getId(), portPairGroup);
+            try (OperationJournal.Operation op = this.journal.begin(OP_REMOVE_INSPECTION_PORTS,
+                    portPairIds.toArray(new String[portPairIds.size()]))) {
+                removePortPairs(portPairIds);
+            }
         }
+    }
 
-        NetworkElementImpl ingressElement = null;
-        NetworkElementImpl egressElement = null;
-
-        if (ingress != null) {
-            ingressElement = new NetworkElementImpl(ingress.getElementId(), ingress.getMacAddresses(),
-                                                     ingress.getPortIPs(), ingress.getParentId());
+    private void removePortPairs(Set<String> portPairIds) {
+        Map<String, List<String>> remainingPairsByGroup = new LinkedHashMap<>();
+        Set<String> emptiedGroupIds = new HashSet<>();
+        for (PortPairGroup portPairGroup : this.osCalls.listPortPairGroups()) {
+            List<String> remaining = new ArrayList<>(portPairGroup.getPortPairs());
+            if (remaining.removeAll(portPairIds)) {
+                if (remaining.isEmpty()) {
+                    emptiedGroupIds.add(portPairGroup.getId());
+                } else {
+                    remainingPairsByGroup.put(portPairGroup.getId(), remaining);
+                }
+            }
         }
 
-        if (egress != null) {
-            egressElement = new NetworkElementImpl(egress.getElementId(), egress.getMacAddresses(),
-                    egress.getPortIPs(), egress.getParentId());
+        Map<String, List<String>> remainingGroupsByChain = new LinkedHashMap<>();
+        if (!emptiedGroupIds.isEmpty()) {
+            for (PortChain portChain : this.osCalls.listPortChains()) {
+                List<String> remaining = new ArrayList<>(portChain.getPortPairGroups());
+                if (remaining.removeAll(emptiedGroupIds)) {
+                    // service function chain with with no port pair should be allowed to exist?
+                    remainingGroupsByChain.put(portChain.getId(), remaining);
+                }
+            }
         }
 
-        // Only parent id of the return value is ever used
-        PortPairGroupElement ppgElement = new PortPairGroupElement(inspectionPortPairGroupId);
-        PortPairElement retVal = new PortPairElement(portPair.getId(), ppgElement, ingressElement, egressElement);
-        ppgElement.getPortPairs().add(retVal);
-        return retVal;
-    }
+        List<Consumer<OsCalls>> updates = new ArrayList<>();
+        remainingPairsByGroup.forEach((portPairGroupId, remaining) -> updates.add(calls -> calls
+                .updatePortPairGroup(portPairGroupId, Builders.portPairGroup().portPairs(remaining).build())));
+        remainingGroupsByChain.forEach((portChainId, remaining) -> updates.add(calls -> calls
+                .updatePortChain(portChainId, Builders.portChain().portPairGroups(remaining).build())));
+        runAll(updates);
 
-    @Override
-    public void removeInspectionPort(InspectionPortElement inspectionPort)
-            throws NetworkPortNotFoundException, Exception {
-        if (inspectionPort == null) {
-            LOG.warn("Attempt to remove a null Inspection Port");
-            return;
+        List<Consumer<OsCalls>> groupDeletes = new ArrayList<>();
+        for (String portPairGroupId : emptiedGroupIds) {
+            groupDeletes.add(calls -> calls.deletePortPairGroup(portPairGroupId));
         }
+        runAll(groupDeletes);
+        emptiedGroupIds.forEach(this.nameIndex::removeId);
 
-        PortPair portPair = this.utils.fetchPortPairForInspectionPort(inspectionPort);
+        List<Consumer<OsCalls>> pairDeletes = new ArrayList<>();
+        for (String portPairId : portPairIds) {
+            pairDeletes.add(calls -> calls.deletePortPair(portPairId));
+        }
+        runAll(pairDeletes);
+        portPairIds.forEach(this.nameIndex::removeId);
+    }
 
-        if (portPair != null) {
-            PortPairGroup portPairGroup = this.utils.fetchContainingPortPairGroup(portPair.getId());
+    private void removePortPair(PortPair portPair) {
+        PortPairGroup portPairGroup = this.utils.fetchContainingPortPairGroup(portPair.getId());
 
-            if (portPairGroup != null) {
-                portPairGroup.getPortPairs().remove(portPair.getId());
+        if (portPairGroup != null) {
+            portPairGroup.getPortPairs().remove(portPair.getId());
 
-                if (portPairGroup.getPortPairs().size() > 0) {
-                    PortPairGroup ppgUpdate = Builders.portPairGroup().portPairs(portPairGroup.getPortPairs()).build();
-                    this.osCalls.updatePortPairGroup(portPairGroup.getId(), ppgUpdate);
-                } else {
-                    PortChain portChain = this.utils.fetchContainingPortChain(portPairGroup.getId());
+            if (portPairGroup.getPortPairs().size() > 0) {
+                PortPairGroup ppgUpdate = Builders.portPairGroup().portPairs(portPairGroup.getPortPairs()).build();
+                this.osCalls.updatePortPairGroup(portPairGroup.getId(), ppgUpdate);
+            } else {
+                PortChain portChain = this.utils.fetchContainingPortChain(portPairGroup.getId());
 
-                    if (portChain != null) {
-                        List<String> ppgIds = portChain.getPortPairGroups();
-                        ppgIds.remove(portPairGroup.getId());
+                if (portChain != null) {
+                    List<String> ppgIds = portChain.getPortPairGroups();
+                    ppgIds.remove(portPairGroup.getId());
 
-                        // service function chain with with no port pair should be allowed to exist?
-                        PortChain portChainUpdate = Builders.portChain().portPairGroups(ppgIds).build();
-                        this.osCalls.updatePortChain(portChain.getId(), portChainUpdate);
-                    }
-                    this.osCalls.deletePortPairGroup(portPairGroup.getId());
+                    // service function chain with with no port pair should be allowed to exist?
+                    PortChain portChainUpdate = Builders.portChain().portPairGroups(ppgIds).build();
+                    this.osCalls.updatePortChain(portChain.getId(), portChainUpdate);
                 }
+                this.osCalls.deletePortPairGroup(portPairGroup.getId());
+                this.nameIndex.removeId(portPairGroup.getId());
             }
-
-            this.osCalls.deletePortPair(portPair.getId());
-        } else {
-            LOG.warn("Attempt to remove nonexistent Port Pair for ingress {} and egress {}",
-                    inspectionPort.getIngressPort(), inspectionPort.getEgressPort());
         }
+
+        this.osCalls.deletePortPair(portPair.getId());
+        this.nameIndex.removeId(portPair.getId());
     }
 
     // Inspection Hooks methods
@@ -221,249 +407,647 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
                                         TagEncapsulationType encType, Long order,
                                         FailurePolicyType failurePolicyType)
             throws NetworkPortNotFoundException, Exception {
+        try (Span span = this.tracer.start("installInspectionHook")) {
+
+            checkArgument(inspectedPortElement != null && inspectedPortElement.getElementId() != null,
+                          "null passed for %s !", "Inspected Port");
+            checkArgument(inspectionPortElement != null && inspectionPortElement.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain");
+
+            LOG.info("Installing Inspection Hook for (Inspected Port {} ; Inspection Port {}):",
+                    inspectedPortElement, inspectionPortElement);
+
+            String inspectedPortId = inspectedPortElement.getElementId();
+            String flowClassifierName = ResourceNames.flowClassifierName(inspectedPortId,
+                                                                         inspectionPortElement.getElementId());
+
+            // The chain is read while the classifier and, if it is missing, the gateway port are looked up
+            OperationGraph graph = newGraph();
+            OperationGraph.Step<PortChain> portChainStep = graph.step(
+                    calls -> calls.getPortChain(inspectionPortElement.getElementId()));
+            OperationGraph.Step<FlowClassifier> flowClassifierStep = graph.step(
+                    calls -> fetchInspectionHook(calls, flowClassifierName, inspectedPortId,
+                            inspectionPortElement.getElementId()));
+            OperationGraph.Step<Port> gatewayStep = graph.step(calls -> flowClassifierStep.get() == null
+                    ? utils(calls).fetchDefaultGatewayPort(inspectedPortId) : null, flowClassifierStep);
+
+            PortChain portChain = portChainStep.get();
+            checkArgument(portChain != null,
+                          "Cannot find %s by id: %s!", "Service Function Chain", inspectionPortElement.getElementId());
+            // The update clears these on the object it is given
+            String portChainId = portChain.getId();
+            String projectId = portChain.getTenantId();
+
+            FlowClassifier flowClassifier = flowClassifierStep.get();
+
+            if (flowClassifier != null && portChain.getFlowClassifiers().contains(flowClassifier.getId())) {
+                LOG.info("Inspection Hook {} is already installed", flowClassifier.getId());
+                this.hookIndex.put(projectId, flowClassifier.getId(), inspectedPortElement.getElementId(), portChainId);
+                return flowClassifier.getId();
+            }
 
-        checkArgument(inspectedPortElement != null && inspectedPortElement.getElementId() != null,
-                      "null passed for %s !", "Inspected Port");
-        checkArgument(inspectionPortElement != null && inspectionPortElement.getElementId() != null,
-                      "null passed for %s !", "Service Function Chain");
-
-        LOG.info("Installing Inspection Hook for (Inspected Port {} ; Inspection Port {}):",
-                inspectedPortElement, inspectionPortElement);
-
-        PortChain portChain = this.osCalls.getPortChain(inspectionPortElement.getElementId());
-        checkArgument(portChain != null,
-                      "Cannot find %s by id: %s!", "Service Function Chain", inspectionPortElement.getElementId());
-
-        // TODO: logical source port is required for creating flowclassifier due to limitation in Neutron SFC
-        Port defaultGatewayInterfacePort = this.utils.fetchDefaultGatewayPort(inspectedPortElement.getElementId());
-        checkArgument(defaultGatewayInterfacePort != null && defaultGatewayInterfacePort.getId() != null,
-                      "null passed for %s !", "Service Function Chain");
-        
-        String defaultGatewayInterfacePortId = defaultGatewayInterfacePort.getId();
-        FlowClassifier flowClassifier = this.utils.buildFlowClassifier(inspectedPortElement.getElementId(),
-                                                                       defaultGatewayInterfacePortId);
-
-        flowClassifier = this.osCalls.createFlowClassifier(flowClassifier);
-        portChain.getFlowClassifiers().add(flowClassifier.getId());
-        this.osCalls.updatePortChain(portChain.getId(), portChain);
+            try (OperationJournal.Operation op = this.journal.begin(OP_INSTALL_INSPECTION_HOOK,
+                    inspectedPortElement.getElementId(), portChain.getId())) {
+                if (flowClassifier == null) {
+                    // TODO: logical source port is required for creating flowclassifier due to limitation in Neutron SFC
+                    Port defaultGatewayInterfacePort = gatewayStep.get();
+                    checkArgument(defaultGatewayInterfacePort != null && defaultGatewayInterfacePort.getId() != null,
+                                  "null passed for %s !", "Service Function Chain");
+
+                    String defaultGatewayInterfacePortId = defaultGatewayInterfacePort.getId();
+                    flowClassifier = this.utils.buildFlowClassifier(inspectedPortElement.getElementId(),
+                                                                    defaultGatewayInterfacePortId, portChain.getId());
+                    flowClassifier = this.osCalls.createFlowClassifier(flowClassifier);
+                    this.nameIndex.put(flowClassifierName, flowClassifier.getId());
+                    op.step(STEP_FLOW_CLASSIFIER_CREATED, flowClassifier.getId());
+                }
+                portChain.getFlowClassifiers().add(flowClassifier.getId());
+                this.osCalls.updatePortChain(portChainId, portChain);
+                op.step(STEP_PORT_CHAIN_UPDATED, portChainId);
+            }
+            this.hookIndex.put(projectId, flowClassifier.getId(), inspectedPortElement.getElementId(), portChainId);
 
-        return flowClassifier.getId();
+            return flowClassifier.getId();
+        }
     }
 
     @Override
     public void updateInspectionHook(InspectionHookElement providedHook) throws Exception {
+        try (Span span = this.tracer.start("updateInspectionHook")) {
 
-        if (providedHook == null || providedHook.getHookId() == null) {
-            throw new IllegalArgumentException("Attempt to update a null Inspection Hook!");
-        }
-
-        LOG.info("Updating Inspection Hook {}:", providedHook);
+            if (providedHook == null || providedHook.getHookId() == null) {
+                throw new IllegalArgumentException("Attempt to update a null Inspection Hook!");
+            }
 
-        NetworkElement providedInspectedPort = providedHook.getInspectedPort();
-        InspectionPortElement providedInspectionPort = providedHook.getInspectionPort();
-        checkArgument(providedInspectedPort != null && providedInspectedPort.getElementId() != null,
-                      "null passed for %s !", "Inspected port");
-        checkArgument(providedInspectionPort != null && providedInspectionPort.getElementId() != null,
-                      "null passed for %s !", "Service Function Chain");
+            LOG.info("Updating Inspection Hook {}:", providedHook);
 
-        FlowClassifier flowClassifier = this.osCalls.getFlowClassifier(providedHook.getHookId());
-        checkArgument(flowClassifier != null, "Cannot find Flow Classifier %s", providedHook.getHookId());;
+            NetworkElement providedInspectedPort = providedHook.getInspectedPort();
+            InspectionPortElement providedInspectionPort = providedHook.getInspectionPort();
+            checkArgument(providedInspectedPort != null && providedInspectedPort.getElementId() != null,
+                          "null passed for %s !", "Inspected port");
+            checkArgument(providedInspectionPort != null && providedInspectionPort.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain");
 
-        Port protectedPort = this.utils.fetchProtectedPort(flowClassifier);
+            // Validation reads from the chain view; only the chains about to be updated are fetched
+            String hookId = providedHook.getHookId();
+            PortChainView.Hook hook = this.portChainView.getHook(hookId, this.osCalls);
+            checkArgument(hook != null, "Cannot find Flow Classifier %s", hookId);
 
-        // Detect attempt to re-write the inspected hook
-        Set<String> ipsProtected = protectedPort.getFixedIps().stream().map(ip -> ip.getIpAddress()).collect(Collectors.toSet());
-        // We don't really handle multiple ip addresses yet.
-        if (!ipsProtected.containsAll(providedInspectedPort.getPortIPs())) {
-            throw new IllegalStateException(
-                    String.format("Cannot update Inspected Port from %s to %s for the Flow Classifier %s",
-                            providedInspectedPort.getElementId(), protectedPort.getId(), flowClassifier.getId()));
-        }
+            Port protectedPort = this.portChainView.getPort(hook.getProtectedPortId(), this.osCalls);
 
-        PortChain providedPortChain = this.osCalls.getPortChain(providedInspectionPort.getElementId());
-        checkArgument(providedPortChain != null, "null passed for %s !", "Service Function Chain");
+            // Detect attempt to re-write the inspected hook
+            // We don't really handle multiple ip addresses yet.
+            if (!isProtectingAll(protectedPort, providedInspectedPort.getPortIPs())) {
+                throw new IllegalStateException(
+                        String.format("Cannot update Inspected Port from %s to %s for the Flow Classifier %s",
+                                providedInspectedPort.getElementId(), protectedPort.getId(), hookId));
+            }
 
-        PortChain currentPortChain = this.utils.fetchContainingPortChainForFC(flowClassifier.getId());
+            PortChainView.Chain providedChain = this.portChainView.getChain(providedInspectionPort.getElementId(),
+                    this.osCalls);
+            checkArgument(providedChain != null, "null passed for %s !", "Service Function Chain");
 
-        if (currentPortChain != null) {
-            if (currentPortChain.getId().equals(providedInspectionPort.getElementId())) {
+            String currentPortChainId = fetchContainingPortChainIdForFC(hookId);
+            if (providedChain.getId().equals(currentPortChainId)) {
                 return;
             }
-            currentPortChain.getFlowClassifiers().remove(flowClassifier.getId());
-            this.osCalls.updatePortChain(currentPortChain.getId(), currentPortChain);
-        }
 
-        if (!providedPortChain.getFlowClassifiers().contains(flowClassifier.getId())) {
-            providedPortChain.getFlowClassifiers().add(flowClassifier.getId());
-        }
+            OperationGraph graph = newGraph();
+            OperationGraph.Step<PortChain> providedPortChainStep = graph.step(
+                    calls -> calls.getPortChain(providedChain.getId()));
+            OperationGraph.Step<PortChain> currentPortChainStep = graph.step(
+                    calls -> currentPortChainId != null ? calls.getPortChain(currentPortChainId) : null);
+            graph.await();
+
+            PortChain providedPortChain = providedPortChainStep.get();
+            checkArgument(providedPortChain != null, "null passed for %s !", "Service Function Chain");
+
+            PortChain currentPortChain = currentPortChainStep.get();
+            if (currentPortChain != null && currentPortChain.getFlowClassifiers().remove(hookId)) {
+                this.osCalls.updatePortChain(currentPortChainId, currentPortChain);
+            }
 
-        this.osCalls.updatePortChain(providedPortChain.getId(), providedPortChain);
+            if (!providedPortChain.getFlowClassifiers().contains(hookId)) {
+                providedPortChain.getFlowClassifiers().add(hookId);
+            }
+
+            String providedPortChainId = providedPortChain.getId();
+            String projectId = providedPortChain.getTenantId();
+            this.osCalls.updatePortChain(providedPortChainId, providedPortChain);
+            this.hookIndex.put(projectId, hookId, hook.getProtectedPortId(), providedPortChainId);
+        }
     }
 
     @Override
     public void removeInspectionHook(String inspectionHookId) throws Exception {
-        if (inspectionHookId == null) {
-            LOG.warn("Attempt to remove an Inspection Hook with null id");
-            return;
-        }
+        try (Span span = this.tracer.start("removeInspectionHook")) {
+            if (inspectionHookId == null) {
+                LOG.warn("Attempt to remove an Inspection Hook with null id");
+                return;
+            }
 
-        FlowClassifier flowClassifier = this.osCalls.getFlowClassifier(inspectionHookId);
-        if (flowClassifier == null) {
-            LOG.warn("Flow Classifier {} does not exist on openstack", inspectionHookId);
-            return;
-        }
+            FlowClassifier flowClassifier = this.osCalls.getFlowClassifier(inspectionHookId);
+            if (flowClassifier == null) {
+                LOG.warn("Flow Classifier {} does not exist on openstack", inspectionHookId);
+                return;
+            }
 
-        PortChain portChain = this.utils.fetchContainingPortChainForFC(flowClassifier.getId());
-        if (portChain != null) {
-            portChain.getFlowClassifiers().remove(flowClassifier.getId());
-            this.osCalls.updatePortChain(portChain.getId(), portChain);
-        }
+            PortChain portChain = fetchContainingPortChainForFC(this.osCalls, flowClassifier.getId());
+            if (portChain != null) {
+                portChain.getFlowClassifiers().remove(flowClassifier.getId());
+                this.osCalls.updatePortChain(portChain.getId(), portChain);
+            }
 
-        this.osCalls.deleteFlowClassifier(flowClassifier.getId());
+            this.osCalls.deleteFlowClassifier(flowClassifier.getId());
+            this.hookIndex.remove(flowClassifier.getId());
+            this.aggregateHookIndex.remove(flowClassifier.getId());
+            this.nameIndex.removeId(flowClassifier.getId());
+        }
     }
 
     @Override
     public InspectionHookElement getInspectionHook(String inspectionHookId) throws Exception {
-        if (inspectionHookId == null) {
-            LOG.warn("Attempt to get Inspection Hook with null id");
-            return null;
-        }
+        try (Span span = this.tracer.start("getInspectionHook")) {
+            if (inspectionHookId == null) {
+                LOG.warn("Attempt to get Inspection Hook with null id");
+                return null;
+            }
 
-        FlowClassifier flowClassifier = this.osCalls.getFlowClassifier(inspectionHookId);
+            PortChainView.Hook hook = this.portChainView.getHook(inspectionHookId, this.osCalls);
 
-        if (flowClassifier == null) {
-            LOG.warn("No flow classifier for id %s", inspectionHookId);
-            return null;
-        }
+            if (hook == null) {
+                LOG.warn("No flow classifier for id %s", inspectionHookId);
+                return null;
+            }
 
-        FlowClassifierElement retVal = new FlowClassifierElement(inspectionHookId);
-        PortChain portChain = this.utils.fetchContainingPortChainForFC(inspectionHookId);
+            FlowClassifierElement retVal = new FlowClassifierElement(inspectionHookId);
+            String portChainId = fetchContainingPortChainIdForFC(inspectionHookId);
 
-        // only inspectionPort part of the returned object is ever used, which is SFC
-        if (portChain != null) {
-            ServiceFunctionChainElement sfcElement = new ServiceFunctionChainElement(portChain.getId());
-            retVal.setServiceFunctionChain(sfcElement);
-            sfcElement.getInspectionHooks().add(retVal);
-        }
+            // only inspectionPort part of the returned object is ever used, which is SFC
+            if (portChainId != null) {
+                ServiceFunctionChainElement sfcElement = new ServiceFunctionChainElement(portChainId);
+                retVal.setServiceFunctionChain(sfcElement);
+                sfcElement.getInspectionHooks().add(retVal);
+            }
 
-        return retVal;
+            return retVal;
+        }
     }
 
     // SFC methods
     @Override
     public NetworkElement registerNetworkElement(List<NetworkElement> portPairGroupList) throws Exception {
-        //check for null or empty list
-        throwExceptionIfNullOrEmptyNetworkElementList(portPairGroupList, "Port Pair Group member list");
-
-        List<String> portPairGroupIds = portPairGroupList
-                                            .stream()
-                                            .map(ppg -> ppg.getElementId())
-                                            .collect(toList());
+        try (Span span = this.tracer.start("registerNetworkElement")) {
+            //check for null or empty list
+            throwExceptionIfNullOrEmptyNetworkElementList(portPairGroupList, "Port Pair Group member list");
 
-        PortChain portChain = Builders.portChain()
-                                    .description("Port Chain object created by OSC")
-                                    .name("OSCPortChain-" + UUID.randomUUID().toString().substring(0, 8))
-                                    .chainParameters(new HashMap<String, String>() {{
-                                        put(CHAIN_PARAM_SYMMETRIC_TRAFFIC_FLOW, SYMMETRIC_CHAIN_ENABLED);
-                                     }})
-                                    .flowClassifiers(emptyList())
-                                    .portPairGroups(portPairGroupIds)
-                                    .build();
+            List<String> portPairGroupIds = portPairGroupList
+                                                .stream()
+                                                .map(ppg -> ppg.getElementId())
+                                                .collect(toList());
 
-        PortChain portChainCreated = this.osCalls.createPortChain(portChain);
+            PortChain portChainCreated = fetchOrCreatePortChain(this.osCalls, portPairGroupIds);
 
-        List<PortPairGroupElement> portPairGroups =
-                portPairGroupList.stream().map(p -> new PortPairGroupElement(p.getElementId())).collect(toList());
+            List<PortPairGroupElement> portPairGroups =
+                    portPairGroupList.stream().map(p -> new PortPairGroupElement(p.getElementId())).collect(toList());
 
-        ServiceFunctionChainElement retVal = new ServiceFunctionChainElement(portChainCreated.getId());
-        portPairGroups.stream().forEach(p -> p.setServiceFunctionChain(retVal));
-        retVal.setPortPairGroups(portPairGroups);
+            ServiceFunctionChainElement retVal = new ServiceFunctionChainElement(portChainCreated.getId());
+            portPairGroups.stream().forEach(p -> p.setServiceFunctionChain(retVal));
+            retVal.setPortPairGroups(portPairGroups);
 
-        return retVal;
+            return retVal;
+        }
     }
 
-    @Override
-    public NetworkElement updateNetworkElement(NetworkElement serviceFunctionChain, List<NetworkElement> portPairGroupList)
-            throws Exception {
-        checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
-                "null passed for %s !", "Service Function Chain Id");
-        throwExceptionIfNullOrEmptyNetworkElementList(portPairGroupList, "Port Pair Group update member list");
+    /**
+     * Provisions a whole service chain in one call: its port pairs, port pair groups, port chain and an
+     * inspection hook for every inspected port. Objects which already exist are reused, so a retried call
+     * completes what an earlier attempt started.
+     *
+     * Each object is created as soon as the objects it refers to exist: the pairs of all the groups
+     * concurrently, every group once its own pairs exist, and the flow classifiers once the chain exists. The
+     * gateway ports of the inspected ports are looked up in the router interface ports of the VC, and the chain
+     * gets all its flow classifiers with one update.
+     *
+     * @param portPairGroups the groups of the chain in order, each with the port pairs to put in it. A group
+     * with an element id is an existing group the pairs are added to.
+     * @param inspectedPorts the ports to inspect with the chain
+     * @return the chain with its groups, their pairs and the inspection hooks
+     */
+    public ServiceFunctionChainElement provisionServiceChain(List<PortPairGroupElement> portPairGroups,
+            List<? extends NetworkElement> inspectedPorts) throws Exception {
+        try (Span span = this.tracer.start("provisionServiceChain")) {
+            checkArgument(portPairGroups != null && !portPairGroups.isEmpty(),
+                          "null passed for %s !", "Port Pair Group member list");
+            checkArgument(inspectedPorts != null, "null passed for %s !", "Inspected Port list");
+            for (PortPairGroupElement portPairGroup : portPairGroups) {
+                checkArgument(portPairGroup != null
+                        && (portPairGroup.getElementId() != null || !portPairGroup.getPortPairs().isEmpty()),
+                              "null passed for %s !", "Port Pair list");
+            }
+            for (NetworkElement inspectedPort : inspectedPorts) {
+                checkArgument(inspectedPort != null && inspectedPort.getElementId() != null,
+                              "null passed for %s !", "Inspected Port");
+            }
 
-        PortChain portChain = this.osCalls.getPortChain(serviceFunctionChain.getElementId());
-        checkArgument(portChain != null,
-                      "Cannot find %s by id: %s!", "Service Function Chain", serviceFunctionChain.getElementId());
+            OperationGraph graph = newGraph();
 
-        portChain = Builders.portChain().from(portChain)
-                            .portPairGroups(Collections.emptyList()).build();
-        this.osCalls.updatePortChain(portChain.getId(), portChain);
+            List<List<OperationGraph.Step<PortPair>>> portPairSteps = new ArrayList<>(portPairGroups.size());
+            List<OperationGraph.Step<String>> portPairGroupSteps = new ArrayList<>(portPairGroups.size());
+            for (PortPairGroupElement portPairGroup : portPairGroups) {
+                List<OperationGraph.Step<PortPair>> pairs = new ArrayList<>(portPairGroup.getPortPairs().size());
+                for (PortPairElement portPair : portPairGroup.getPortPairs()) {
+                    pairs.add(graph.step(calls -> fetchOrCreatePortPair(calls, portPair.getIngressPort(),
+                            portPair.getEgressPort())));
+                }
+                portPairSteps.add(pairs);
+                portPairGroupSteps.add(graph.step(calls -> {
+                    List<String> portPairIds = new ArrayList<>(pairs.size());
+                    for (OperationGraph.Step<PortPair> pair : pairs) {
+                        portPairIds.add(pair.get().getId());
+                    }
+                    return fetchOrCreatePortPairGroup(calls, portPairGroup.getElementId(), portPairIds);
+                }, pairs.toArray(new OperationGraph.Step<?>[pairs.size()])));
+            }
 
-        List<String> portPairGroupIds = portPairGroupList
-                .stream()
-                .map(ppg -> ppg.getElementId())
-                .collect(toList());
+            OperationGraph.Step<PortChain> portChainStep = graph.step(calls -> {
+                List<String> portPairGroupIds = new ArrayList<>(portPairGroupSteps.size());
+                for (OperationGraph.Step<String> portPairGroupId : portPairGroupSteps) {
+                    portPairGroupIds.add(portPairGroupId.get());
+                }
+                return fetchOrCreatePortChain(calls, portPairGroupIds);
+            }, portPairGroupSteps.toArray(new OperationGraph.Step<?>[portPairGroupSteps.size()]));
+
+            Map<String, OperationGraph.Step<Port>> inspectedPortSteps = new LinkedHashMap<>();
+            Map<String, OperationGraph.Step<FlowClassifier>> flowClassifierSteps = new LinkedHashMap<>();
+            for (NetworkElement inspectedPort : inspectedPorts) {
+                String inspectedPortId = inspectedPort.getElementId();
+                if (inspectedPortSteps.containsKey(inspectedPortId)) {
+                    continue;
+                }
+                OperationGraph.Step<Port> portStep = graph.step(calls -> calls.getPort(inspectedPortId));
+                inspectedPortSteps.put(inspectedPortId, portStep);
+                flowClassifierSteps.put(inspectedPortId, graph.step(
+                        calls -> fetchOrCreateFlowClassifier(calls, inspectedPortId, portChainStep.get().getId(),
+                                portStep.get()),
+                        portChainStep, portStep));
+            }
 
-        portChain = Builders.portChain().portPairGroups(portPairGroupIds).build();
-        PortChain portChainUpdated = this.osCalls.updatePortChain(serviceFunctionChain.getElementId(), portChain);
+            graph.await();
 
-        List<PortPairGroupElement> portPairGroups =
-                portPairGroupIds.stream().map(id -> new PortPairGroupElement(id)).collect(toList());
-        ServiceFunctionChainElement retVal = new ServiceFunctionChainElement(portChainUpdated.getId());
-        portPairGroups.stream().forEach(p -> p.setServiceFunctionChain(retVal));
-        retVal.setPortPairGroups(portPairGroups);
-        return retVal;
+            PortChain portChain = portChainStep.get();
+            // The update clears these on the object it is given
+            String portChainId = portChain.getId();
+            String projectId = portChain.getTenantId();
+
+            List<String> flowClassifierIds = portChain.getFlowClassifiers() != null
+                    ? new ArrayList<>(portChain.getFlowClassifiers()) : new ArrayList<>();
+            boolean attached = true;
+            for (OperationGraph.Step<FlowClassifier> flowClassifier : flowClassifierSteps.values()) {
+                if (!flowClassifierIds.contains(flowClassifier.get().getId())) {
+                    flowClassifierIds.add(flowClassifier.get().getId());
+                    attached = false;
+                }
+            }
+            if (!attached) {
+                this.osCalls.updatePortChain(portChainId,
+                        portChain.toBuilder().flowClassifiers(flowClassifierIds).build());
+            }
+
+            ServiceFunctionChainElement retVal = new ServiceFunctionChainElement(portChainId);
+            for (int i = 0; i < portPairGroups.size(); i++) {
+                PortPairGroupElement portPairGroupElement = new PortPairGroupElement(portPairGroupSteps.get(i).get());
+                portPairGroupElement.setServiceFunctionChain(retVal);
+
+                List<PortPairElement> providedPortPairs = portPairGroups.get(i).getPortPairs();
+                for (int j = 0; j < providedPortPairs.size(); j++) {
+                    PortPairElement provided = providedPortPairs.get(j);
+                    String portPairId = portPairSteps.get(i).get(j).get().getId();
+                    portPairGroupElement.getPortPairs().add(new PortPairElement(portPairId, portPairGroupElement,
+                            provided.getIngressPort(), provided.getEgressPort()));
+                }
+                retVal.getPortPairGroups().add(portPairGroupElement);
+            }
+
+            for (Map.Entry<String, OperationGraph.Step<FlowClassifier>> entry : flowClassifierSteps.entrySet()) {
+                String flowClassifierId = entry.getValue().get().getId();
+                this.hookIndex.put(projectId, flowClassifierId, entry.getKey(), portChainId);
+                Port inspectedPort = inspectedPortSteps.get(entry.getKey()).get();
+                retVal.getInspectionHooks().add(new FlowClassifierElement(flowClassifierId,
+                        RedirectionApiUtils.toNetworkElement(inspectedPort, null), retVal));
+            }
+
+            return retVal;
+        }
     }
 
     @Override
-    public void deleteNetworkElement(NetworkElement serviceFunctionChain) throws Exception {
-        checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
-                      "null passed for %s !", "Service Function Chain Id");
+    public NetworkElement updateNetworkElement(NetworkElement serviceFunctionChain, List<NetworkElement> portPairGroupList)
+            throws Exception {
+        try (Span span = this.tracer.start("updateNetworkElement")) {
+            checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
+                    "null passed for %s !", "Service Function Chain Id");
+            throwExceptionIfNullOrEmptyNetworkElementList(portPairGroupList, "Port Pair Group update member list");
+
+            PortChain portChain = this.osCalls.getPortChain(serviceFunctionChain.getElementId());
+            checkArgument(portChain != null,
+                          "Cannot find %s by id: %s!", "Service Function Chain", serviceFunctionChain.getElementId());
+
+            List<String> portPairGroupIds = portPairGroupList
+                    .stream()
+                    .map(ppg -> ppg.getElementId())
+                    .collect(toList());
+
+            PortChain portChainUpdated;
+            List<String> journalArgs = new ArrayList<>();
+            journalArgs.add(portChain.getId());
+            journalArgs.addAll(portPairGroupIds);
+
+            try (OperationJournal.Operation op = this.journal.begin(OP_UPDATE_NETWORK_ELEMENT,
+                    journalArgs.toArray(new String[journalArgs.size()]))) {
+                portChain = Builders.portChain().from(portChain)
+                                    .portPairGroups(Collections.emptyList()).build();
+                this.osCalls.updatePortChain(serviceFunctionChain.getElementId(), portChain);
+                op.step(STEP_PORT_CHAIN_CLEARED, serviceFunctionChain.getElementId());
+
+                portChain = Builders.portChain().portPairGroups(portPairGroupIds).build();
+                portChainUpdated = this.osCalls.updatePortChain(serviceFunctionChain.getElementId(), portChain);
+                op.step(STEP_PORT_CHAIN_UPDATED, portChainUpdated.getId());
+            }
 
-        this.osCalls.deletePortChain(serviceFunctionChain.getElementId());
+            List<PortPairGroupElement> portPairGroups =
+                    portPairGroupIds.stream().map(id -> new PortPairGroupElement(id)).collect(toList());
+            ServiceFunctionChainElement retVal = new ServiceFunctionChainElement(portChainUpdated.getId());
+            portPairGroups.stream().forEach(p -> p.setServiceFunctionChain(retVal));
+            retVal.setPortPairGroups(portPairGroups);
+            return retVal;
+        }
+    }
+
+    @Override
+    public void deleteNetworkElement(NetworkElement serviceFunctionChain) throws Exception {
+        try (Span span = this.tracer.start("deleteNetworkElement")) {
+            checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain Id");
+
+            this.osCalls.deletePortChain(serviceFunctionChain.getElementId());
+            this.hookIndex.removePortChain(serviceFunctionChain.getElementId());
+            this.aggregateHookIndex.removePortChain(serviceFunctionChain.getElementId());
+            this.nameIndex.removeId(serviceFunctionChain.getElementId());
+        }
     }
 
     @Override
     public List<NetworkElement> getNetworkElements(NetworkElement serviceFunctionChain) throws Exception {
-        checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
-                      "null passed for %s !", "Service Function Chain Id");
+        try (Span span = this.tracer.start("getNetworkElements")) {
+            checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain Id");
 
-        PortChain portChain = this.osCalls.getPortChain(serviceFunctionChain.getElementId());
+            PortChainView.Chain portChain = this.portChainView.getChain(serviceFunctionChain.getElementId(),
+                    this.osCalls);
 
-        checkArgument(portChain != null,
-                      "Cannot find %s by id: %s!", "Service Function Chain", serviceFunctionChain.getElementId());
+            checkArgument(portChain != null,
+                          "Cannot find %s by id: %s!", "Service Function Chain", serviceFunctionChain.getElementId());
 
-        ArrayList<PortPairGroupElement> portPairGroupElements = new ArrayList<>();
+            List<NetworkElement> portPairGroupElements = new ArrayList<>(portChain.getPortPairGroupIds().size());
 
-        for (String portPairGroupId : portChain.getPortPairGroups()) {
+            for (String portPairGroupId : portChain.getPortPairGroupIds()) {
 
-            // Only ids of the PPG entities are used
-            PortPairGroupElement portPairGroupElement = new PortPairGroupElement(portPairGroupId);
+                // Only ids of the PPG entities are used
+                portPairGroupElements.add(new PortPairGroupElement(portPairGroupId));
+            }
 
-            portPairGroupElements.add(portPairGroupElement);
+            return portPairGroupElements;
         }
+    }
+
+    /**
+     * Like {@link #getNetworkElements(NetworkElement)}, but every port pair group comes populated with its
+     * port pairs and their ingress and egress ports. The groups, pairs and ports are read from the chain view,
+     * which fetches the missing ones concurrently.
+     */
+    public List<PortPairGroupElement> getExpandedNetworkElements(NetworkElement serviceFunctionChain) throws Exception {
+        try (Span span = this.tracer.start("getExpandedNetworkElements")) {
+            checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain Id");
+
+            ServiceFunctionChainElement sfc = this.portChainView.read(serviceFunctionChain.getElementId(),
+                    this.osCalls, this.executor);
+
+            checkArgument(sfc != null,
+                          "Cannot find %s by id: %s!", "Service Function Chain", serviceFunctionChain.getElementId());
 
-        return new ArrayList<>(portPairGroupElements);
+            return sfc.getPortPairGroups();
+        }
     }
 
-    // Unsupported operations in SFC
     @Override
     public InspectionHookElement getInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
             throws Exception {
-        throw new UnsupportedOperationException(String.format(
-                "Retriving inspection hooks with Inspected port: %s and Inspection port: %s is not supported.",
-                inspectedPort, inspectedPort));
-    }
+        try (Span span = this.tracer.start("getInspectionHook")) {
+            checkArgument(inspectedPort != null && inspectedPort.getElementId() != null,
+                          "null passed for %s !", "Inspected Port");
+            checkArgument(inspectionPort != null && inspectionPort.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain");
+
+            String hookId = fetchHookId(this.osCalls, inspectedPort.getElementId(), inspectionPort.getElementId());
+            if (hookId == null) {
+                hookId = fetchAggregateHookId(inspectedPort, inspectionPort.getElementId());
+            }
 
-    @Override
-    public void removeAllInspectionHooks(NetworkElement inspectedPort) throws Exception {
-        throw new UnsupportedOperationException("Removing all inspection hooks is not supported in neutron SFC.");
+            if (hookId == null) {
+                LOG.warn("No flow classifier for inspected port {} and port chain {}", inspectedPort.getElementId(),
+                        inspectionPort.getElementId());
+                return null;
+            }
+
+            NetworkElementImpl inspectedPortElement = new NetworkElementImpl(inspectedPort.getElementId(),
+                    inspectedPort.getMacAddresses(), inspectedPort.getPortIPs(), inspectedPort.getParentId());
+            ServiceFunctionChainElement sfcElement = new ServiceFunctionChainElement(inspectionPort.getElementId());
+            FlowClassifierElement retVal = new FlowClassifierElement(hookId, inspectedPortElement, sfcElement);
+            sfcElement.getInspectionHooks().add(retVal);
+
+            return retVal;
+        }
     }
 
     @Override
     public void removeInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
             throws Exception {
-        throw new UnsupportedOperationException(String.format(
-                "Removing inspection hooks with Inspected port: %s and Inspection port: %s is not supported.",
-                inspectedPort, inspectedPort));
+        try (Span span = this.tracer.start("removeInspectionHook")) {
+            if (inspectedPort == null || inspectedPort.getElementId() == null
+                    || inspectionPort == null || inspectionPort.getElementId() == null) {
+                LOG.warn("Attempt to remove an Inspection Hook with null Inspected Port or Inspection Port");
+                return;
+            }
+
+            String hookId = fetchHookId(this.osCalls, inspectedPort.getElementId(), inspectionPort.getElementId());
+
+            if (hookId == null && fetchAggregateHookId(inspectedPort, inspectionPort.getElementId()) != null) {
+                // the port shares a block with other ports, which must stay protected
+                removeAggregatedInspectionHooks(Collections.singletonList(inspectedPort), inspectionPort);
+                return;
+            }
+
+            if (hookId == null) {
+                LOG.warn("No flow classifier for inspected port {} and port chain {}", inspectedPort.getElementId(),
+                        inspectionPort.getElementId());
+                return;
+            }
+
+            removeInspectionHook(hookId);
+        }
+    }
+
+    /**
+     * Protects the inspected ports with the port chain through destination CIDR flow classifiers. The ports of
+     * a subnet share the fewest IPv4 blocks covering exactly their addresses, instead of a classifier each.
+     * Ports already protected by a per-port hook of the chain are moved into the blocks, and ports without an
+     * IPv4 address get a per-port hook.
+     *
+     * Adding or removing ports only creates and deletes the blocks which change, and swaps them in the port
+     * chain with a single update. Since a block protects several ports, aggregated ports are removed with
+     * {@link #removeAggregatedInspectionHooks}, not by hook id.
+     *
+     * @return the hook protecting each inspected port, by inspected port id
+     */
+    public Map<String, String> installAggregatedInspectionHooks(Collection<? extends NetworkElement> inspectedPorts,
+            InspectionPortElement inspectionPort) throws Exception {
+        try (Span span = this.tracer.start("installAggregatedInspectionHooks")) {
+            checkArgument(inspectedPorts != null, "null passed for %s !", "Inspected Port list");
+            checkArgument(inspectionPort != null && inspectionPort.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain");
+            for (NetworkElement inspectedPort : inspectedPorts) {
+                checkArgument(inspectedPort != null && inspectedPort.getElementId() != null,
+                              "null passed for %s !", "Inspected Port");
+            }
+
+            String portChainId = inspectionPort.getElementId();
+            Map<String, String> retVal = new LinkedHashMap<>();
+            List<NetworkElement> perPortPorts = new ArrayList<>();
+
+            AggregateHookIndex.Aggregates aggregates = this.aggregateHookIndex.get(portChainId);
+            aggregates.lock();
+            try {
+                // The inspected ports are fetched concurrently, their gateway ports come from the gateway index
+                OperationGraph graph = newGraph();
+                OperationGraph.Step<PortChain> portChainStep = graph.step(calls -> calls.getPortChain(portChainId));
+                Map<String, OperationGraph.Step<Port>> portSteps = new HashMap<>();
+                for (NetworkElement inspectedPortElement : inspectedPorts) {
+                    String inspectedPortId = inspectedPortElement.getElementId();
+                    portSteps.computeIfAbsent(inspectedPortId, id -> graph.step(calls -> calls.getPort(id)));
+                }
+                graph.await();
+
+                PortChain portChain = portChainStep.get();
+                checkArgument(portChain != null, "Cannot find %s by id: %s!", "Service Function Chain", portChainId);
+                aggregates.ensureLoaded(portChain, this.osCalls);
+
+                Map<String, String> addresses = new LinkedHashMap<>();
+                Map<String, Set<Long>> addedByGateway = new HashMap<>();
+                for (NetworkElement inspectedPortElement : inspectedPorts) {
+                    String inspectedPortId = inspectedPortElement.getElementId();
+                    Port inspectedPort = portSteps.get(inspectedPortId).get();
+                    checkArgument(inspectedPort != null, "Cannot find %s by id: %s!", "Inspected Port",
+                                  inspectedPortId);
+
+                    String address = RedirectionApiUtils.firstIpv4Address(inspectedPort);
+                    if (address == null) {
+                        perPortPorts.add(inspectedPortElement);
+                        continue;
+                    }
+                    Port defaultGatewayInterfacePort = this.gatewayPortIndex.getGatewayPort(inspectedPort,
+                            this.osCalls);
+                    checkArgument(defaultGatewayInterfacePort != null && defaultGatewayInterfacePort.getId() != null,
+                                  "Cannot find %s for Inspected Port %s!", "Default Gateway Port", inspectedPortId);
+
+                    addresses.put(inspectedPortId, address);
+                    addedByGateway.computeIfAbsent(defaultGatewayInterfacePort.getId(), id -> new HashSet<>())
+                            .add(CidrBlocks.toLong(address));
+                }
+
+                Set<String> replacedHookIds = new HashSet<>();
+                if (!addresses.isEmpty()) {
+                    this.hookIndex.ensureLoaded(portChain.getTenantId(), this.osCalls);
+                    for (String inspectedPortId : addresses.keySet()) {
+                        String hookId = this.hookIndex.getHookId(portChain.getTenantId(), inspectedPortId,
+                                portChainId);
+                        if (hookId != null) {
+                            replacedHookIds.add(hookId);
+                        }
+                    }
+                }
+
+                reaggregate(aggregates, portChain, addedByGateway, emptyMap(), replacedHookIds);
+
+                for (Map.Entry<String, String> address : addresses.entrySet()) {
+                    retVal.put(address.getKey(), aggregates.getHookId(address.getValue()));
+                }
+            } finally {
+                aggregates.unlock();
+            }
+
+            for (NetworkElement inspectedPort : perPortPorts) {
+                retVal.put(inspectedPort.getElementId(),
+                        installInspectionHook(inspectedPort, inspectionPort, null, null, null, null));
+            }
+
+            return retVal;
+        }
+    }
+
+    /**
+     * Stops protecting the inspected ports with the aggregate classifiers of the port chain, splitting the
+     * blocks which also cover other ports. The addresses of the ports are taken from the elements when given,
+     * so ports already deleted from openstack can be removed. Ports not covered by a block are ignored.
+     */
+    public void removeAggregatedInspectionHooks(Collection<? extends NetworkElement> inspectedPorts,
+            InspectionPortElement inspectionPort) throws Exception {
+        try (Span span = this.tracer.start("removeAggregatedInspectionHooks")) {
+            checkArgument(inspectedPorts != null, "null passed for %s !", "Inspected Port list");
+            checkArgument(inspectionPort != null && inspectionPort.getElementId() != null,
+                          "null passed for %s !", "Service Function Chain");
+
+            String portChainId = inspectionPort.getElementId();
+            AggregateHookIndex.Aggregates aggregates = this.aggregateHookIndex.get(portChainId);
+            aggregates.lock();
+            try {
+                PortChain portChain = this.osCalls.getPortChain(portChainId);
+                if (portChain == null) {
+                    LOG.warn("Port chain {} does not exist on openstack", portChainId);
+                    this.aggregateHookIndex.removePortChain(portChainId);
+                    return;
+                }
+                aggregates.ensureLoaded(portChain, this.osCalls);
+
+                Map<String, Set<Long>> removedByGateway = new HashMap<>();
+                for (NetworkElement inspectedPort : inspectedPorts) {
+                    if (inspectedPort == null) {
+                        continue;
+                    }
+                    for (String address : fetchIpv4Addresses(inspectedPort)) {
+                        String gatewayPortId = aggregates.findGatewayPortId(address);
+                        if (gatewayPortId != null) {
+                            removedByGateway.computeIfAbsent(gatewayPortId, id -> new HashSet<>())
+                                    .add(CidrBlocks.toLong(address));
+                        } else {
+                            LOG.debug("Address {} of inspected port {} is not aggregated in port chain {}", address,
+                                    inspectedPort.getElementId(), portChainId);
+                        }
+                    }
+                }
+
+                reaggregate(aggregates, portChain, emptyMap(), removedByGateway, emptySet());
+            } finally {
+                aggregates.unlock();
+            }
+        }
+    }
+
+    // Unsupported operations in SFC
+    @Override
+    public void removeAllInspectionHooks(NetworkElement inspectedPort) throws Exception {
+        throw new UnsupportedOperationException("Removing all inspection hooks is not supported in neutron SFC.");
     }
 
     @Override
@@ -504,11 +1088,755 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
 
     @Override
     public NetworkElement getNetworkElementByDeviceOwnerId(String deviceOwnerId) throws Exception {
-        throw new UnsupportedOperationException(
-                "Retrieving the network element given the device owner id is currently not supported.");
+        try (Span span = this.tracer.start("getNetworkElementByDeviceOwnerId")) {
+            checkArgument(deviceOwnerId != null, "null passed for %s !", "Device Owner Id");
+
+            List<NetworkElementImpl> ports = this.devicePortIndex.getPorts(deviceOwnerId, this.osCalls);
+
+            if (ports.isEmpty()) {
+                LOG.warn("No ports found for device {}", deviceOwnerId);
+                return null;
+            }
+
+            if (ports.size() > 1) {
+                LOG.info("Device {} owns {} ports, returning {}", deviceOwnerId, ports.size(), ports.get(0).getElementId());
+            }
+
+            return ports.get(0);
+        }
+    }
+
+    /**
+     * Bulk variant of {@link #getNetworkElementByDeviceOwnerId(String)}.
+     *
+     * @return the first port of each device that has any, keyed by device id
+     */
+    public Map<String, NetworkElement> getNetworkElementsByDeviceOwnerIds(Collection<String> deviceOwnerIds)
+            throws Exception {
+        return getNetworkElementsByDeviceOwnerIds(null, deviceOwnerIds);
+    }
+
+    /**
+     * Like {@link #getNetworkElementsByDeviceOwnerIds(Collection)} for devices of one project, so that resolving
+     * them never lists the ports of other projects.
+     *
+     * @param projectId the Neutron project owning the devices, or null if unknown
+     */
+    public Map<String, NetworkElement> getNetworkElementsByDeviceOwnerIds(String projectId,
+            Collection<String> deviceOwnerIds) throws Exception {
+        try (Span span = this.tracer.start("getNetworkElementsByDeviceOwnerIds")) {
+            checkArgument(deviceOwnerIds != null, "null passed for %s !", "Device Owner Id list");
+
+            Map<String, NetworkElement> retVal = new HashMap<>();
+            Map<String, List<NetworkElementImpl>> portsByDevice = this.devicePortIndex.getPorts(deviceOwnerIds,
+                    projectId, this.osCalls);
+
+            for (Map.Entry<String, List<NetworkElementImpl>> entry : portsByDevice.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    retVal.put(entry.getKey(), entry.getValue().get(0));
+                }
+            }
+
+            return retVal;
+        }
     }
 
     @Override
     public void close() throws Exception {
     }
+
+    /**
+     * Resumes or compensates the operations a previous run of the plugin left unfinished in the journal.
+     * Operations which cannot be resolved now stay in the journal and are retried on the next start.
+     */
+    public void recoverUnfinishedOperations() throws IOException {
+        for (PendingOperation op : this.journal.recover()) {
+            LOG.info("Recovering unfinished operation {}", op);
+            try {
+                recover(op);
+                this.journal.resolve(op);
+            } catch (Exception e) {
+                LOG.error("Failed to recover unfinished operation {}", op, e);
+            }
+        }
+    }
+
+    /**
+     * Step records are written after the calls they record, so a crash may leave a call made but unrecorded.
+     * The compensations therefore decide from the live state whether a resource is orphaned: a pair in no
+     * group, a classifier in no chain, an emptied chain.
+     */
+    private void recover(PendingOperation op) {
+        List<String> args = op.getArgs();
+
+        switch (op.getType()) {
+        case OP_REGISTER_INSPECTION_PORT:
+            // Once grouped, the pair is found again by a retry. An ungrouped pair is an orphan.
+            String portPairId = op.getStep(STEP_PORT_PAIR_CREATED);
+            if (portPairId == null) {
+                PortPair portPairFound = this.utils.fetchPortPairByNetworkElements(recoveredElement(args.get(0)),
+                        recoveredElement(args.get(1)));
+                portPairId = portPairFound != null ? portPairFound.getId() : null;
+            }
+            if (portPairId != null && this.utils.fetchContainingPortPairGroup(portPairId) == null) {
+                this.osCalls.deletePortPair(portPairId);
+            }
+            break;
+        case OP_REMOVE_INSPECTION_PORT:
+            // Removal is idempotent, run it to the end
+            PortPair portPair = this.osCalls.getPortPair(args.get(0));
+            if (portPair != null) {
+                removePortPair(portPair);
+            }
+            break;
+        case OP_REMOVE_INSPECTION_PORTS:
+            Set<String> remainingPortPairIds = new HashSet<>();
+            for (String remainingPortPairId : args) {
+                if (this.osCalls.getPortPair(remainingPortPairId) != null) {
+                    remainingPortPairIds.add(remainingPortPairId);
+                }
+            }
+            if (!remainingPortPairIds.isEmpty()) {
+                removePortPairs(remainingPortPairIds);
+            }
+            break;
+        case OP_INSTALL_INSPECTION_HOOK:
+            // Once in a chain, the classifier is a hook. Outside of any chain it is an orphan.
+            String flowClassifierId = op.getStep(STEP_FLOW_CLASSIFIER_CREATED);
+            if (flowClassifierId == null) {
+                FlowClassifier flowClassifier = fetchFlowClassifierByName(this.osCalls,
+                        ResourceNames.flowClassifierName(args.get(0), args.get(1)), args.get(0));
+                flowClassifierId = flowClassifier != null ? flowClassifier.getId() : null;
+            }
+            if (flowClassifierId != null && this.utils.fetchContainingPortChainForFC(flowClassifierId) == null) {
+                this.osCalls.deleteFlowClassifier(flowClassifierId);
+                this.nameIndex.removeId(flowClassifierId);
+            }
+            break;
+        case OP_AGGREGATE_INSPECTION_HOOKS:
+            // The new blocks and the detached hooks which are not in the chain are orphans, whichever side of the
+            // chain update the crash happened
+            recoverAggregateInspectionHooks(op);
+            break;
+        case OP_UPDATE_NETWORK_ELEMENT:
+            // The chain was emptied but never got its new groups
+            PortChain clearedPortChain = this.osCalls.getPortChain(args.get(0));
+            if (!op.hasStep(STEP_PORT_CHAIN_UPDATED) && clearedPortChain != null
+                    && clearedPortChain.getPortPairGroups().isEmpty() && args.size() > 1) {
+                PortChain portChainUpdate = Builders.portChain()
+                        .portPairGroups(new ArrayList<>(args.subList(1, args.size()))).build();
+                this.osCalls.updatePortChain(args.get(0), portChainUpdate);
+            }
+            break;
+        default:
+            LOG.warn("Unknown journaled operation {}", op);
+        }
+    }
+
+    private void recoverAggregateInspectionHooks(PendingOperation op) {
+        List<String> args = op.getArgs();
+        String portChainId = args.get(0);
+
+        Set<String> candidateIds = new LinkedHashSet<>();
+        candidateIds.addAll(splitIds(op.getStep(STEP_FLOW_CLASSIFIERS_CREATED)));
+        candidateIds.addAll(splitIds(op.getStep(STEP_PORT_CHAIN_UPDATED)));
+        if (args.size() > 2) {
+            candidateIds.addAll(splitIds(args.get(1)));
+            if (!op.hasStep(STEP_FLOW_CLASSIFIERS_CREATED)) {
+                // blocks may have been created before the step was recorded, they are found by name
+                Set<String> plannedNames = new HashSet<>(splitIds(args.get(2)));
+                for (FlowClassifier flowClassifier : this.osCalls.listFlowClassifiers()) {
+                    if (plannedNames.contains(flowClassifier.getName())) {
+                        candidateIds.add(flowClassifier.getId());
+                    }
+                }
+            }
+        }
+
+        PortChain portChain = this.osCalls.getPortChain(portChainId);
+        if (portChain != null && portChain.getFlowClassifiers() != null) {
+            candidateIds.removeAll(portChain.getFlowClassifiers());
+        }
+        for (String flowClassifierId : candidateIds) {
+            this.osCalls.deleteFlowClassifier(flowClassifierId);
+            this.hookIndex.remove(flowClassifierId);
+            this.nameIndex.removeId(flowClassifierId);
+        }
+        this.aggregateHookIndex.removePortChain(portChainId);
+    }
+
+    private static List<String> splitIds(String ids) {
+        return ids == null || ids.isEmpty() ? Collections.emptyList() : Arrays.asList(ids.split(","));
+    }
+
+    /**
+     * @param elementId an element id read back from the journal, where a null id is recorded as empty
+     */
+    private static NetworkElement recoveredElement(String elementId) {
+        return elementId.isEmpty() ? null : new NetworkElementImpl(elementId, null, null, null);
+    }
+
+    /**
+     * Finds the port pair through the name index with a single GET, falling back to a listing of the port pairs
+     * filtered on the ingress and egress ports.
+     */
+    private PortPair fetchPortPairByNetworkElements(OsCalls calls, NetworkElement ingress, NetworkElement egress) {
+        String ingressId = elementId(ingress);
+        String egressId = elementId(egress);
+        String name = ResourceNames.portPairName(ingressId, egressId);
+        String portPairId = this.nameIndex.getId(name);
+
+        if (portPairId != null) {
+            PortPair portPair = calls.getPortPair(portPairId);
+            if (portPair != null && Objects.equals(ingressId, portPair.getIngressId())
+                    && Objects.equals(egressId, portPair.getEgressId())) {
+                return portPair;
+            }
+            this.nameIndex.removeId(portPairId);
+        }
+
+        PortPair portPair = utils(calls).fetchPortPairByNetworkElements(ingress, egress);
+        if (portPair != null) {
+            this.nameIndex.put(name, portPair.getId());
+        }
+        return portPair;
+    }
+
+    private PortPair fetchOrCreatePortPair(OsCalls calls, NetworkElement ingress, NetworkElement egress) {
+        checkArgument(ingress != null && egress != null, "null passed for %s !", "Port Pair ingress or egress");
+        PortPair portPair = fetchPortPairByNetworkElements(calls, ingress, egress);
+        return portPair != null ? portPair : createPortPair(calls, ingress, egress);
+    }
+
+    private PortPair createPortPair(OsCalls calls, NetworkElement ingress, NetworkElement egress) {
+        String portPairName = ResourceNames.portPairName(elementId(ingress), elementId(egress));
+        PortPair portPair = Builders.portPair().egressId(egress.getElementId())
+                        .ingressId(ingress.getElementId())
+                        .name(portPairName)
+                        .description("Port Pair created by OSC")
+                        .build();
+        portPair = calls.createPortPair(portPair);
+        checkArgument(portPair != null, "Failed to create port pair for ingress %s, egress %s!",
+                      ingress.getElementId(), egress.getElementId());
+        this.nameIndex.put(portPairName, portPair.getId());
+        return portPair;
+    }
+
+    /**
+     * @param portPairIds the pairs of the group, the first of which names it
+     */
+    private PortPairGroup createPortPairGroup(OsCalls calls, List<String> portPairIds) {
+        String name = ResourceNames.portPairGroupName(portPairIds.get(0));
+        Predicate<PortPairGroup> matches = ppg -> ppg.getPortPairs().containsAll(portPairIds);
+        PortPairGroup portPairGroup = fetchByName(name, calls::getPortPairGroup, calls::listPortPairGroups, matches);
+        if (portPairGroup != null) {
+            return portPairGroup;
+        }
+
+        portPairGroup = Builders.portPairGroup()
+                .description("Port Pair Group created by OSC")
+                .name(name)
+                .portPairs(new ArrayList<>())
+                .build();
+        portPairGroup.getPortPairs().addAll(portPairIds);
+
+        try {
+            portPairGroup = calls.createPortPairGroup(portPairGroup);
+        } catch (SdnControllerResponseNsfcException e) {
+            // Neutron refuses pairs already in a group: a previous attempt may have created the group
+            PortPairGroup existing = fetchByName(name, calls::getPortPairGroup, calls::listPortPairGroups, matches);
+            if (existing == null) {
+                throw e;
+            }
+            portPairGroup = existing;
+        }
+
+        this.nameIndex.put(name, portPairGroup.getId());
+        return portPairGroup;
+    }
+
+    /**
+     * @param inspectedPort the inspected port, used only if the flow classifier does not exist yet
+     */
+    private FlowClassifier fetchOrCreateFlowClassifier(OsCalls calls, String inspectedPortId, String portChainId,
+            Port inspectedPort) {
+        String name = ResourceNames.flowClassifierName(inspectedPortId, portChainId);
+        FlowClassifier flowClassifier = fetchInspectionHook(calls, name, inspectedPortId, portChainId);
+        if (flowClassifier != null) {
+            return flowClassifier;
+        }
+
+        checkArgument(inspectedPort != null, "Cannot find %s by id: %s!", "Inspected Port", inspectedPortId);
+        // TODO: logical source port is required for creating flowclassifier due to limitation in Neutron SFC
+        Port defaultGatewayInterfacePort = this.gatewayPortIndex.getGatewayPort(inspectedPort, calls);
+        checkArgument(defaultGatewayInterfacePort != null && defaultGatewayInterfacePort.getId() != null,
+                      "Cannot find %s for Inspected Port %s!", "Default Gateway Port", inspectedPortId);
+
+        flowClassifier = calls.createFlowClassifier(
+                utils(calls).buildFlowClassifier(inspectedPortId, defaultGatewayInterfacePort.getId(), portChainId));
+        this.nameIndex.put(name, flowClassifier.getId());
+        return flowClassifier;
+    }
+
+    /**
+     * Finds the classifier of the inspected port in the port chain by its name, then among the hooks of the port
+     * chain, which also finds the classifiers not named by the plugin.
+     */
+    private FlowClassifier fetchInspectionHook(OsCalls calls, String name, String inspectedPortId,
+            String portChainId) {
+        FlowClassifier flowClassifier = fetchFlowClassifierByName(calls, name, inspectedPortId);
+        if (flowClassifier != null) {
+            return flowClassifier;
+        }
+
+        String hookId = fetchHookId(calls, inspectedPortId, portChainId);
+        flowClassifier = hookId != null ? calls.getFlowClassifier(hookId) : null;
+        if (flowClassifier != null && inspectedPortId.equals(flowClassifier.getLogicalDestinationPort())) {
+            return flowClassifier;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the classifier of the inspected port named by the plugin, which may be attached to no chain.
+     */
+    private FlowClassifier fetchFlowClassifierByName(OsCalls calls, String name, String inspectedPortId) {
+        return fetchByName(name, calls::getFlowClassifier, calls::listFlowClassifiers,
+                fc -> inspectedPortId.equals(fc.getLogicalDestinationPort()));
+    }
+
+    /**
+     * Finds an object named by the plugin through the name index with a single GET. Objects unknown to the name
+     * index, created before a restart or by another instance of the plugin, are found with a listing filtered on
+     * the name. Objects of that name which do not match are ignored.
+     */
+    private <T extends Resource> T fetchByName(String name, Function<String, T> get,
+            Function<Map<String, List<String>>, List<? extends T>> list, Predicate<T> matches) {
+        String id = this.nameIndex.getId(name);
+        if (id != null) {
+            T resource = get.apply(id);
+            if (resource != null && matches.test(resource)) {
+                return resource;
+            }
+            this.nameIndex.removeId(id);
+        }
+
+        for (T resource : list.apply(singletonMap(NAME, singletonList(name)))) {
+            if (matches.test(resource)) {
+                this.nameIndex.put(name, resource.getId());
+                return resource;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param portPairGroupId the existing group to add the pairs to, or null to create the group
+     * @return the id of the group
+     */
+    private String fetchOrCreatePortPairGroup(OsCalls calls, String portPairGroupId, List<String> portPairIds) {
+        if (portPairGroupId == null) {
+            return createPortPairGroup(calls, portPairIds).getId();
+        }
+
+        PortPairGroup portPairGroup = calls.getPortPairGroup(portPairGroupId);
+        checkArgument(portPairGroup != null, "Cannot find %s by id: %s!", "Port Pair Group", portPairGroupId);
+
+        List<String> members = new ArrayList<>(portPairGroup.getPortPairs());
+        boolean changed = false;
+        for (String portPairId : portPairIds) {
+            if (!members.contains(portPairId)) {
+                members.add(portPairId);
+                changed = true;
+            }
+        }
+        if (changed) {
+            calls.updatePortPairGroup(portPairGroupId, Builders.portPairGroup().portPairs(members).build());
+        }
+        return portPairGroupId;
+    }
+
+    private PortChain fetchOrCreatePortChain(OsCalls calls, List<String> portPairGroupIds) {
+        String portChainName = ResourceNames.portChainName(portPairGroupIds);
+        PortChain portChainCreated = fetchPortChainByName(calls, portChainName, portPairGroupIds);
+
+        if (portChainCreated == null) {
+            PortChain portChain = Builders.portChain()
+                                        .description("Port Chain object created by OSC")
+                                        .name(portChainName)
+                                        .chainParameters(new HashMap<String, String>() {{
+                                            put(CHAIN_PARAM_SYMMETRIC_TRAFFIC_FLOW, SYMMETRIC_CHAIN_ENABLED);
+                                         }})
+                                        .flowClassifiers(emptyList())
+                                        .portPairGroups(portPairGroupIds)
+                                        .build();
+
+            try {
+                portChainCreated = calls.createPortChain(portChain);
+            } catch (SdnControllerResponseNsfcException e) {
+                // Neutron refuses groups already in use: a previous attempt may have created the chain
+                portChainCreated = fetchPortChainByName(calls, portChainName, portPairGroupIds);
+                if (portChainCreated == null) {
+                    throw e;
+                }
+            }
+            this.nameIndex.put(portChainName, portChainCreated.getId());
+        }
+
+        return portChainCreated;
+    }
+
+    private PortChain fetchPortChainByName(OsCalls calls, String name, List<String> portPairGroupIds) {
+        return fetchByName(name, calls::getPortChain, calls::listPortChains,
+                pc -> pc.getPortPairGroups().equals(portPairGroupIds));
+    }
+
+    /**
+     * Looks the hook up in the loaded partitions of the hook index, then loads the partition of the project
+     * owning the port chain. A partition loaded earlier misses the hooks attached since by other clients, so the
+     * classifiers of the port chain unknown to the index are then fetched and indexed.
+     */
+    private String fetchHookId(OsCalls calls, String inspectedPortId, String portChainId) {
+        String hookId = this.hookIndex.getHookId(inspectedPortId, portChainId);
+        if (hookId != null) {
+            return hookId;
+        }
+
+        PortChain portChain = calls.getPortChain(portChainId);
+        if (portChain == null) {
+            return null;
+        }
+        String projectId = portChain.getTenantId();
+        this.hookIndex.ensureLoaded(projectId, calls);
+        hookId = this.hookIndex.getHookId(projectId, inspectedPortId, portChainId);
+        if (hookId != null) {
+            return hookId;
+        }
+
+        for (String flowClassifierId : portChain.getFlowClassifiers()) {
+            if (this.hookIndex.getPortChainId(flowClassifierId) != null) {
+                continue;
+            }
+            FlowClassifier flowClassifier = calls.getFlowClassifier(flowClassifierId);
+            if (flowClassifier == null || flowClassifier.getLogicalDestinationPort() == null) {
+                continue;
+            }
+            this.hookIndex.put(projectId, flowClassifier.getId(), flowClassifier.getLogicalDestinationPort(),
+                    portChainId);
+            if (inspectedPortId.equals(flowClassifier.getLogicalDestinationPort())) {
+                hookId = flowClassifier.getId();
+            }
+        }
+        return hookId;
+    }
+
+    /**
+     * Recomputes the blocks of each subnet from the addresses they cover plus the added and minus the removed
+     * ones, creates the new blocks, swaps them and the replaced hooks in the port chain with one update, and
+     * then deletes the classifiers no longer attached. The caller holds the lock of the aggregates.
+     *
+     * @param portChain a fresh copy of the port chain
+     */
+    private void reaggregate(AggregateHookIndex.Aggregates aggregates, PortChain portChain,
+            Map<String, ? extends Collection<Long>> addedByGateway,
+            Map<String, ? extends Collection<Long>> removedByGateway, Set<String> replacedHookIds) {
+        // The update clears the id on the object it is given
+        String portChainId = portChain.getId();
+
+        Set<String> gatewayPortIds = new HashSet<>(addedByGateway.keySet());
+        gatewayPortIds.addAll(removedByGateway.keySet());
+
+        List<Map.Entry<String, String>> createdBlocks = new ArrayList<>();
+        List<String> detachedHookIds = new ArrayList<>(replacedHookIds);
+        for (String gatewayPortId : gatewayPortIds) {
+            NavigableMap<String, String> currentBlocks = aggregates.getBlocks(gatewayPortId);
+
+            NavigableSet<Long> members = new TreeSet<>();
+            for (String cidr : currentBlocks.keySet()) {
+                CidrBlocks.addAddresses(cidr, members);
+            }
+            Collection<Long> added = addedByGateway.get(gatewayPortId);
+            if (added != null) {
+                members.addAll(added);
+            }
+            Collection<Long> removed = removedByGateway.get(gatewayPortId);
+            if (removed != null) {
+                members.removeAll(removed);
+            }
+
+            List<String> blocks = CidrBlocks.cover(members);
+            for (String cidr : blocks) {
+                if (!currentBlocks.containsKey(cidr)) {
+                    createdBlocks.add(new SimpleImmutableEntry<>(gatewayPortId, cidr));
+                }
+            }
+            for (Map.Entry<String, String> currentBlock : currentBlocks.entrySet()) {
+                if (!blocks.contains(currentBlock.getKey())) {
+                    detachedHookIds.add(currentBlock.getValue());
+                }
+            }
+        }
+
+        if (createdBlocks.isEmpty() && detachedHookIds.isEmpty()) {
+            return;
+        }
+
+        LOG.info("Re-aggregating port chain {}: creating blocks {}, detaching hooks {}", portChainId, createdBlocks,
+                detachedHookIds);
+
+        List<String> plannedNames = createdBlocks.stream()
+                .map(block -> ResourceNames.aggregateFlowClassifierName(portChainId, block.getValue()))
+                .collect(toList());
+        try (OperationJournal.Operation op = this.journal.begin(OP_AGGREGATE_INSPECTION_HOOKS, portChainId,
+                String.join(",", detachedHookIds), String.join(",", plannedNames))) {
+            List<FlowClassifier> created = createAggregateFlowClassifiers(portChainId, createdBlocks);
+            List<String> createdIds = created.stream().map(FlowClassifier::getId).collect(toList());
+            if (!createdIds.isEmpty()) {
+                op.step(STEP_FLOW_CLASSIFIERS_CREATED, String.join(",", createdIds));
+            }
+
+            List<String> flowClassifierIds = new ArrayList<>(portChain.getFlowClassifiers());
+            flowClassifierIds.removeAll(detachedHookIds);
+            flowClassifierIds.addAll(createdIds);
+            try {
+                this.osCalls.updatePortChain(portChainId, portChain.toBuilder().flowClassifiers(flowClassifierIds)
+                        .build());
+            } catch (RuntimeException e) {
+                deleteFlowClassifiers(createdIds);
+                throw e;
+            }
+            op.step(STEP_PORT_CHAIN_UPDATED, String.join(",", detachedHookIds));
+
+            for (int i = 0; i < created.size(); i++) {
+                aggregates.put(createdBlocks.get(i).getKey(), createdBlocks.get(i).getValue(), created.get(i).getId());
+            }
+            for (String hookId : detachedHookIds) {
+                aggregates.remove(hookId);
+                this.hookIndex.remove(hookId);
+            }
+
+            runAll(detachedHookIds.stream().<Consumer<OsCalls>>map(hookId -> calls -> calls
+                    .deleteFlowClassifier(hookId)).collect(toList()));
+            for (String hookId : detachedHookIds) {
+                this.nameIndex.removeId(hookId);
+            }
+        }
+    }
+
+    /**
+     * Creates the classifiers of the blocks concurrently, deleting those created if any of them fails.
+     *
+     * @param blocks the router interface port and CIDR of each block
+     * @return the classifiers in block order
+     */
+    private List<FlowClassifier> createAggregateFlowClassifiers(String portChainId,
+            List<Map.Entry<String, String>> blocks) {
+        OperationGraph graph = newGraph();
+        List<OperationGraph.Step<FlowClassifier>> steps = new ArrayList<>(blocks.size());
+        for (Map.Entry<String, String> block : blocks) {
+            steps.add(graph.step(calls -> fetchOrCreateAggregateFlowClassifier(calls, portChainId, block.getKey(),
+                    block.getValue())));
+        }
+
+        try {
+            graph.await();
+        } catch (RuntimeException e) {
+            List<String> createdIds = new ArrayList<>();
+            for (OperationGraph.Step<FlowClassifier> step : steps) {
+                try {
+                    createdIds.add(step.get().getId());
+                } catch (RuntimeException stepFailure) {
+                    // nothing was created by this step
+                }
+            }
+            deleteFlowClassifiers(createdIds);
+            throw e;
+        }
+
+        List<FlowClassifier> retVal = new ArrayList<>(steps.size());
+        for (OperationGraph.Step<FlowClassifier> step : steps) {
+            retVal.add(step.get());
+        }
+        return retVal;
+    }
+
+    private FlowClassifier fetchOrCreateAggregateFlowClassifier(OsCalls calls, String portChainId,
+            String gatewayPortId, String cidr) {
+        String name = ResourceNames.aggregateFlowClassifierName(portChainId, cidr);
+        FlowClassifier flowClassifier = fetchByName(name, calls::getFlowClassifier, calls::listFlowClassifiers,
+                fc -> cidr.equals(fc.getDestinationIpPrefix()) && gatewayPortId.equals(fc.getLogicalSourcePort()));
+        if (flowClassifier != null) {
+            return flowClassifier;
+        }
+
+        flowClassifier = calls.createFlowClassifier(
+                utils(calls).buildAggregateFlowClassifier(cidr, gatewayPortId, portChainId));
+        this.nameIndex.put(name, flowClassifier.getId());
+        return flowClassifier;
+    }
+
+    /**
+     * Compensates classifiers created for an operation which failed, logging the ones left behind.
+     */
+    private void deleteFlowClassifiers(List<String> flowClassifierIds) {
+        for (String flowClassifierId : flowClassifierIds) {
+            try {
+                this.osCalls.deleteFlowClassifier(flowClassifierId);
+                this.nameIndex.removeId(flowClassifierId);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to delete flow classifier {}, it is left unattached", flowClassifierId, e);
+            }
+        }
+    }
+
+    /**
+     * @return the IPv4 addresses of the element, or of its port in openstack if the element carries none
+     */
+    private List<String> fetchIpv4Addresses(NetworkElement inspectedPort) {
+        List<String> addresses = new ArrayList<>();
+        if (inspectedPort.getPortIPs() != null) {
+            for (String address : inspectedPort.getPortIPs()) {
+                if (CidrBlocks.isIpv4(address)) {
+                    addresses.add(address);
+                }
+            }
+        }
+
+        if (addresses.isEmpty() && inspectedPort.getElementId() != null) {
+            String address = RedirectionApiUtils.firstIpv4Address(this.osCalls.getPort(inspectedPort.getElementId()));
+            if (address != null) {
+                addresses.add(address);
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * @return the aggregate classifier of the port chain covering an address of the inspected port, or null
+     */
+    private String fetchAggregateHookId(NetworkElement inspectedPort, String portChainId) {
+        if (inspectedPort.getPortIPs() == null || inspectedPort.getPortIPs().isEmpty()) {
+            return null;
+        }
+
+        AggregateHookIndex.Aggregates aggregates = this.aggregateHookIndex.get(portChainId);
+        if (!aggregates.isLoaded()) {
+            PortChain portChain = this.osCalls.getPortChain(portChainId);
+            if (portChain == null) {
+                return null;
+            }
+            aggregates.ensureLoaded(portChain, this.osCalls);
+        }
+
+        for (String address : inspectedPort.getPortIPs()) {
+            String hookId = aggregates.getHookId(address);
+            if (hookId != null) {
+                return hookId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the calls concurrently on the read executor and waits for all of them.
+     */
+    private void runAll(List<Consumer<OsCalls>> calls) {
+        supplyAll(calls, call -> osCalls -> {
+            call.accept(osCalls);
+            return null;
+        });
+    }
+
+    /**
+     * Applies a call to each input concurrently on the read executor and returns the results in input order.
+     */
+    private <I, T> List<T> supplyAll(Collection<? extends I> inputs, Function<I, Function<OsCalls, T>> call) {
+        OperationGraph graph = newGraph();
+        List<OperationGraph.Step<T>> steps = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            steps.add(graph.step(call.apply(input)));
+        }
+        graph.await();
+
+        List<T> results = new ArrayList<>(steps.size());
+        for (OperationGraph.Step<T> step : steps) {
+            results.add(step.get());
+        }
+        return results;
+    }
+
+    private OperationGraph newGraph() {
+        return new OperationGraph(this.osCalls, this.executor);
+    }
+
+    /**
+     * @return the scans of the redirection api, made with the given calls
+     */
+    private RedirectionApiUtils utils(OsCalls calls) {
+        return calls == this.osCalls ? this.utils : new RedirectionApiUtils(calls, this.gatewayPortIndex);
+    }
+
+    private static String elementId(Element element) {
+        return element != null ? element.getElementId() : null;
+    }
+
+    /**
+     * @return whether every one of the given ips is a fixed ip of the port. Ports carry one or two ips,
+     * so a nested scan is cheaper than building a set per call.
+     */
+    private static boolean isProtectingAll(Port port, List<String> ips) {
+        if (ips == null) {
+            return true;
+        }
+        for (String ip : ips) {
+            boolean found = false;
+            if (port.getFixedIps() != null) {
+                for (IP fixedIp : port.getFixedIps()) {
+                    if (Objects.equals(fixedIp.getIpAddress(), ip)) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the port chain of a flow classifier through the hook index, falling back to a scan of
+     * the port chains if the classifier is not indexed or the index is out of date.
+     */
+    private PortChain fetchContainingPortChainForFC(OsCalls calls, String flowClassifierId) {
+        String portChainId = this.hookIndex.getPortChainId(flowClassifierId);
+
+        if (portChainId != null) {
+            PortChain portChain = calls.getPortChain(portChainId);
+            if (portChain != null && portChain.getFlowClassifiers().contains(flowClassifierId)) {
+                return portChain;
+            }
+        }
+
+        return utils(calls).fetchContainingPortChainForFC(flowClassifierId);
+    }
+
+    /**
+     * Like {@link #fetchContainingPortChainForFC(OsCalls, String)}, with the indexed chain read from the chain
+     * view.
+     */
+    private String fetchContainingPortChainIdForFC(String flowClassifierId) {
+        String portChainId = this.hookIndex.getPortChainId(flowClassifierId);
+
+        if (portChainId != null) {
+            PortChainView.Chain portChain = this.portChainView.getChain(portChainId, this.osCalls);
+            if (portChain != null && portChain.getFlowClassifierIds().contains(flowClassifierId)) {
+                return portChainId;
+            }
+        }
+
+        PortChain portChain = this.utils.fetchContainingPortChainForFC(flowClassifierId);
+        return portChain != null ? portChain.getId() : null;
+    }
 }
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.api;
+
+import static org.osc.sdk.controller.Constants.PLUGIN_NAME;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.osc.controller.nsfc.utils.TopologyChange;
+import org.osc.sdk.controller.api.SdnControllerApi;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+
+/**
+ * Posts the topology changes of the plugin to Event Admin, under {@link #TOPIC_PREFIX} followed by the kind of
+ * change. Events are posted from a single thread, so they are delivered in sequence order.
+ *
+ * The component is only satisfied when Event Admin is available; the plugin works without it.
+ */
+@Component(immediate = true)
+public class TopologyEventPublisher {
+
+    public static final String TOPIC_PREFIX = "org/osc/nsfc/topology/";
+
+    public static final String SOURCE = "source";
+    public static final String SEQUENCE = "sequence";
+    public static final String RESOURCE_TYPE = "resource.type";
+    public static final String RESOURCE_ID = "resource.id";
+    public static final String EXTERNAL = "external";
+
+    private SdnControllerApi controller;
+    private EventAdmin eventAdmin;
+
+    private ExecutorService poster;
+    private Consumer<TopologyChange> listener;
+
+    @Reference(target = "(" + PLUGIN_NAME + "=Neutron-sfc)")
+    void setController(SdnControllerApi controller) {
+        this.controller = controller;
+    }
+
+    @Reference
+    void setEventAdmin(EventAdmin eventAdmin) {
+        this.eventAdmin = eventAdmin;
+    }
+
+    @Activate
+    void activate() {
+        this.poster = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "nsfc-topology-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.listener = this::post;
+        ((NeutronSfcSdnControllerApi) this.controller).addTopologyListener(this.listener);
+    }
+
+    @Deactivate
+    void deactivate() {
+        ((NeutronSfcSdnControllerApi) this.controller).removeTopologyListener(this.listener);
+        this.poster.shutdown();
+    }
+
+    private void post(TopologyChange change) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(SOURCE, change.getSource());
+        properties.put(SEQUENCE, change.getSequence());
+        properties.put(RESOURCE_TYPE, change.getResourceType().name());
+        properties.put(RESOURCE_ID, change.getResourceId());
+        properties.put(EXTERNAL, change.isExternal());
+        properties.put(EventConstants.TIMESTAMP, change.getTimestamp());
+        Event event = new Event(TOPIC_PREFIX + change.getKind().name(), properties);
+
+        try {
+            this.poster.execute(() -> this.eventAdmin.postEvent(event));
+        } catch (RejectedExecutionException e) {
+            // deactivating
+        }
+    }
+}
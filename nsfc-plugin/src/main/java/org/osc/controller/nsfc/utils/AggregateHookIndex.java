@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+
+/**
+ * Index of the destination CIDR flow classifiers aggregating the inspected ports of a port chain, by port chain,
+ * then by the router interface port of the subnet of the inspected ports, then by CIDR.
+ *
+ * The blocks of a subnet cover exactly the addresses of its inspected ports, so they are the membership of the
+ * aggregate: adding or removing a port recomputes the cover and only the blocks which differ are created or
+ * deleted. A chain is loaded from openstack once and reloaded when one of its known classifiers is no longer
+ * attached to it.
+ */
+public class AggregateHookIndex {
+
+    private final ConcurrentMap<String, Aggregates> aggregatesByPortChainId = new ConcurrentHashMap<>();
+
+    /**
+     * @return the aggregates of the port chain, not loaded yet if the chain was not indexed
+     */
+    public Aggregates get(String portChainId) {
+        return this.aggregatesByPortChainId.computeIfAbsent(portChainId, id -> new Aggregates());
+    }
+
+    /**
+     * @return the aggregate classifier of the port chain covering the address, or null if the chain is not
+     * indexed or no block covers the address
+     */
+    public String getHookId(String portChainId, String address) {
+        Aggregates aggregates = this.aggregatesByPortChainId.get(portChainId);
+        return aggregates != null ? aggregates.getHookId(address) : null;
+    }
+
+    public void remove(String hookId) {
+        for (Aggregates aggregates : this.aggregatesByPortChainId.values()) {
+            aggregates.remove(hookId);
+        }
+    }
+
+    public void removePortChain(String portChainId) {
+        this.aggregatesByPortChainId.remove(portChainId);
+    }
+
+    /**
+     * The aggregate classifiers of one port chain. Callers changing the aggregates in openstack hold its lock
+     * from reading the blocks until the index is updated, so concurrent changes to a chain do not compute
+     * their covers from the same blocks.
+     */
+    public static final class Aggregates {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, NavigableMap<String, String>> hookIdsByGateway = new HashMap<>();
+        private volatile boolean loaded;
+
+        public boolean isLoaded() {
+            return this.loaded;
+        }
+
+        /**
+         * Loads the aggregates from openstack unless the indexed classifiers are all attached to the port chain.
+         *
+         * @param portChain a fresh copy of the port chain
+         */
+        public void ensureLoaded(PortChain portChain, OsCalls osCalls) {
+            ensureLoaded(portChain, () -> osCalls.listFlowClassifiers());
+        }
+
+        /**
+         * Like {@link #ensureLoaded(PortChain, OsCalls)}, from a listing of all the flow classifiers.
+         */
+        public void ensureLoaded(PortChain portChain, List<? extends FlowClassifier> flowClassifiers) {
+            ensureLoaded(portChain, () -> flowClassifiers);
+        }
+
+        private void ensureLoaded(PortChain portChain, Supplier<List<? extends FlowClassifier>> flowClassifiers) {
+            this.lock.lock();
+            try {
+                if (!isAttachedTo(portChain)) {
+                    load(portChain, flowClassifiers);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        public void lock() {
+            this.lock.lock();
+        }
+
+        public void unlock() {
+            this.lock.unlock();
+        }
+
+        /**
+         * @return the classifier ids by CIDR of the subnet of the router interface port, in a new map
+         */
+        public NavigableMap<String, String> getBlocks(String gatewayPortId) {
+            this.lock.lock();
+            try {
+                NavigableMap<String, String> blocks = this.hookIdsByGateway.get(gatewayPortId);
+                return blocks != null ? new TreeMap<>(blocks) : new TreeMap<>();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * @return the router interface port of the subnet with a block covering the address, or null
+         */
+        public String findGatewayPortId(String address) {
+            this.lock.lock();
+            try {
+                for (Map.Entry<String, NavigableMap<String, String>> gateway : this.hookIdsByGateway.entrySet()) {
+                    if (findBlock(gateway.getValue(), address) != null) {
+                        return gateway.getKey();
+                    }
+                }
+                return null;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * @return the classifier of the block covering the address, or null
+         */
+        public String getHookId(String address) {
+            this.lock.lock();
+            try {
+                for (NavigableMap<String, String> blocks : this.hookIdsByGateway.values()) {
+                    String cidr = findBlock(blocks, address);
+                    if (cidr != null) {
+                        return blocks.get(cidr);
+                    }
+                }
+                return null;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * @return the block of the map covering the address, or null
+         */
+        public static String findBlock(Map<String, String> blocks, String address) {
+            if (!CidrBlocks.isIpv4(address)) {
+                return null;
+            }
+            for (String cidr : blocks.keySet()) {
+                if (CidrBlocks.contains(cidr, address)) {
+                    return cidr;
+                }
+            }
+            return null;
+        }
+
+        public void put(String gatewayPortId, String cidr, String hookId) {
+            this.lock.lock();
+            try {
+                this.hookIdsByGateway.computeIfAbsent(gatewayPortId, id -> new TreeMap<>()).put(cidr, hookId);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        public void remove(String hookId) {
+            this.lock.lock();
+            try {
+                for (NavigableMap<String, String> blocks : this.hookIdsByGateway.values()) {
+                    blocks.values().remove(hookId);
+                }
+                this.hookIdsByGateway.values().removeIf(Map::isEmpty);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private List<String> getHookIds() {
+            List<String> hookIds = new ArrayList<>();
+            for (NavigableMap<String, String> blocks : this.hookIdsByGateway.values()) {
+                hookIds.addAll(blocks.values());
+            }
+            return hookIds;
+        }
+
+        private boolean isAttachedTo(PortChain portChain) {
+            return this.loaded && portChain.getFlowClassifiers() != null
+                    && portChain.getFlowClassifiers().containsAll(getHookIds());
+        }
+
+        private void load(PortChain portChain, Supplier<List<? extends FlowClassifier>> flowClassifiers) {
+            this.hookIdsByGateway.clear();
+            Set<String> attached = portChain.getFlowClassifiers() != null
+                    ? new HashSet<>(portChain.getFlowClassifiers()) : new HashSet<>();
+
+            if (!attached.isEmpty()) {
+                for (FlowClassifier flowClassifier : flowClassifiers.get()) {
+                    if (attached.contains(flowClassifier.getId()) && flowClassifier.getName() != null
+                            && flowClassifier.getName().startsWith(ResourceNames.AGGREGATE_FLOW_CLASSIFIER_PREFIX)
+                            && flowClassifier.getDestinationIpPrefix() != null
+                            && flowClassifier.getLogicalSourcePort() != null) {
+                        put(flowClassifier.getLogicalSourcePort(), flowClassifier.getDestinationIpPrefix(),
+                                flowClassifier.getId());
+                    }
+                }
+            }
+
+            this.loaded = true;
+        }
+    }
+}
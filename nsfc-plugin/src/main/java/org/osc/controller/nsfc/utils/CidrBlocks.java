@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * IPv4 address and CIDR block arithmetic, addresses being held as longs.
+ */
+public final class CidrBlocks {
+
+    private static final int IPV4_BITS = 32;
+    private static final long IPV4_SPACE = 1L << IPV4_BITS;
+
+    private CidrBlocks() {
+    }
+
+    public static boolean isIpv4(String address) {
+        return address != null && address.indexOf(':') < 0 && address.indexOf('.') > 0;
+    }
+
+    public static long toLong(String address) {
+        String[] octets = address.split("\\.", -1);
+        checkArgument(octets.length == 4, "Invalid IPv4 address: %s!", address);
+
+        long value = 0;
+        for (String octet : octets) {
+            int parsed;
+            try {
+                parsed = Integer.parseInt(octet);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid IPv4 address: %s!", address), e);
+            }
+            checkArgument(parsed >= 0 && parsed <= 255, "Invalid IPv4 address: %s!", address);
+            value = value << 8 | parsed;
+        }
+        return value;
+    }
+
+    public static String toAddress(long value) {
+        return (value >>> 24 & 0xff) + "." + (value >>> 16 & 0xff) + "." + (value >>> 8 & 0xff) + "." + (value & 0xff);
+    }
+
+    /**
+     * @return the smallest set of CIDR blocks covering exactly the given addresses, in address order
+     */
+    public static List<String> cover(Collection<Long> addresses) {
+        NavigableSet<Long> sorted = addresses instanceof NavigableSet ? (NavigableSet<Long>) addresses
+                : new TreeSet<>(addresses);
+        List<String> blocks = new ArrayList<>();
+
+        Long rangeStart = null;
+        long rangeEnd = 0;
+        for (long address : sorted) {
+            if (rangeStart != null && address == rangeEnd + 1) {
+                rangeEnd = address;
+                continue;
+            }
+            if (rangeStart != null) {
+                addRange(rangeStart, rangeEnd, blocks);
+            }
+            rangeStart = address;
+            rangeEnd = address;
+        }
+        if (rangeStart != null) {
+            addRange(rangeStart, rangeEnd, blocks);
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Adds every address of the block to the given collection.
+     */
+    public static void addAddresses(String cidr, Collection<Long> addresses) {
+        long first = firstAddress(cidr);
+        long size = size(cidr);
+        for (long address = first; address < first + size; address++) {
+            addresses.add(address);
+        }
+    }
+
+    public static boolean contains(String cidr, String address) {
+        if (!isIpv4(address)) {
+            return false;
+        }
+        long value = toLong(address);
+        long first = firstAddress(cidr);
+        return value >= first && value < first + size(cidr);
+    }
+
+    private static void addRange(long start, long end, List<String> blocks) {
+        while (start <= end) {
+            // the largest block aligned on the start which does not run past the end
+            long size = start == 0 ? IPV4_SPACE : Long.lowestOneBit(start);
+            while (start + size - 1 > end) {
+                size >>= 1;
+            }
+            blocks.add(toAddress(start) + "/" + (IPV4_BITS - Long.numberOfTrailingZeros(size)));
+            start += size;
+        }
+    }
+
+    private static long firstAddress(String cidr) {
+        int slash = cidr.indexOf('/');
+        long address = toLong(slash < 0 ? cidr : cidr.substring(0, slash));
+        return address & ~(size(cidr) - 1);
+    }
+
+    private static long size(String cidr) {
+        int slash = cidr.indexOf('/');
+        if (slash < 0) {
+            return 1;
+        }
+        int prefixLength;
+        try {
+            prefixLength = Integer.parseInt(cidr.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid IPv4 CIDR: %s!", cidr), e);
+        }
+        checkArgument(prefixLength >= 0 && prefixLength <= IPV4_BITS, "Invalid IPv4 CIDR: %s!", cidr);
+        return 1L << (IPV4_BITS - prefixLength);
+    }
+}
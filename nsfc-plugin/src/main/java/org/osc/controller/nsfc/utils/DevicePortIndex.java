@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static org.osc.controller.nsfc.utils.NegativeCache.ResourceType.PORT;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.options.PortListOptions;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+
+/**
+ * Caches the ports of a device (device_id) as network elements.
+ *
+ * Single lookups use a device_id filtered port query. Bulk lookups of more than
+ * {@link #BULK_LIST_THRESHOLD} uncached devices resolve all of them with one port listing, limited to the
+ * project of the devices when the caller knows it.
+ *
+ * Cached ports are dropped before the TTL runs out when the topology feed reports a change to an object referring
+ * to one of the ports of the device, and when a GET recorded in the negative cache found one of them missing.
+ *
+ * The cached elements are never handed out: callers get copies, which they are free to modify.
+ */
+public class DevicePortIndex {
+
+    static final int BULK_LIST_THRESHOLD = 5;
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final Comparator<Port> BY_PORT_ID = Comparator.comparing(Port::getId,
+            Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final Map<String, CachedPorts> portsByDeviceId = new ConcurrentHashMap<>();
+    private final Map<String, String> deviceIdsByPortId = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    public DevicePortIndex() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public DevicePortIndex(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the ports owned by the device ordered by port id, or an empty list if the device has no ports
+     */
+    public List<NetworkElementImpl> getPorts(String deviceId, OsCalls osCalls) {
+        CachedPorts cached = getCached(deviceId, osCalls);
+        if (cached != null) {
+            return copies(cached.ports);
+        }
+
+        List<? extends Port> ports = osCalls.listPorts(PortListOptions.create().deviceId(deviceId));
+        List<Port> owned = new ArrayList<>();
+        for (Port port : ports) {
+            if (deviceId.equals(port.getDeviceId())) {
+                owned.add(port);
+            }
+        }
+
+        return cache(deviceId, owned);
+    }
+
+    /**
+     * Resolves the ports of several devices at once.
+     *
+     * @return the ports of every requested device, keyed by device id
+     */
+    public Map<String, List<NetworkElementImpl>> getPorts(Collection<String> deviceIds, OsCalls osCalls) {
+        return getPorts(deviceIds, null, osCalls);
+    }
+
+    /**
+     * Resolves the ports of several devices of one project at once, without listing the ports of other projects.
+     *
+     * @param projectId the project owning the devices, or null if unknown
+     * @return the ports of every requested device, keyed by device id
+     */
+    public Map<String, List<NetworkElementImpl>> getPorts(Collection<String> deviceIds, String projectId,
+            OsCalls osCalls) {
+        Map<String, List<NetworkElementImpl>> result = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+
+        for (String deviceId : deviceIds) {
+            CachedPorts cached = getCached(deviceId, osCalls);
+            if (cached != null) {
+                result.put(deviceId, copies(cached.ports));
+            } else {
+                missing.add(deviceId);
+            }
+        }
+
+        if (missing.size() <= BULK_LIST_THRESHOLD) {
+            for (String deviceId : missing) {
+                result.put(deviceId, getPorts(deviceId, osCalls));
+            }
+            return result;
+        }
+
+        Map<String, List<Port>> portsByDevice = new HashMap<>();
+        List<? extends Port> ports = projectId != null ? osCalls.listPorts(PortListOptions.create().tenantId(projectId))
+                : osCalls.listPorts();
+        for (Port port : ports) {
+            if (port.getDeviceId() != null && missing.contains(port.getDeviceId())) {
+                portsByDevice.computeIfAbsent(port.getDeviceId(), id -> new ArrayList<>()).add(port);
+            }
+        }
+
+        for (String deviceId : missing) {
+            List<Port> owned = portsByDevice.getOrDefault(deviceId, Collections.emptyList());
+            result.put(deviceId, cache(deviceId, owned));
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops the cached ports of the device owning the port, if any.
+     */
+    public void invalidatePort(String portId) {
+        String deviceId = this.deviceIdsByPortId.get(portId);
+        if (deviceId != null) {
+            invalidate(deviceId);
+        }
+    }
+
+    public void invalidate(String deviceId) {
+        CachedPorts cached = this.portsByDeviceId.remove(deviceId);
+        if (cached != null) {
+            for (NetworkElementImpl port : cached.ports) {
+                this.deviceIdsByPortId.remove(port.getElementId(), deviceId);
+            }
+        }
+    }
+
+    /**
+     * Drops the ports of the devices owning the ports the change refers to. Registered with the topology feed of
+     * the VC, the change is handed over while the feed is locked.
+     */
+    public void onTopologyChange(TopologyChange change) {
+        for (String portId : change.getPortIds()) {
+            invalidatePort(portId);
+        }
+    }
+
+    /**
+     * @return the unexpired ports of the device, or null if they are not cached or one of them is known missing
+     */
+    private CachedPorts getCached(String deviceId, OsCalls osCalls) {
+        CachedPorts cached = this.portsByDeviceId.get(deviceId);
+        if (cached == null) {
+            return null;
+        }
+
+        NegativeCache negativeCache = osCalls.getNegativeCache();
+        if (cached.isExpired()
+                || cached.ports.stream().anyMatch(port -> negativeCache.isMissing(PORT, port.getElementId()))) {
+            invalidate(deviceId);
+            return null;
+        }
+        return cached;
+    }
+
+    private List<NetworkElementImpl> cache(String deviceId, List<Port> ports) {
+        List<Port> sorted = new ArrayList<>(ports);
+        sorted.sort(BY_PORT_ID);
+
+        List<NetworkElementImpl> elements = new ArrayList<>(sorted.size());
+        for (Port port : sorted) {
+            elements.add(RedirectionApiUtils.toNetworkElement(port, deviceId));
+        }
+        elements = Collections.unmodifiableList(elements);
+
+        // A device without ports may simply not be wired yet, so only positive results are kept
+        invalidate(deviceId);
+        if (!elements.isEmpty()) {
+            for (NetworkElementImpl element : elements) {
+                this.deviceIdsByPortId.put(element.getElementId(), deviceId);
+            }
+            this.portsByDeviceId.put(deviceId, new CachedPorts(elements, System.currentTimeMillis() + this.ttlMillis));
+        }
+
+        return copies(elements);
+    }
+
+    private static List<NetworkElementImpl> copies(List<NetworkElementImpl> elements) {
+        List<NetworkElementImpl> retVal = new ArrayList<>(elements.size());
+        for (NetworkElementImpl element : elements) {
+            retVal.add(new NetworkElementImpl(element.getElementId(), copy(element.getMacAddresses()),
+                    copy(element.getPortIPs()), element.getParentId()));
+        }
+        return retVal;
+    }
+
+    private static List<String> copy(List<String> values) {
+        return values != null ? new ArrayList<>(values) : null;
+    }
+
+    private static final class CachedPorts {
+        private final List<NetworkElementImpl> ports;
+        private final long expiresAt;
+
+        CachedPorts(List<NetworkElementImpl> ports, long expiresAt) {
+            this.ports = ports;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= this.expiresAt;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.openstack.common.ListResult;
+import org.openstack4j.openstack.internal.BaseOpenStackService;
+import org.openstack4j.openstack.networking.domain.NeutronPort.Ports;
+import org.openstack4j.openstack.networking.domain.ext.NeutronFlowClassifier.FlowClassifiers;
+import org.openstack4j.openstack.networking.domain.ext.NeutronPortChain.PortChains;
+import org.openstack4j.openstack.networking.domain.ext.NeutronPortPair.PortPairs;
+import org.openstack4j.openstack.networking.domain.ext.NeutronPortPairGroup.PortPairGroups;
+import org.openstack4j.openstack.networking.internal.BaseNetworkingServices;
+
+/**
+ * Neutron list queries with server side filters, which the openstack4j SFC services do not take. Each filter
+ * is sent once per value and Neutron returns the objects matching any of the values, e.g. the filter
+ * {@code name} with the values {@code a} and {@code b} is sent as {@code ?name=a&name=b}.
+ *
+ * Like the openstack4j services, the queries are made with the client session of the current thread.
+ */
+public class FilteredListings extends BaseNetworkingServices {
+
+    public static final String PROJECT_ID = "project_id";
+    public static final String NAME = "name";
+    public static final String INGRESS = "ingress";
+    public static final String EGRESS = "egress";
+    public static final String FIXED_IPS = "fixed_ips";
+
+    /**
+     * @return the value of the {@link #FIXED_IPS} filter matching the ports with the ip address
+     */
+    public static String ipAddress(String ipAddress) {
+        return "ip_address=" + ipAddress;
+    }
+
+    public List<? extends FlowClassifier> listFlowClassifiers(Map<String, ? extends Collection<String>> filters) {
+        return list(FlowClassifiers.class, "/sfc/flow_classifiers", filters);
+    }
+
+    public List<? extends PortChain> listPortChains(Map<String, ? extends Collection<String>> filters) {
+        return list(PortChains.class, "/sfc/port_chains", filters);
+    }
+
+    public List<? extends PortPairGroup> listPortPairGroups(Map<String, ? extends Collection<String>> filters) {
+        return list(PortPairGroups.class, "/sfc/port_pair_groups", filters);
+    }
+
+    public List<? extends PortPair> listPortPairs(Map<String, ? extends Collection<String>> filters) {
+        return list(PortPairs.class, "/sfc/port_pairs", filters);
+    }
+
+    public List<? extends Port> listPorts(Map<String, ? extends Collection<String>> filters) {
+        return list(Ports.class, "/ports", filters);
+    }
+
+    private <T> List<T> list(Class<? extends ListResult<T>> type, String path,
+            Map<String, ? extends Collection<String>> filters) {
+        BaseOpenStackService.Invocation<? extends ListResult<T>> invocation = get(type, uri(path));
+        for (Map.Entry<String, ? extends Collection<String>> filter : filters.entrySet()) {
+            for (String value : filter.getValue()) {
+                invocation.param(filter.getKey(), value);
+            }
+        }
+        return invocation.execute().getList();
+    }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.options.PortListOptions;
+
+/**
+ * Caches the router interface ports by the subnet of their first fixed ip, the default gateway ports flow
+ * classifiers are sourced from.
+ *
+ * The ports are loaded with a device_owner filtered port query rather than a listing of every port, and
+ * reloaded when they expire or when a subnet has no router interface among them, since it may just have
+ * been added. Such a miss reloads them at most once per minimum refresh interval.
+ */
+public class GatewayPortIndex {
+
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long DEFAULT_MIN_REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final long ttlMillis;
+    private final long minRefreshMillis;
+    private volatile GatewayPorts gatewayPorts;
+
+    public GatewayPortIndex() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public GatewayPortIndex(long ttlMillis) {
+        this(ttlMillis, DEFAULT_MIN_REFRESH_MILLIS);
+    }
+
+    /**
+     * @param minRefreshMillis the minimum age of the loaded ports before a subnet without router interface
+     * reloads them
+     */
+    public GatewayPortIndex(long ttlMillis, long minRefreshMillis) {
+        this.ttlMillis = ttlMillis;
+        this.minRefreshMillis = minRefreshMillis;
+    }
+
+    /**
+     * @return the router interface port on the subnet of the inspected port, or null
+     */
+    public Port getGatewayPort(Port inspectedPort, OsCalls osCalls) {
+        String subnetId = RedirectionApiUtils.firstSubnetId(inspectedPort);
+        if (subnetId == null) {
+            return null;
+        }
+
+        GatewayPorts gatewayPorts = this.gatewayPorts;
+        if (gatewayPorts != null && !gatewayPorts.isExpired()) {
+            Port port = gatewayPorts.portsBySubnetId.get(subnetId);
+            if (port != null || gatewayPorts.age() < this.minRefreshMillis) {
+                return port;
+            }
+        }
+
+        return load(osCalls).get(subnetId);
+    }
+
+    /**
+     * @return the router interface ports by subnet id, freshly loaded
+     */
+    public Map<String, Port> load(OsCalls osCalls) {
+        return load(osCalls.listPorts(
+                PortListOptions.create().deviceOwner(RedirectionApiUtils.QUERY_PARAM_ROUTER_DEVICE_OWNER)));
+    }
+
+    /**
+     * Replaces the cached ports with a port listing, of which only the router interface ports are kept.
+     *
+     * @return the router interface ports by subnet id
+     */
+    public Map<String, Port> load(List<? extends Port> ports) {
+        Map<String, Port> portsBySubnetId = new HashMap<>();
+        for (Port port : ports) {
+            String subnetId = RedirectionApiUtils.firstSubnetId(port);
+            // The first port of a subnet wins, as with a scan of the listing
+            if (RedirectionApiUtils.QUERY_PARAM_ROUTER_DEVICE_OWNER.equals(port.getDeviceOwner()) && subnetId != null
+                    && !portsBySubnetId.containsKey(subnetId)) {
+                portsBySubnetId.put(subnetId, port);
+            }
+        }
+
+        portsBySubnetId = Collections.unmodifiableMap(portsBySubnetId);
+        this.gatewayPorts = new GatewayPorts(portsBySubnetId, System.currentTimeMillis() + this.ttlMillis);
+        return portsBySubnetId;
+    }
+
+    public void invalidate() {
+        this.gatewayPorts = null;
+    }
+
+    private static final class GatewayPorts {
+        private final Map<String, Port> portsBySubnetId;
+        private final long loadedAt = System.currentTimeMillis();
+        private final long expiresAt;
+
+        GatewayPorts(Map<String, Port> portsBySubnetId, long expiresAt) {
+            this.portsBySubnetId = portsBySubnetId;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= this.expiresAt;
+        }
+
+        long age() {
+            return System.currentTimeMillis() - this.loadedAt;
+        }
+    }
+}
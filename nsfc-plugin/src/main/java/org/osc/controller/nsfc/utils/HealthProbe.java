@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background-refreshed Keystone and Neutron SFC reachability probe.
+ *
+ * Each key (VC and region) is probed synchronously the first time it is asked for and then every
+ * interval on a shared scheduler thread, so reading the status is a map lookup. Keys nobody asked for
+ * during {@link #IDLE_INTERVALS} intervals stop being probed.
+ *
+ * Neutron SFC is probed with a GET of a port chain which does not exist, so a probe costs the same whatever
+ * the size of the topology; the expected 404 proves the service answers.
+ */
+public class HealthProbe {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HealthProbe.class);
+
+    private static final int IDLE_INTERVALS = 10;
+    private static final String PROBE_PORT_CHAIN_ID = "00000000-0000-0000-0000-000000000000";
+
+    private final ScheduledExecutorService scheduler;
+    private volatile long intervalMillis;
+    private final ConcurrentMap<String, ProbeEntry> entries = new ConcurrentHashMap<>();
+
+    public HealthProbe(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "nsfc-health-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param key identifies the probed endpoint, e.g. VC name and region
+     * @param authenticator authenticates against Keystone and returns a client scoped to the endpoint
+     * @return the latest probe result for the key
+     */
+    public Result getResult(String key, Callable<OSClientV3> authenticator) {
+        ProbeEntry entry = this.entries.computeIfAbsent(key, k -> new ProbeEntry(authenticator));
+        entry.lastRequested = System.currentTimeMillis();
+
+        Result result = entry.result;
+        if (result != null) {
+            return result;
+        }
+
+        synchronized (entry) {
+            if (entry.result == null) {
+                entry.result = probe(authenticator);
+                entry.future = this.scheduler.scheduleWithFixedDelay(() -> refresh(key, entry),
+                        this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+            }
+            return entry.result;
+        }
+    }
+
+    /**
+     * Changes the refresh interval. Probed keys keep their latest result and are rescheduled at the new
+     * interval, so the status stays available throughout.
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        if (intervalMillis == this.intervalMillis) {
+            return;
+        }
+
+        this.intervalMillis = intervalMillis;
+        this.entries.forEach((key, entry) -> {
+            synchronized (entry) {
+                if (entry.future != null && entry.future.cancel(false)) {
+                    entry.future = this.scheduler.scheduleWithFixedDelay(() -> refresh(key, entry),
+                            intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    public void close() {
+        this.scheduler.shutdownNow();
+        this.entries.clear();
+    }
+
+    private void refresh(String key, ProbeEntry entry) {
+        if (System.currentTimeMillis() - entry.lastRequested > IDLE_INTERVALS * this.intervalMillis) {
+            LOG.debug("Health probe for {} is idle, stopping", key);
+            this.entries.remove(key, entry);
+            if (entry.future != null) {
+                entry.future.cancel(false);
+            }
+            return;
+        }
+
+        entry.result = probe(entry.authenticator);
+    }
+
+    private static Result probe(Callable<OSClientV3> authenticator) {
+        long start = System.nanoTime();
+        OSClientV3 osClient;
+
+        try {
+            osClient = authenticator.call();
+        } catch (Exception e) {
+            LOG.warn("Keystone is not reachable: {}", e.getMessage());
+            return new Result(false, false, elapsedMillis(start), -1, e.getMessage());
+        }
+
+        long keystoneLatency = elapsedMillis(start);
+        start = System.nanoTime();
+
+        try {
+            // null for the 404, any other failure throws
+            osClient.sfc().portchains().get(PROBE_PORT_CHAIN_ID);
+        } catch (Exception e) {
+            LOG.warn("Neutron SFC is not reachable: {}", e.getMessage());
+            return new Result(true, false, keystoneLatency, elapsedMillis(start), e.getMessage());
+        }
+
+        return new Result(true, true, keystoneLatency, elapsedMillis(start), null);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static final class ProbeEntry {
+        private final Callable<OSClientV3> authenticator;
+        private volatile Result result;
+        private volatile long lastRequested;
+        private volatile ScheduledFuture<?> future;
+
+        ProbeEntry(Callable<OSClientV3> authenticator) {
+            this.authenticator = authenticator;
+        }
+    }
+
+    public static final class Result {
+        private final boolean keystoneReachable;
+        private final boolean sfcReachable;
+        private final long keystoneLatencyMillis;
+        private final long sfcLatencyMillis;
+        private final String error;
+        private final long probedAt = System.currentTimeMillis();
+
+        Result(boolean keystoneReachable, boolean sfcReachable, long keystoneLatencyMillis, long sfcLatencyMillis,
+                String error) {
+            this.keystoneReachable = keystoneReachable;
+            this.sfcReachable = sfcReachable;
+            this.keystoneLatencyMillis = keystoneLatencyMillis;
+            this.sfcLatencyMillis = sfcLatencyMillis;
+            this.error = error;
+        }
+
+        public boolean isHealthy() {
+            return this.keystoneReachable && this.sfcReachable;
+        }
+
+        public boolean isKeystoneReachable() {
+            return this.keystoneReachable;
+        }
+
+        public boolean isSfcReachable() {
+            return this.sfcReachable;
+        }
+
+        public long getKeystoneLatencyMillis() {
+            return this.keystoneLatencyMillis;
+        }
+
+        /**
+         * @return the Neutron SFC round-trip latency, or -1 if it was not probed
+         */
+        public long getSfcLatencyMillis() {
+            return this.sfcLatencyMillis;
+        }
+
+        public String getError() {
+            return this.error;
+        }
+
+        public long getProbedAt() {
+            return this.probedAt;
+        }
+
+        @Override
+        public String toString() {
+            return "Result [keystoneReachable=" + this.keystoneReachable + ", sfcReachable=" + this.sfcReachable
+                    + ", keystoneLatencyMillis=" + this.keystoneLatencyMillis + ", sfcLatencyMillis="
+                    + this.sfcLatencyMillis + ", error=" + this.error + "]";
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.osc.controller.nsfc.utils.FilteredListings.PROJECT_ID;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+
+/**
+ * Composite index of (inspected port id, port chain id) to flow classifier id, partitioned by the project of
+ * the port chain.
+ *
+ * Each partition is loaded once from openstack, with listings of the flow classifiers and port chains filtered on
+ * its project, and then kept up to date by the redirection api mutations, so that hook lookups by inspected port
+ * and inspection port do not need to scan flow classifiers and port chains.
+ */
+public class InspectionHookIndex {
+
+    private final TenantPartitions<Partition> partitions = new TenantPartitions<>(Partition::new);
+
+    /**
+     * Populates the partition of the project with a listing of the flow classifiers and port chains of the
+     * project. Subsequent calls for the project are no-ops until the partition is evicted.
+     *
+     * Objects without a project cannot be filtered on, the partition of the unknown project is populated
+     * from listings of all the flow classifiers and port chains, which populate the other partitions as well.
+     */
+    public void ensureLoaded(String projectId, OsCalls osCalls) {
+        Partition partition = this.partitions.get(projectId);
+        if (partition.loaded) {
+            return;
+        }
+
+        if (projectId != null) {
+            Map<String, List<String>> filters = singletonMap(PROJECT_ID, singletonList(projectId));
+            partition.ensureLoaded(() -> osCalls.listFlowClassifiers(filters),
+                    () -> osCalls.listPortChains(filters));
+        } else {
+            List<? extends FlowClassifier> flowClassifiers = osCalls.listFlowClassifiers();
+            List<? extends PortChain> portChains = osCalls.listPortChains();
+            ensureLoaded(flowClassifiers, portChains);
+            partition.ensureLoaded(() -> flowClassifiers, () -> portChains);
+        }
+    }
+
+    /**
+     * Populates the partitions of every project found in listings of all the flow classifiers and port chains,
+     * leaving the partitions which are already loaded as they are.
+     */
+    public void ensureLoaded(List<? extends FlowClassifier> flowClassifiers, List<? extends PortChain> portChains) {
+        Map<String, List<FlowClassifier>> flowClassifiersByProject = new HashMap<>();
+        for (FlowClassifier flowClassifier : flowClassifiers) {
+            flowClassifiersByProject.computeIfAbsent(projectKey(flowClassifier.getTenantId()),
+                    key -> new ArrayList<>()).add(flowClassifier);
+        }
+        Map<String, List<PortChain>> portChainsByProject = new HashMap<>();
+        for (PortChain portChain : portChains) {
+            portChainsByProject.computeIfAbsent(projectKey(portChain.getTenantId()), key -> new ArrayList<>())
+                    .add(portChain);
+        }
+
+        for (Map.Entry<String, List<PortChain>> projectPortChains : portChainsByProject.entrySet()) {
+            List<FlowClassifier> projectFlowClassifiers = flowClassifiersByProject.get(projectPortChains.getKey());
+            this.partitions.get(projectPortChains.getKey()).ensureLoaded(
+                    () -> projectFlowClassifiers != null ? projectFlowClassifiers : new ArrayList<>(),
+                    projectPortChains::getValue);
+        }
+    }
+
+    /**
+     * @return the hook of the inspected port in the port chain among the loaded partitions, or null
+     */
+    public String getHookId(String inspectedPortId, String portChainId) {
+        HookKey key = new HookKey(inspectedPortId, portChainId);
+        return this.partitions.find(partition -> partition.hookIdsByKey.get(key));
+    }
+
+    public String getHookId(String projectId, String inspectedPortId, String portChainId) {
+        return this.partitions.get(projectId).hookIdsByKey.get(new HookKey(inspectedPortId, portChainId));
+    }
+
+    /**
+     * @return the port chain the flow classifier is known to be attached to, or null if not indexed
+     */
+    public String getPortChainId(String hookId) {
+        return this.partitions.find(partition -> {
+            HookKey key = partition.keysByHookId.get(hookId);
+            return key != null ? key.portChainId : null;
+        });
+    }
+
+    public void put(String projectId, String hookId, String inspectedPortId, String portChainId) {
+        String key = projectKey(projectId);
+        this.partitions.forEach((otherProjectId, partition) -> {
+            if (!otherProjectId.equals(key)) {
+                partition.remove(hookId);
+            }
+        });
+        this.partitions.get(key).put(hookId, inspectedPortId, portChainId);
+    }
+
+    public void remove(String hookId) {
+        this.partitions.forEach((projectId, partition) -> partition.remove(hookId));
+    }
+
+    public void removePortChain(String portChainId) {
+        this.partitions.forEach((projectId, partition) -> partition.removePortChain(portChainId));
+    }
+
+    /**
+     * Drops the partition of the project, to be loaded again on its next use.
+     */
+    public void invalidate(String projectId) {
+        this.partitions.invalidate(projectKey(projectId));
+    }
+
+    private static String projectKey(String projectId) {
+        return projectId != null ? projectId : TenantPartitions.UNKNOWN_PROJECT;
+    }
+
+    private static final class Partition {
+        private final String projectId;
+        private final Map<HookKey, String> hookIdsByKey = new ConcurrentHashMap<>();
+        private final Map<String, HookKey> keysByHookId = new ConcurrentHashMap<>();
+
+        private volatile boolean loaded;
+
+        Partition(String projectId) {
+            this.projectId = projectId;
+        }
+
+        void ensureLoaded(Supplier<List<? extends FlowClassifier>> flowClassifiers,
+                Supplier<List<? extends PortChain>> portChains) {
+            if (this.loaded) {
+                return;
+            }
+
+            synchronized (this) {
+                if (!this.loaded) {
+                    load(flowClassifiers.get(), portChains.get());
+                }
+            }
+        }
+
+        private void load(List<? extends FlowClassifier> flowClassifiers, List<? extends PortChain> portChains) {
+            Map<String, String> inspectedPortByHookId = new HashMap<>();
+            for (FlowClassifier flowClassifier : flowClassifiers) {
+                if (flowClassifier.getLogicalDestinationPort() != null
+                        && isInProject(flowClassifier.getTenantId())) {
+                    inspectedPortByHookId.put(flowClassifier.getId(), flowClassifier.getLogicalDestinationPort());
+                }
+            }
+
+            for (PortChain portChain : portChains) {
+                if (portChain.getFlowClassifiers() == null || !isInProject(portChain.getTenantId())) {
+                    continue;
+                }
+                for (String hookId : portChain.getFlowClassifiers()) {
+                    String inspectedPortId = inspectedPortByHookId.get(hookId);
+                    if (inspectedPortId != null) {
+                        put(hookId, inspectedPortId, portChain.getId());
+                    }
+                }
+            }
+
+            this.loaded = true;
+        }
+
+        private boolean isInProject(String projectId) {
+            return this.projectId.equals(projectKey(projectId));
+        }
+
+        void put(String hookId, String inspectedPortId, String portChainId) {
+            HookKey key = new HookKey(inspectedPortId, portChainId);
+            HookKey previous = this.keysByHookId.put(hookId, key);
+            if (previous != null && !previous.equals(key)) {
+                this.hookIdsByKey.remove(previous, hookId);
+            }
+            this.hookIdsByKey.put(key, hookId);
+        }
+
+        void remove(String hookId) {
+            HookKey key = this.keysByHookId.remove(hookId);
+            if (key != null) {
+                this.hookIdsByKey.remove(key, hookId);
+            }
+        }
+
+        void removePortChain(String portChainId) {
+            this.keysByHookId.entrySet().removeIf(e -> {
+                if (e.getValue().portChainId.equals(portChainId)) {
+                    this.hookIdsByKey.remove(e.getValue(), e.getKey());
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    private static final class HookKey {
+        private final String inspectedPortId;
+        private final String portChainId;
+
+        HookKey(String inspectedPortId, String portChainId) {
+            this.inspectedPortId = inspectedPortId;
+            this.portChainId = portChainId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(this.inspectedPortId) + Objects.hashCode(this.portChainId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof HookKey)) {
+                return false;
+            }
+            HookKey other = (HookKey) obj;
+            return Objects.equals(this.inspectedPortId, other.inspectedPortId)
+                    && Objects.equals(this.portChainId, other.portChainId);
+        }
+    }
+}
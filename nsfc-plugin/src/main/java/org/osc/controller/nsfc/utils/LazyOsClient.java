@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.model.identity.v3.Token;
+import org.openstack4j.openstack.OSFactory;
+import org.openstack4j.openstack.internal.OSClientSession;
+
+/**
+ * An openstack client which authenticates on first use rather than on creation, so that work which makes no
+ * Neutron calls never pays for Keystone.
+ *
+ * The token is shared by every caller and renewed shortly before it expires. openstack4j binds a session to
+ * the thread that created it, so callers on other threads get a session for the same token bound to theirs.
+ * {@link #forRegion(String)} gives clients sharing the token whose sessions use the endpoints of one region.
+ */
+public class LazyOsClient implements Supplier<OSClientV3> {
+
+    private static final long RENEW_BEFORE_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Supplier<OSClientV3> authenticator;
+    private final LazyOsClient root;
+    private final String region;
+    private final ThreadLocal<OSClientV3> threadClients = new ThreadLocal<>();
+
+    private volatile OSClientV3 client;
+
+    public LazyOsClient(Supplier<OSClientV3> authenticator) {
+        this.authenticator = authenticator;
+        this.root = this;
+        this.region = null;
+    }
+
+    private LazyOsClient(LazyOsClient root, String region) {
+        this.authenticator = null;
+        this.root = root;
+        this.region = region;
+    }
+
+    /**
+     * @return a client sharing the token of this one, whose sessions resolve endpoints in the given region
+     * rather than the first one of the catalog
+     */
+    public LazyOsClient forRegion(String region) {
+        return new LazyOsClient(this.root, region);
+    }
+
+    public String getRegion() {
+        return this.region;
+    }
+
+    /**
+     * @return a client usable on the current thread, authenticating first if there is no valid token yet
+     */
+    @Override
+    public OSClientV3 get() {
+        OSClientV3 authenticated = this.root.authenticated();
+        Token token = authenticated.getToken();
+        if (token == null) {
+            return authenticated;
+        }
+
+        OSClientV3 threadClient = this.threadClients.get();
+        if (threadClient != null && threadClient.getToken() == token && OSClientSession.getCurrent() == threadClient) {
+            return threadClient;
+        }
+
+        threadClient = OSFactory.clientFromToken(token);
+        if (this.region != null && !this.region.isEmpty()) {
+            threadClient.useRegion(this.region);
+        }
+        this.threadClients.set(threadClient);
+        return threadClient;
+    }
+
+    /**
+     * Authenticates now unless a valid token is already held.
+     */
+    public void authenticate() {
+        this.root.authenticated();
+    }
+
+    public boolean isAuthenticated() {
+        OSClientV3 authenticated = this.root.client;
+        return authenticated != null && !isExpiring(authenticated);
+    }
+
+    private OSClientV3 authenticated() {
+        OSClientV3 authenticated = this.client;
+        if (authenticated != null && !isExpiring(authenticated)) {
+            return authenticated;
+        }
+
+        synchronized (this) {
+            authenticated = this.client;
+            if (authenticated == null || isExpiring(authenticated)) {
+                authenticated = this.authenticator.get();
+                this.client = authenticated;
+            }
+            return authenticated;
+        }
+    }
+
+    private static boolean isExpiring(OSClientV3 client) {
+        Token token = client.getToken();
+        if (token == null || token.getExpires() == null) {
+            return false;
+        }
+        return System.currentTimeMillis() >= token.getExpires().getTime() - RENEW_BEFORE_EXPIRY_MILLIS;
+    }
+}
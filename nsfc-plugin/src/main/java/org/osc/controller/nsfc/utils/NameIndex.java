@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Name to id index of the openstack objects created by OSC. See {@link ResourceNames}.
+ *
+ * Entries are hints: callers must GET the object by id and check it before relying on it. The index only caches
+ * the name lookups, a name it does not know is looked up with a listing filtered on the name.
+ */
+public class NameIndex {
+
+    private final Map<String, String> idsByName = new ConcurrentHashMap<>();
+    private final Map<String, String> namesById = new ConcurrentHashMap<>();
+
+    public String getId(String name) {
+        return name != null ? this.idsByName.get(name) : null;
+    }
+
+    public void put(String name, String id) {
+        if (name == null || id == null) {
+            return;
+        }
+        String previousName = this.namesById.put(id, name);
+        if (previousName != null && !previousName.equals(name)) {
+            this.idsByName.remove(previousName, id);
+        }
+        this.idsByName.put(name, id);
+    }
+
+    public void removeId(String id) {
+        String name = this.namesById.remove(id);
+        if (name != null) {
+            this.idsByName.remove(name, id);
+        }
+    }
+}
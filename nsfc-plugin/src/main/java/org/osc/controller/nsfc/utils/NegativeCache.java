@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived record of openstack objects recently found missing, per resource type.
+ *
+ * Holds ids for which a GET returned nothing, and lookup keys (such as the ingress and egress of a port
+ * pair) for which a collection scan found nothing. Creating an object of a type forgets the lookup misses
+ * of that type, since the new object may be what they were looking for.
+ */
+public class NegativeCache {
+
+    public enum ResourceType {
+        PORT, PORT_PAIR, PORT_PAIR_GROUP, PORT_CHAIN, FLOW_CLASSIFIER
+    }
+
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final int MAX_ENTRIES_PER_TYPE = 10000;
+
+    private final Map<ResourceType, Map<String, Long>> missingIds = new EnumMap<>(ResourceType.class);
+    private final Map<ResourceType, Map<String, Long>> missingLookups = new EnumMap<>(ResourceType.class);
+    private volatile long ttlMillis;
+
+    public NegativeCache() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public NegativeCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        for (ResourceType type : ResourceType.values()) {
+            this.missingIds.put(type, new ConcurrentHashMap<>());
+            this.missingLookups.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Changes how long misses are remembered, including the misses already recorded. Zero or less disables
+     * the cache.
+     */
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public boolean isMissing(ResourceType type, String id) {
+        return isRecorded(this.missingIds.get(type), id);
+    }
+
+    public void recordMissing(ResourceType type, String id) {
+        record(this.missingIds.get(type), id);
+    }
+
+    public boolean isLookupMissing(ResourceType type, String key) {
+        return isRecorded(this.missingLookups.get(type), key);
+    }
+
+    public void recordLookupMissing(ResourceType type, String key) {
+        record(this.missingLookups.get(type), key);
+    }
+
+    public void created(ResourceType type, String id) {
+        if (id != null) {
+            this.missingIds.get(type).remove(id);
+        }
+        this.missingLookups.get(type).clear();
+    }
+
+    private boolean isRecorded(Map<String, Long> misses, String key) {
+        if (key == null || this.ttlMillis <= 0) {
+            return false;
+        }
+
+        Long recordedAt = misses.get(key);
+        if (recordedAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - recordedAt >= this.ttlMillis) {
+            misses.remove(key, recordedAt);
+            return false;
+        }
+        return true;
+    }
+
+    private void record(Map<String, Long> misses, String key) {
+        if (key == null || this.ttlMillis <= 0) {
+            return;
+        }
+
+        if (misses.size() >= MAX_ENTRIES_PER_TYPE) {
+            long now = System.currentTimeMillis();
+            misses.values().removeIf(recordedAt -> now - recordedAt >= this.ttlMillis);
+            if (misses.size() >= MAX_ENTRIES_PER_TYPE) {
+                misses.clear();
+            }
+        }
+        misses.put(key, System.currentTimeMillis());
+    }
+}
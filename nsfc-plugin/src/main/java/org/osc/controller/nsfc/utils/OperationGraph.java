@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Dependency graph of the openstack calls of one composite operation.
+ *
+ * Every step starts on the executor as soon as the steps it depends on complete, so independent calls run
+ * concurrently while dependent ones keep their order. A step reads the results of its dependencies with
+ * {@link Step#get()}, which does not block once they are complete. Steps never wait on the executor, so a
+ * bounded executor cannot deadlock.
+ */
+public class OperationGraph {
+
+    private final OsCalls osCalls;
+    private final Executor executor;
+    private final List<Step<?>> steps = new ArrayList<>();
+
+    public OperationGraph(OsCalls osCalls, Executor executor) {
+        this.osCalls = osCalls;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a step which runs the call once all the given steps have completed. The step fails without running
+     * if any of them fails.
+     *
+     * @param call the call, given openstack calls bound to the thread it runs on
+     */
+    public <T> Step<T> step(Function<OsCalls, T> call, Step<?>... dependencies) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            futures[i] = dependencies[i].future;
+        }
+
+        Supplier<T> task = Span.propagate(() -> call.apply(this.osCalls.forCurrentThread()));
+        CompletableFuture<T> future = CompletableFuture.allOf(futures).thenApplyAsync(v -> task.get(), this.executor);
+
+        Step<T> step = new Step<>(future);
+        this.steps.add(step);
+        return step;
+    }
+
+    /**
+     * Waits for every step of the graph, and rethrows the failure of the first failed step.
+     */
+    public void await() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[this.steps.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = this.steps.get(i).future;
+        }
+        join(CompletableFuture.allOf(futures));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A call of the graph and its eventual result.
+     */
+    public static final class Step<T> {
+        private final CompletableFuture<T> future;
+
+        private Step(CompletableFuture<T> future) {
+            this.future = future;
+        }
+
+        /**
+         * Waits for the step and returns its result, or rethrows its failure.
+         */
+        public T get() {
+            return join(this.future);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of multi-step redirection operations.
+ *
+ * Every operation records its intent when it begins, each completed step, and its end. Records are
+ * written by a single writer thread which fsyncs once per batch of queued records (group commit);
+ * callers block until their record is durable. After a crash, {@link #recover()} returns only the
+ * operations that began but never ended. The file is compacted down to the open operations whenever
+ * it grows past {@link #COMPACTION_THRESHOLD_BYTES}, so recovery time follows in-flight work rather
+ * than history.
+ */
+public class OperationJournal implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OperationJournal.class);
+
+    private static final long COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+
+    private static final String BEGIN = "BEGIN";
+    private static final String STEP = "STEP";
+    private static final String END = "END";
+
+    private static final OperationJournal DISABLED = new OperationJournal();
+
+    private final File file;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final Map<String, List<String>> openOperations = new LinkedHashMap<>();
+    private final Object queueLock = new Object();
+    private final Thread writer;
+
+    private volatile boolean running;
+    private FileOutputStream out;
+
+    private OperationJournal() {
+        this.file = null;
+        this.writer = null;
+    }
+
+    public OperationJournal(File file) throws IOException {
+        this.file = file;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + parent);
+        }
+
+        this.out = new FileOutputStream(file, true);
+        this.running = true;
+        this.writer = new Thread(this::writeLoop, "nsfc-journal-" + file.getName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return a journal which records nothing, for callers without local storage
+     */
+    public static OperationJournal disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return this.file != null;
+    }
+
+    /**
+     * Durably records the intent of an operation.
+     *
+     * @param type the operation type
+     * @param args the arguments needed to resume or compensate the operation
+     */
+    public Operation begin(String type, String... args) {
+        String id = UUID.randomUUID().toString();
+        List<String> fields = new ArrayList<>();
+        fields.add(BEGIN);
+        fields.add(id);
+        fields.add(type);
+        fields.addAll(Arrays.asList(args));
+        append(id, fields);
+        return new Operation(id);
+    }
+
+    /**
+     * Reads the operations which began but did not end, and compacts the journal down to them.
+     */
+    public List<PendingOperation> recover() throws IOException {
+        if (!isEnabled()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, PendingOperation> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> fields = decode(line);
+                if (fields.size() < 2) {
+                    // torn write at the tail
+                    continue;
+                }
+                String id = fields.get(1);
+                switch (fields.get(0)) {
+                case BEGIN:
+                    if (fields.size() >= 3) {
+                        pending.put(id, new PendingOperation(id, fields.get(2), fields.subList(3, fields.size())));
+                    }
+                    break;
+                case STEP:
+                    PendingOperation op = pending.get(id);
+                    if (op != null && fields.size() >= 3) {
+                        op.steps.put(fields.get(2), fields.size() >= 4 ? fields.get(3) : "");
+                    }
+                    break;
+                case END:
+                    pending.remove(id);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        synchronized (this.openOperations) {
+            for (PendingOperation op : pending.values()) {
+                List<String> lines = new ArrayList<>();
+                List<String> begin = new ArrayList<>(Arrays.asList(BEGIN, op.id, op.type));
+                begin.addAll(op.args);
+                lines.add(encode(begin));
+                for (Map.Entry<String, String> step : op.steps.entrySet()) {
+                    lines.add(encode(Arrays.asList(STEP, op.id, step.getKey(), step.getValue())));
+                }
+                this.openOperations.put(op.id, lines);
+            }
+        }
+        this.queue.add(Record.COMPACT);
+
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Marks a pending operation as resolved after it has been resumed or compensated.
+     */
+    public void resolve(PendingOperation operation) {
+        append(operation.id, Arrays.asList(END, operation.id));
+    }
+
+    @Override
+    public void close() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        // once this is set nothing else gets queued, and the writer drains the queue before exiting
+        synchronized (this.queueLock) {
+            if (!this.running) {
+                return;
+            }
+            this.running = false;
+        }
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append(String id, List<String> fields) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Record record = new Record(id, fields.get(0), encode(fields));
+        synchronized (this.queueLock) {
+            if (!this.running) {
+                throw new IllegalStateException("Operation journal " + this.file + " is closed");
+            }
+            this.queue.add(record);
+        }
+        record.written.join();
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>();
+
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                Record first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                this.queue.drainTo(batch);
+
+                writeBatch(batch);
+
+                if (batch.contains(Record.COMPACT) || this.file.length() > COMPACTION_THRESHOLD_BYTES) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Failed to write operation journal {}", this.file, e);
+                for (Record record : batch) {
+                    record.written.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // left behind only if the writer was interrupted
+        IOException closed = new IOException("Operation journal " + this.file + " is closed");
+        Record record;
+        while ((record = this.queue.poll()) != null) {
+            record.written.completeExceptionally(closed);
+        }
+
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close operation journal {}", this.file, e);
+        }
+    }
+
+    private void writeBatch(List<Record> batch) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Record record : batch) {
+            if (record != Record.COMPACT) {
+                lines.append(record.line).append('\n');
+            }
+        }
+
+        this.out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+        this.out.flush();
+        this.out.getChannel().force(false);
+
+        synchronized (this.openOperations) {
+            for (Record record : batch) {
+                if (record == Record.COMPACT) {
+                    continue;
+                }
+                if (END.equals(record.kind)) {
+                    this.openOperations.remove(record.operationId);
+                } else {
+                    this.openOperations.computeIfAbsent(record.operationId, id -> new ArrayList<>()).add(record.line);
+                }
+            }
+        }
+
+        for (Record record : batch) {
+            record.written.complete(null);
+        }
+    }
+
+    private void compact() throws IOException {
+        File compacted = new File(this.file.getPath() + ".compact");
+
+        try (FileOutputStream compactedOut = new FileOutputStream(compacted)) {
+            writeOpenOperations(compactedOut);
+            compactedOut.getChannel().force(false);
+        }
+
+        this.out.close();
+        try {
+            Files.move(compacted.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            this.out = new FileOutputStream(this.file, true);
+        }
+    }
+
+    private void writeOpenOperations(OutputStream target) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        synchronized (this.openOperations) {
+            for (List<String> operationLines : this.openOperations.values()) {
+                for (String line : operationLines) {
+                    lines.append(line).append('\n');
+                }
+            }
+        }
+        target.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String encode(List<String> fields) {
+        StringBuilder line = new StringBuilder();
+        for (String field : fields) {
+            if (line.length() > 0) {
+                line.append('\t');
+            }
+            try {
+                line.append(URLEncoder.encode(field != null ? field : "", StandardCharsets.UTF_8.name()));
+            } catch (UnsupportedEncodingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return line.toString();
+    }
+
+    private static List<String> decode(String line) {
+        List<String> fields = new ArrayList<>();
+        for (String field : line.split("\t", -1)) {
+            try {
+                fields.add(URLDecoder.decode(field, StandardCharsets.UTF_8.name()));
+            } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                return Collections.emptyList();
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * An operation in progress. Closing it records the end of the operation, whether it succeeded or failed;
+     * only a crash leaves it open in the journal.
+     */
+    public final class Operation implements AutoCloseable {
+        private final String id;
+
+        private Operation(String id) {
+            this.id = id;
+        }
+
+        public void step(String name, String value) {
+            append(this.id, Arrays.asList(STEP, this.id, name, value));
+        }
+
+        @Override
+        public void close() {
+            append(this.id, Arrays.asList(END, this.id));
+        }
+    }
+
+    /**
+     * An operation found unfinished during recovery.
+     */
+    public static final class PendingOperation {
+        private final String id;
+        private final String type;
+        private final List<String> args;
+        private final Map<String, String> steps = new LinkedHashMap<>();
+
+        PendingOperation(String id, String type, List<String> args) {
+            this.id = id;
+            this.type = type;
+            this.args = new ArrayList<>(args);
+        }
+
+        public String getType() {
+            return this.type;
+        }
+
+        public List<String> getArgs() {
+            return Collections.unmodifiableList(this.args);
+        }
+
+        public boolean hasStep(String name) {
+            return this.steps.containsKey(name);
+        }
+
+        public String getStep(String name) {
+            return this.steps.get(name);
+        }
+
+        @Override
+        public String toString() {
+            return "PendingOperation [id=" + this.id + ", type=" + this.type + ", args=" + this.args + ", steps="
+                    + this.steps + "]";
+        }
+    }
+
+    private static final class Record {
+        private static final Record COMPACT = new Record(null, null, null);
+
+        private final String operationId;
+        private final String kind;
+        private final String line;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Record(String operationId, String kind, String line) {
+            this.operationId = operationId;
+            this.kind = kind;
+            this.line = line;
+        }
+    }
+}
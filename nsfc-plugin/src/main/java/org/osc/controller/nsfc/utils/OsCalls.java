@@ -18,25 +18,113 @@ package org.osc.controller.nsfc.utils;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.osc.controller.nsfc.exceptions.SdnControllerResponseNsfcException.Operation.*;
+import static org.osc.controller.nsfc.utils.NegativeCache.ResourceType.*;
+import static org.osc.controller.nsfc.utils.RequestScheduler.Priority.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import org.openstack4j.api.Builders;
 import org.openstack4j.api.OSClient.OSClientV3;
 import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.common.Resource;
+import org.openstack4j.model.identity.v3.Token;
 import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
 import org.openstack4j.model.network.ext.PortPair;
 import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.model.network.options.PortListOptions;
+import org.openstack4j.openstack.OSFactory;
+import org.openstack4j.openstack.internal.OSClientSession;
 import org.osc.controller.nsfc.exceptions.SdnControllerResponseNsfcException;
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+import org.osc.controller.nsfc.utils.RequestScheduler.Priority;
 
 public class OsCalls {
 
-    private OSClientV3 osClient;
+    private static final String HTTP_STATUS = "http.status_code";
+    private static final String RESULT_COUNT = "result.count";
+    private static final String RESULT_FOUND = "result.found";
+
+    private Supplier<OSClientV3> osClient;
+    private SingleFlight singleFlight;
+    private NegativeCache negativeCache;
+    private RequestScheduler scheduler;
+    private Priority readPriority;
+    private TopologyFeed topologyFeed;
+    private FilteredListings filteredListings;
 
     public OsCalls(OSClientV3 osClient) {
+        this(() -> osClient, new SingleFlight(), new NegativeCache(), RequestScheduler.unlimited(), INTERACTIVE,
+                new TopologyFeed(), new FilteredListings());
+    }
+
+    /**
+     * Calls sharing the single flight and negative cache of the VC, so that concurrent identical reads share
+     * one request and recent misses are not repeated.
+     */
+    public OsCalls(OSClientV3 osClient, VcContext vcContext) {
+        this(() -> osClient, vcContext);
+    }
+
+    /**
+     * Like {@link #OsCalls(OSClientV3, VcContext)}, but the client is only obtained when a request is made,
+     * so that a lazily authenticated client authenticates on the first request.
+     */
+    public OsCalls(Supplier<OSClientV3> osClient, VcContext vcContext) {
+        this(osClient, vcContext.getSingleFlight(), vcContext.getNegativeCache(), vcContext.getRequestScheduler(),
+                INTERACTIVE, vcContext.getTopologyFeed(), vcContext.getFilteredListings());
+    }
+
+    private OsCalls(Supplier<OSClientV3> osClient, SingleFlight singleFlight, NegativeCache negativeCache,
+            RequestScheduler scheduler, Priority readPriority, TopologyFeed topologyFeed,
+            FilteredListings filteredListings) {
         this.osClient = osClient;
+        this.singleFlight = singleFlight;
+        this.negativeCache = negativeCache;
+        this.scheduler = scheduler;
+        this.readPriority = readPriority;
+        this.topologyFeed = topologyFeed;
+        this.filteredListings = filteredListings;
+    }
+
+    /**
+     * @return calls sharing this client whose reads are scheduled with the given priority. Mutations always
+     * have the highest priority.
+     */
+    public OsCalls withReadPriority(Priority priority) {
+        return new OsCalls(this.osClient, this.singleFlight, this.negativeCache, this.scheduler, priority,
+                this.topologyFeed, this.filteredListings);
+    }
+
+    public NegativeCache getNegativeCache() {
+        return this.negativeCache;
+    }
+
+    public TopologyFeed getTopologyFeed() {
+        return this.topologyFeed;
+    }
+
+    /**
+     * openstack4j binds a client session to the thread that created it. Returns calls usable on the
+     * current thread, sharing the token of this client.
+     */
+    public OsCalls forCurrentThread() {
+        OSClientV3 client = this.osClient.get();
+        Token token = client.getToken();
+        if (token == null || OSClientSession.getCurrent() == client) {
+            return this;
+        }
+        OSClientV3 threadClient = OSFactory.clientFromToken(token);
+        return new OsCalls(() -> threadClient, this.singleFlight, this.negativeCache, this.scheduler,
+                this.readPriority, this.topologyFeed, this.filteredListings);
     }
 
     public FlowClassifier createFlowClassifier(FlowClassifier flowClassifier) {
@@ -44,32 +132,45 @@ public class OsCalls {
 
         flowClassifier = flowClassifier.toBuilder().id(null).build();
 
+        Span span = requestSpan("POST", FLOW_CLASSIFIER, null);
         try {
-            flowClassifier = this.osClient.sfc().flowclassifiers().create(flowClassifier);
+            this.scheduler.acquire(MUTATION);
+            flowClassifier = this.osClient.get().sfc().flowclassifiers().create(flowClassifier);
             if (flowClassifier == null) {
                 throw new RuntimeException("Create Flow Classifier operation returned null, Error from OpenStack: Not Found");
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Create, FlowClassifier.class, e);
+        } finally {
+            span.close();
         }
 
+        this.negativeCache.created(FLOW_CLASSIFIER, flowClassifier.getId());
+        this.topologyFeed.created(FLOW_CLASSIFIER, flowClassifier);
         return flowClassifier;
-
     }
 
     public PortChain createPortChain(PortChain portChain) {
         checkArgument(portChain != null, "null passed for %s !", "Port Chain");
         portChain = portChain.toBuilder().id(null).build();
 
+        Span span = requestSpan("POST", PORT_CHAIN, null);
         try {
-            portChain = this.osClient.sfc().portchains().create(portChain);
+            this.scheduler.acquire(MUTATION);
+            portChain = this.osClient.get().sfc().portchains().create(portChain);
             if (portChain == null) {
                 throw new RuntimeException("Create Port Chain operation returned null, Error from OpenStack: Not Found");
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Create, PortChain.class, e);
+        } finally {
+            span.close();
         }
 
+        this.negativeCache.created(PORT_CHAIN, portChain.getId());
+        this.topologyFeed.created(PORT_CHAIN, portChain);
         return initializePortChainCollections(portChain);
     }
 
@@ -77,15 +178,22 @@ public class OsCalls {
         checkArgument(portPairGroup != null, "null passed for %s !", "Port Pair Group");
         portPairGroup = portPairGroup.toBuilder().id(null).build();
 
+        Span span = requestSpan("POST", PORT_PAIR_GROUP, null);
         try {
-            portPairGroup = this.osClient.sfc().portpairgroups().create(portPairGroup);
+            this.scheduler.acquire(MUTATION);
+            portPairGroup = this.osClient.get().sfc().portpairgroups().create(portPairGroup);
             if (portPairGroup == null) {
                 throw new RuntimeException("Create Port Pair Group operation returned null, Error from OpenStack: Not Found");
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Create, PortPairGroup.class, e);
+        } finally {
+            span.close();
         }
 
+        this.negativeCache.created(PORT_PAIR_GROUP, portPairGroup.getId());
+        this.topologyFeed.created(PORT_PAIR_GROUP, portPairGroup);
         return portPairGroup;
     }
 
@@ -93,53 +201,107 @@ public class OsCalls {
         checkArgument(portPair != null, "null passed for %s !", "Port Pair");
         portPair = portPair.toBuilder().id(null).build();
 
+        Span span = requestSpan("POST", PORT_PAIR, null);
         try {
-            portPair = this.osClient.sfc().portpairs().create(portPair);
+            this.scheduler.acquire(MUTATION);
+            portPair = this.osClient.get().sfc().portpairs().create(portPair);
             if (portPair == null) {
                 throw new RuntimeException("Create Port Pair operation returned null, Error from OpenStack: Not Found");
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Create, PortPair.class, e);
+        } finally {
+            span.close();
         }
 
+        this.negativeCache.created(PORT_PAIR, portPair.getId());
+        this.topologyFeed.created(PORT_PAIR, portPair);
         return portPair;
     }
 
+    // Reads go through the single flight. Port chains and port pair groups are copied for every caller,
+    // since callers modify their collections before updating them.
+
     public List<? extends PortPairGroup> listPortPairGroups() {
-        return this.osClient.sfc().portpairgroups().list();
+        List<? extends PortPairGroup> portPairGroups = list("listPortPairGroups", pathOf(PORT_PAIR_GROUP),
+                () -> this.topologyFeed.observeAll(PORT_PAIR_GROUP,
+                        this.osClient.get().sfc().portpairgroups().list()));
+        return portPairGroups.stream().map(OsCalls::copyOf).collect(Collectors.toList());
     }
 
     public List<? extends PortPair> listPortPairs() {
-        return this.osClient.sfc().portpairs().list();
+        return list("listPortPairs", pathOf(PORT_PAIR),
+                () -> this.topologyFeed.observeAll(PORT_PAIR, this.osClient.get().sfc().portpairs().list()));
     }
 
     public List<? extends PortChain> listPortChains() {
-        return this.osClient.sfc().portchains().list();
+        List<? extends PortChain> portChains = list("listPortChains", pathOf(PORT_CHAIN),
+                () -> this.topologyFeed.observeAll(PORT_CHAIN, this.osClient.get().sfc().portchains().list()));
+        return portChains.stream().map(OsCalls::copyOf).collect(Collectors.toList());
+    }
+
+    public List<? extends FlowClassifier> listFlowClassifiers() {
+        return list("listFlowClassifiers", pathOf(FLOW_CLASSIFIER),
+                () -> this.topologyFeed.observeAll(FLOW_CLASSIFIER,
+                        this.osClient.get().sfc().flowclassifiers().list()));
+    }
+
+    // Filtered listings only return the objects matching any value of each filter, see FilteredListings.
+
+    public List<? extends PortPairGroup> listPortPairGroups(Map<String, ? extends Collection<String>> filters) {
+        List<? extends PortPairGroup> portPairGroups = list(PORT_PAIR_GROUP, filters,
+                this.filteredListings::listPortPairGroups);
+        return portPairGroups.stream().map(OsCalls::copyOf).collect(Collectors.toList());
+    }
+
+    public List<? extends PortPair> listPortPairs(Map<String, ? extends Collection<String>> filters) {
+        return list(PORT_PAIR, filters, this.filteredListings::listPortPairs);
+    }
+
+    public List<? extends PortChain> listPortChains(Map<String, ? extends Collection<String>> filters) {
+        List<? extends PortChain> portChains = list(PORT_CHAIN, filters, this.filteredListings::listPortChains);
+        return portChains.stream().map(OsCalls::copyOf).collect(Collectors.toList());
+    }
+
+    public List<? extends FlowClassifier> listFlowClassifiers(Map<String, ? extends Collection<String>> filters) {
+        return list(FLOW_CLASSIFIER, filters, this.filteredListings::listFlowClassifiers);
+    }
+
+    public List<? extends Port> listPorts(Map<String, ? extends Collection<String>> filters) {
+        return list(PORT, filters, this.filteredListings::listPorts);
     }
 
     public FlowClassifier getFlowClassifier(String flowClassifierId) {
-        return this.osClient.sfc().flowclassifiers().get(flowClassifierId);
+        return get(FLOW_CLASSIFIER, flowClassifierId, () -> this.osClient.get().sfc().flowclassifiers().get(flowClassifierId));
     }
 
     public PortChain getPortChain(String portChainId) {
-        PortChain portChain = this.osClient.sfc().portchains().get(portChainId);
-        return initializePortChainCollections(portChain);
+        PortChain portChain = get(PORT_CHAIN, portChainId, () -> this.osClient.get().sfc().portchains().get(portChainId));
+        return initializePortChainCollections(copyOf(portChain));
     }
 
     public PortPairGroup getPortPairGroup(String portPairGroupId) {
-        return this.osClient.sfc().portpairgroups().get(portPairGroupId);
+        return copyOf(get(PORT_PAIR_GROUP, portPairGroupId,
+                () -> this.osClient.get().sfc().portpairgroups().get(portPairGroupId)));
     }
 
     public PortPair getPortPair(String portPairId) {
-        return this.osClient.sfc().portpairs().get(portPairId);
+        return get(PORT_PAIR, portPairId, () -> this.osClient.get().sfc().portpairs().get(portPairId));
     }
 
     public Port getPort(String portId) {
-        return this.osClient.networking().port().get(portId);
+        return get(PORT, portId, () -> this.osClient.get().networking().port().get(portId));
     }
-    
+
     public List<? extends Port> listPorts(){
-    	return this.osClient.networking().port().list();
+        return list("listPorts", pathOf(PORT), () -> this.osClient.get().networking().port().list());
+    }
+
+    public List<? extends Port> listPorts(PortListOptions options) {
+        Map<String, String> query = new TreeMap<>(options.getOptions());
+        return list("listPorts:" + query, pathOf(PORT) + "?" + query,
+                () -> this.osClient.get().networking().port().list(options));
     }
 
     public PortChain updatePortChain(String portChainId, PortChain portChain) {
@@ -149,17 +311,24 @@ public class OsCalls {
         // OS won't let us modify some attributes. Must be null on update object
         portChain = portChain.toBuilder().id(null).projectId(null).chainParameters(null).chainId(null).build();
 
+        Span span = requestSpan("PUT", PORT_CHAIN, portChainId);
         try {
-            portChain = this.osClient.sfc().portchains().update(portChainId, portChain);
+            this.scheduler.acquire(MUTATION);
+            portChain = this.osClient.get().sfc().portchains().update(portChainId, portChain);
             if (portChain == null) {
                 throw new RuntimeException("Update Port Chain operation returned null for port chain " + portChainId
                 		                   + ", Error from OpenStack: Not Found");
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Update, PortChain.class, e);
+        } finally {
+            span.close();
         }
 
-        return initializePortChainCollections(portChain);
+        portChain = initializePortChainCollections(portChain);
+        this.topologyFeed.updated(PORT_CHAIN, portChain);
+        return portChain;
     }
 
     public PortPairGroup updatePortPairGroup(String portPairGroupId, PortPairGroup portPairGroup) {
@@ -169,76 +338,233 @@ public class OsCalls {
         // OS won't let us modify some attributes. Must be null on update object
         portPairGroup  = portPairGroup.toBuilder().id(null).projectId(null).portPairGroupParameters(null).build();
 
+        Span span = requestSpan("PUT", PORT_PAIR_GROUP, portPairGroupId);
         try {
-            portPairGroup = this.osClient.sfc().portpairgroups().update(portPairGroupId, portPairGroup);
+            this.scheduler.acquire(MUTATION);
+            portPairGroup = this.osClient.get().sfc().portpairgroups().update(portPairGroupId, portPairGroup);
             if (portPairGroup == null) {
                 throw new RuntimeException("Update Port Pair Group operation returned null for port pair" + portPairGroupId
                 		                   + ", Error from OpenStack: Not Found");
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Update, PortPairGroup.class, e);
+        } finally {
+            span.close();
         }
+
+        this.topologyFeed.updated(PORT_PAIR_GROUP, portPairGroup);
         return portPairGroup;
     }
 
     public void deleteFlowClassifier(String flowClassifierId) {
+        Span span = requestSpan("DELETE", FLOW_CLASSIFIER, flowClassifierId);
         try {
-            ActionResponse response = this.osClient.sfc().flowclassifiers().delete(flowClassifierId);
+            this.scheduler.acquire(MUTATION);
+            ActionResponse response = this.osClient.get().sfc().flowclassifiers().delete(flowClassifierId);
+            span.setAttribute(HTTP_STATUS, response.getCode());
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
+                    this.negativeCache.recordMissing(FLOW_CLASSIFIER, flowClassifierId);
+                    this.topologyFeed.observe(FLOW_CLASSIFIER, flowClassifierId, null);
                     return;
                 }
                 String msg = String.format("Deleting flow classifier %s Response %d %s", flowClassifierId, response.getCode(), response.getFault());
                 throw new RuntimeException(msg);
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Delete, PortPair.class, e);
+        } finally {
+            span.close();
         }
+
+        this.negativeCache.recordMissing(FLOW_CLASSIFIER, flowClassifierId);
+        this.topologyFeed.deleted(FLOW_CLASSIFIER, flowClassifierId);
     }
 
     public void deletePortChain(String portChainId) {
+        Span span = requestSpan("DELETE", PORT_CHAIN, portChainId);
         try {
-            ActionResponse response = this.osClient.sfc().portchains().delete(portChainId);
+            this.scheduler.acquire(MUTATION);
+            ActionResponse response = this.osClient.get().sfc().portchains().delete(portChainId);
+            span.setAttribute(HTTP_STATUS, response.getCode());
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
+                    this.negativeCache.recordMissing(PORT_CHAIN, portChainId);
+                    this.topologyFeed.observe(PORT_CHAIN, portChainId, null);
                     return;
                 }
                 String msg = String.format("Deleting port chain %s Response %d %s", portChainId, response.getCode(), response.getFault());
                 throw new RuntimeException(msg);
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Delete, PortPair.class, e);
+        } finally {
+            span.close();
         }
+
+        this.negativeCache.recordMissing(PORT_CHAIN, portChainId);
+        this.topologyFeed.deleted(PORT_CHAIN, portChainId);
     }
 
     public void deletePortPairGroup(String portPairGroupId) {
+        Span span = requestSpan("DELETE", PORT_PAIR_GROUP, portPairGroupId);
         try {
-            ActionResponse response = this.osClient.sfc().portpairgroups().delete(portPairGroupId);
+            this.scheduler.acquire(MUTATION);
+            ActionResponse response = this.osClient.get().sfc().portpairgroups().delete(portPairGroupId);
+            span.setAttribute(HTTP_STATUS, response.getCode());
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
+                    this.negativeCache.recordMissing(PORT_PAIR_GROUP, portPairGroupId);
+                    this.topologyFeed.observe(PORT_PAIR_GROUP, portPairGroupId, null);
                     return;
                 }
                 String msg = String.format("Deleting port pair %s Response %d %s", portPairGroupId, response.getCode(), response.getFault());
                 throw new RuntimeException(msg);
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Delete, PortPair.class, e);
+        } finally {
+            span.close();
         }
+
+        this.negativeCache.recordMissing(PORT_PAIR_GROUP, portPairGroupId);
+        this.topologyFeed.deleted(PORT_PAIR_GROUP, portPairGroupId);
     }
 
     public void deletePortPair(String portPairId) {
+        Span span = requestSpan("DELETE", PORT_PAIR, portPairId);
         try {
-            ActionResponse response = this.osClient.sfc().portpairs().delete(portPairId);
+            this.scheduler.acquire(MUTATION);
+            ActionResponse response = this.osClient.get().sfc().portpairs().delete(portPairId);
+            span.setAttribute(HTTP_STATUS, response.getCode());
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
+                    this.negativeCache.recordMissing(PORT_PAIR, portPairId);
+                    this.topologyFeed.observe(PORT_PAIR, portPairId, null);
                     return;
                 }
                 String msg = String.format("Deleting port pair %s Response %d %s", portPairId, response.getCode(), response.getFault());
                 throw new RuntimeException(msg);
             }
         } catch (Exception e) {
+            span.setError(e);
             throw new SdnControllerResponseNsfcException(Delete, PortPair.class, e);
+        } finally {
+            span.close();
+        }
+
+        this.negativeCache.recordMissing(PORT_PAIR, portPairId);
+        this.topologyFeed.deleted(PORT_PAIR, portPairId);
+    }
+
+    private <T> T read(Span span, Supplier<T> call) {
+        try {
+            this.scheduler.acquire(this.readPriority);
+            T result = call.get();
+            // openstack4j hides the status of reads, a GET answers null for a 404 and throws for other errors
+            if (result instanceof List) {
+                span.setAttribute(RESULT_COUNT, ((List<?>) result).size());
+            } else {
+                span.setAttribute(RESULT_FOUND, result != null);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.close();
+        }
+    }
+
+    private <T> List<T> list(String key, String path, Supplier<List<? extends T>> call) {
+        return new ArrayList<>(this.singleFlight.<List<? extends T>>execute(key,
+                () -> read(requestSpan("GET", path), call)));
+    }
+
+    private <T extends Resource> List<T> list(ResourceType type, Map<String, ? extends Collection<String>> filters,
+            Function<Map<String, ? extends Collection<String>>, List<? extends T>> call) {
+        Map<String, Collection<String>> query = new TreeMap<>(filters);
+        return list(type + ":" + query, pathOf(type) + "?" + query, () -> {
+            // binds the client session of the thread, which the filtered listings are made with
+            this.osClient.get();
+            return this.topologyFeed.observeSome(type, call.apply(query));
+        });
+    }
+
+    private <T> T get(ResourceType type, String id, Supplier<T> call) {
+        if (this.negativeCache.isMissing(type, id)) {
+            return null;
+        }
+
+        T result = this.singleFlight.execute(type + ":" + id, () -> read(requestSpan("GET", type, id), call));
+        if (result == null) {
+            this.negativeCache.recordMissing(type, id);
         }
+        if (result == null || result instanceof Resource) {
+            this.topologyFeed.observe(type, id, (Resource) result);
+        }
+        return result;
+    }
+
+    private static Span requestSpan(String method, ResourceType type, String id) {
+        return requestSpan(method, id != null ? pathOf(type) + "/" + id : pathOf(type));
+    }
+
+    private static Span requestSpan(String method, String path) {
+        return Span.child("neutron " + method).setAttribute("http.method", method).setAttribute("url.path", path);
+    }
+
+    private static String pathOf(ResourceType type) {
+        switch (type) {
+        case PORT:
+            return "/v2.0/ports";
+        case PORT_PAIR:
+            return "/v2.0/sfc/port_pairs";
+        case PORT_PAIR_GROUP:
+            return "/v2.0/sfc/port_pair_groups";
+        case PORT_CHAIN:
+            return "/v2.0/sfc/port_chains";
+        default:
+            return "/v2.0/sfc/flow_classifiers";
+        }
+    }
+
+    private static PortChain copyOf(PortChain portChain) {
+        if (portChain == null) {
+            return null;
+        }
+
+        return Builders.portChain()
+                .id(portChain.getId())
+                .name(portChain.getName())
+                .description(portChain.getDescription())
+                .projectId(portChain.getTenantId())
+                .chainId(portChain.getChainId())
+                .chainParameters(portChain.getChainParameters())
+                .flowClassifiers(portChain.getFlowClassifiers() != null
+                        ? new ArrayList<>(portChain.getFlowClassifiers()) : null)
+                .portPairGroups(portChain.getPortPairGroups() != null
+                        ? new ArrayList<>(portChain.getPortPairGroups()) : null)
+                .build();
+    }
+
+    private static PortPairGroup copyOf(PortPairGroup portPairGroup) {
+        if (portPairGroup == null) {
+            return null;
+        }
+
+        return Builders.portPairGroup()
+                .id(portPairGroup.getId())
+                .name(portPairGroup.getName())
+                .description(portPairGroup.getDescription())
+                .projectId(portPairGroup.getTenantId())
+                .portPairGroupParameters(portPairGroup.getPortPairGroupParameters())
+                .portPairs(portPairGroup.getPortPairs() != null ? new ArrayList<>(portPairGroup.getPortPairs()) : null)
+                .build();
     }
 
     private PortChain initializePortChainCollections(PortChain portChain) {
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
+import static org.osc.controller.nsfc.utils.FilteredListings.FIXED_IPS;
+import static org.osc.controller.nsfc.utils.NegativeCache.ResourceType.PORT;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openstack4j.model.network.IP;
+import org.openstack4j.model.network.Port;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * IP address to port cache, filled by port listings filtered on the addresses.
+ *
+ * Resolving a batch of addresses lists only the ports of the addresses which are not cached, or were cached longer
+ * than the TTL ago, with at most {@link #DEFAULT_ADDRESSES_PER_QUERY} addresses per listing so that the query
+ * string stays short. Addresses still missing after that are recorded in the negative cache, and are not listed
+ * again until the miss expires or a port is created. Should Neutron refuse the filtered listings, the batch is
+ * resolved from a listing of all the ports.
+ */
+public class PortAddressIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PortAddressIndex.class);
+
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final int DEFAULT_ADDRESSES_PER_QUERY = 50;
+    private static final String LOOKUP_KEY_PREFIX = "ip:";
+
+    private final long ttlMillis;
+    private final int addressesPerQuery;
+
+    private final Map<String, CachedPort> portsByIp = new ConcurrentHashMap<>();
+
+    public PortAddressIndex() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public PortAddressIndex(long ttlMillis) {
+        this(ttlMillis, DEFAULT_ADDRESSES_PER_QUERY);
+    }
+
+    /**
+     * @param addressesPerQuery the maximum number of addresses a listing is filtered on
+     */
+    public PortAddressIndex(long ttlMillis, int addressesPerQuery) {
+        this.ttlMillis = ttlMillis;
+        this.addressesPerQuery = addressesPerQuery;
+    }
+
+    /**
+     * @return the ports owning the given IP addresses, keyed by IP address. Unknown addresses are left out.
+     */
+    public Map<String, Port> getPortsByIp(Collection<String> ipAddresses, OsCalls osCalls) {
+        NegativeCache negativeCache = osCalls.getNegativeCache();
+        Map<String, Port> retVal = new HashMap<>();
+
+        List<String> missingAddresses = new ArrayList<>();
+        for (String ipAddress : new LinkedHashSet<>(ipAddresses)) {
+            CachedPort cached = this.portsByIp.get(ipAddress);
+            if (cached != null && cached.age() < this.ttlMillis) {
+                retVal.put(ipAddress, cached.port);
+            } else if (!negativeCache.isLookupMissing(PORT, LOOKUP_KEY_PREFIX + ipAddress)) {
+                missingAddresses.add(ipAddress);
+            }
+        }
+        if (missingAddresses.isEmpty()) {
+            return retVal;
+        }
+
+        this.portsByIp.values().removeIf(cached -> cached.age() >= this.ttlMillis);
+        for (Port port : listPorts(missingAddresses, osCalls)) {
+            if (port.getFixedIps() != null) {
+                CachedPort cached = new CachedPort(port);
+                for (IP ip : port.getFixedIps()) {
+                    this.portsByIp.put(ip.getIpAddress(), cached);
+                }
+            }
+        }
+
+        for (String ipAddress : missingAddresses) {
+            CachedPort cached = this.portsByIp.get(ipAddress);
+            if (cached != null) {
+                retVal.put(ipAddress, cached.port);
+            } else {
+                negativeCache.recordLookupMissing(PORT, LOOKUP_KEY_PREFIX + ipAddress);
+            }
+        }
+
+        return retVal;
+    }
+
+    public void invalidate() {
+        this.portsByIp.clear();
+    }
+
+    private List<Port> listPorts(List<String> ipAddresses, OsCalls osCalls) {
+        List<Port> ports = new ArrayList<>();
+        try {
+            for (int from = 0; from < ipAddresses.size(); from += this.addressesPerQuery) {
+                List<String> fixedIps = ipAddresses.subList(from, Math.min(from + this.addressesPerQuery,
+                        ipAddresses.size())).stream().map(FilteredListings::ipAddress).collect(toList());
+                ports.addAll(osCalls.listPorts(singletonMap(FIXED_IPS, fixedIps)));
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to list the ports of {} addresses, listing all the ports", ipAddresses.size(), e);
+            return new ArrayList<>(osCalls.listPorts());
+        }
+        return ports;
+    }
+
+    private static final class CachedPort {
+        private final Port port;
+        private final long cachedAt = System.currentTimeMillis();
+
+        CachedPort(Port port) {
+            this.port = port;
+        }
+
+        long age() {
+            return System.currentTimeMillis() - this.cachedAt;
+        }
+    }
+}
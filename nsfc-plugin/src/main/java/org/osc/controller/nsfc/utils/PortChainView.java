@@ -0,0 +1,562 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static org.osc.controller.nsfc.utils.NegativeCache.ResourceType.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.osc.controller.nsfc.entities.FlowClassifierElement;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.entities.PortPairElement;
+import org.osc.controller.nsfc.entities.PortPairGroupElement;
+import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+
+/**
+ * Materialized view of the port chains of a VC: each chain with its port pair groups, their port pairs and
+ * ingress and egress ports, and its flow classifiers with their protected ports.
+ *
+ * The view is assembled from one entry per object, maintained through the topology feed of the VC: a change to
+ * an object drops its entry only, so the next read of a chain refetches just what changed, one round-trip per
+ * level at most. A chain whose entries are all younger than the TTL is read with no request. Ports are not in
+ * the feed and are refreshed by the TTL alone.
+ *
+ * An entry loaded while any change was published is not kept, so a read racing a mutation cannot bring back
+ * the state from before the mutation.
+ */
+public class PortChainView {
+
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Map<ResourceType, Map<String, Cached>> entries = new EnumMap<>(ResourceType.class);
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile long ttlMillis;
+
+    public PortChainView(TopologyFeed topologyFeed) {
+        this(topologyFeed, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param ttlMillis how long entries are used without being refetched, zero or less to disable the view
+     */
+    public PortChainView(TopologyFeed topologyFeed, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        for (ResourceType type : ResourceType.values()) {
+            this.entries.put(type, new ConcurrentHashMap<>());
+        }
+        topologyFeed.addListener(change -> invalidate(change.getResourceType(), change.getResourceId()));
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void invalidate(ResourceType type, String id) {
+        this.invalidations.incrementAndGet();
+        if (id != null) {
+            this.entries.get(type).remove(id);
+        }
+    }
+
+    /**
+     * Drops every entry of the type, leaving them to be fetched again as they are read.
+     */
+    public void invalidateType(ResourceType type) {
+        this.invalidations.incrementAndGet();
+        this.entries.get(type).clear();
+    }
+
+    public void invalidateAll() {
+        this.invalidations.incrementAndGet();
+        for (Map<String, Cached> typeEntries : this.entries.values()) {
+            typeEntries.clear();
+        }
+    }
+
+    /**
+     * @return a marker of the changes published so far, see {@link #prime}
+     */
+    public long getVersion() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Fills the view from listings of the port chains, port pair groups, port pairs and flow classifiers. Nothing
+     * is kept if a change was published since the version was taken, before the listings were requested.
+     */
+    public void prime(long version, List<? extends PortChain> portChains,
+            List<? extends PortPairGroup> portPairGroups, List<? extends PortPair> portPairs,
+            List<? extends FlowClassifier> flowClassifiers) {
+        if (this.ttlMillis <= 0) {
+            return;
+        }
+
+        Map<ResourceType, Map<String, Object>> values = new EnumMap<>(ResourceType.class);
+        for (PortChain portChain : portChains) {
+            values.computeIfAbsent(PORT_CHAIN, type -> new HashMap<>()).put(portChain.getId(), new Chain(portChain));
+        }
+        for (PortPairGroup portPairGroup : portPairGroups) {
+            values.computeIfAbsent(PORT_PAIR_GROUP, type -> new HashMap<>()).put(portPairGroup.getId(),
+                    toPortPairIds(portPairGroup));
+        }
+        for (PortPair portPair : portPairs) {
+            values.computeIfAbsent(PORT_PAIR, type -> new HashMap<>()).put(portPair.getId(), portPair);
+        }
+        for (FlowClassifier flowClassifier : flowClassifiers) {
+            values.computeIfAbsent(FLOW_CLASSIFIER, type -> new HashMap<>()).put(flowClassifier.getId(),
+                    new Hook(flowClassifier));
+        }
+
+        long loadedAtMillis = System.currentTimeMillis();
+        if (this.invalidations.get() != version) {
+            return;
+        }
+        for (Map.Entry<ResourceType, Map<String, Object>> typeValues : values.entrySet()) {
+            Map<String, Cached> typeEntries = this.entries.get(typeValues.getKey());
+            for (Map.Entry<String, Object> value : typeValues.getValue().entrySet()) {
+                typeEntries.put(value.getKey(), new Cached(value.getValue(), loadedAtMillis));
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries held per type
+     */
+    public Map<ResourceType, Integer> size() {
+        Map<ResourceType, Integer> sizes = new EnumMap<>(ResourceType.class);
+        for (Map.Entry<ResourceType, Map<String, Cached>> typeEntries : this.entries.entrySet()) {
+            sizes.put(typeEntries.getKey(), typeEntries.getValue().size());
+        }
+        return sizes;
+    }
+
+    /**
+     * @return up to the given number of entries of the type, chosen uniformly at random
+     */
+    public List<Sample> sample(ResourceType type, int count, Random random) {
+        List<Sample> samples = new ArrayList<>(count);
+        int seen = 0;
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Cached> entry : this.entries.get(type).entrySet()) {
+            Sample sample = new Sample(type, entry.getKey(), entry.getValue(), now);
+            // Reservoir sampling, so the entries are not copied
+            if (samples.size() < count) {
+                samples.add(sample);
+            } else {
+                int index = random.nextInt(seen + 1);
+                if (index < count) {
+                    samples.set(index, sample);
+                }
+            }
+            seen++;
+        }
+        return samples;
+    }
+
+    /**
+     * Fetches the object of the sample from openstack, bypassing the view.
+     *
+     * @param sample a sample of port chains, port pair groups, port pairs or flow classifiers
+     * @return whether the entry of the sample still matches openstack
+     */
+    public boolean verify(Sample sample, OsCalls osCalls) {
+        Object current = fetch(sample.type, sample.id, osCalls);
+        if (current == null) {
+            return false;
+        }
+        if (sample.type == PORT_PAIR) {
+            PortPair cached = (PortPair) sample.value;
+            PortPair currentPair = (PortPair) current;
+            return Objects.equals(cached.getIngressId(), currentPair.getIngressId())
+                    && Objects.equals(cached.getEgressId(), currentPair.getEgressId());
+        }
+        return sample.value.equals(current);
+    }
+
+    /**
+     * @return the port chain, or null if it does not exist
+     */
+    public Chain getChain(String portChainId, OsCalls osCalls) {
+        return get(PORT_CHAIN, portChainId, osCalls);
+    }
+
+    /**
+     * @return the flow classifier, or null if it does not exist
+     */
+    public Hook getHook(String flowClassifierId, OsCalls osCalls) {
+        return get(FLOW_CLASSIFIER, flowClassifierId, osCalls);
+    }
+
+    /**
+     * @return the port, or null if it does not exist
+     */
+    public Port getPort(String portId, OsCalls osCalls) {
+        return get(PORT, portId, osCalls);
+    }
+
+    /**
+     * Resolves the port chain with its groups, pairs, ports and inspection hooks, fetching the missing and
+     * expired entries of each level concurrently.
+     *
+     * @return the port chain, or null if it does not exist
+     */
+    public ServiceFunctionChainElement read(String portChainId, OsCalls osCalls, Executor executor) {
+        Chain chain = getChain(portChainId, osCalls);
+        if (chain == null) {
+            return null;
+        }
+
+        // groups and hooks, then pairs, then the ports of both
+        Map<String, List<String>> groups = getAll(PORT_PAIR_GROUP, chain.portPairGroupIds, osCalls, executor);
+        Map<String, Hook> hooks = getAll(FLOW_CLASSIFIER, chain.flowClassifierIds, osCalls, executor);
+
+        Set<String> portPairIds = new LinkedHashSet<>();
+        for (List<String> groupPortPairIds : groups.values()) {
+            portPairIds.addAll(groupPortPairIds);
+        }
+        Map<String, PortPair> pairs = getAll(PORT_PAIR, portPairIds, osCalls, executor);
+
+        Set<String> portIds = new LinkedHashSet<>();
+        for (PortPair pair : pairs.values()) {
+            addIfNotNull(portIds, pair.getIngressId());
+            addIfNotNull(portIds, pair.getEgressId());
+        }
+        for (Hook hook : hooks.values()) {
+            addIfNotNull(portIds, hook.protectedPortId);
+        }
+        Map<String, Port> ports = getAll(PORT, portIds, osCalls, executor);
+
+        ServiceFunctionChainElement sfc = new ServiceFunctionChainElement(portChainId);
+        for (String portPairGroupId : chain.portPairGroupIds) {
+            PortPairGroupElement group = new PortPairGroupElement(portPairGroupId);
+            group.setServiceFunctionChain(sfc);
+            for (String portPairId : groups.getOrDefault(portPairGroupId, Collections.emptyList())) {
+                PortPair pair = pairs.get(portPairId);
+                if (pair == null) {
+                    group.getPortPairs().add(new PortPairElement(portPairId, group, null, null));
+                    continue;
+                }
+                group.getPortPairs().add(new PortPairElement(portPairId, group,
+                        toNetworkElement(ports, pair.getIngressId(), portPairId),
+                        toNetworkElement(ports, pair.getEgressId(), portPairId)));
+            }
+            sfc.getPortPairGroups().add(group);
+        }
+        for (String flowClassifierId : chain.flowClassifierIds) {
+            Hook hook = hooks.get(flowClassifierId);
+            if (hook != null) {
+                sfc.getInspectionHooks().add(new FlowClassifierElement(flowClassifierId,
+                        toNetworkElement(ports, hook.protectedPortId, null), sfc));
+            }
+        }
+        return sfc;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(ResourceType type, String id, OsCalls osCalls) {
+        if (id == null) {
+            return null;
+        }
+        Cached cached = fresh(type, id);
+        return cached != null ? (T) cached.value : (T) load(type, id, osCalls);
+    }
+
+    /**
+     * @return the objects found, by id in the order of the ids
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Map<String, T> getAll(ResourceType type, Collection<String> ids, OsCalls osCalls, Executor executor) {
+        Map<String, T> retVal = new LinkedHashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String id : ids) {
+            Cached cached = fresh(type, id);
+            if (cached != null) {
+                retVal.put(id, (T) cached.value);
+            } else {
+                missingIds.add(id);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            OperationGraph graph = new OperationGraph(osCalls, executor);
+            Map<String, OperationGraph.Step<Object>> steps = new LinkedHashMap<>();
+            for (String id : missingIds) {
+                steps.put(id, graph.step(calls -> load(type, id, calls)));
+            }
+            graph.await();
+            for (Map.Entry<String, OperationGraph.Step<Object>> step : steps.entrySet()) {
+                if (step.getValue().get() != null) {
+                    retVal.put(step.getKey(), (T) step.getValue().get());
+                }
+            }
+        }
+
+        // keep the order of the ids
+        Map<String, T> ordered = new LinkedHashMap<>();
+        for (String id : ids) {
+            if (retVal.containsKey(id)) {
+                ordered.put(id, retVal.get(id));
+            }
+        }
+        return ordered;
+    }
+
+    private Cached fresh(ResourceType type, String id) {
+        Map<String, Cached> typeEntries = this.entries.get(type);
+        Cached cached = typeEntries.get(id);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cached.loadedAtMillis >= this.ttlMillis) {
+            typeEntries.remove(id, cached);
+            return null;
+        }
+        return cached;
+    }
+
+    private Object load(ResourceType type, String id, OsCalls osCalls) {
+        long invalidationsBefore = this.invalidations.get();
+        long loadedAtMillis = System.currentTimeMillis();
+
+        Object value = fetch(type, id, osCalls);
+        if (value != null && this.ttlMillis > 0 && this.invalidations.get() == invalidationsBefore) {
+            this.entries.get(type).put(id, new Cached(value, loadedAtMillis));
+        }
+        return value;
+    }
+
+    private static Object fetch(ResourceType type, String id, OsCalls osCalls) {
+        switch (type) {
+        case PORT_CHAIN:
+            PortChain portChain = osCalls.getPortChain(id);
+            return portChain != null ? new Chain(portChain) : null;
+        case PORT_PAIR_GROUP:
+            PortPairGroup portPairGroup = osCalls.getPortPairGroup(id);
+            return portPairGroup != null ? toPortPairIds(portPairGroup) : null;
+        case PORT_PAIR:
+            return osCalls.getPortPair(id);
+        case FLOW_CLASSIFIER:
+            FlowClassifier flowClassifier = osCalls.getFlowClassifier(id);
+            return flowClassifier != null ? new Hook(flowClassifier) : null;
+        case PORT:
+            return osCalls.getPort(id);
+        default:
+            throw new IllegalArgumentException("Unsupported resource type " + type);
+        }
+    }
+
+    private static List<String> toPortPairIds(PortPairGroup portPairGroup) {
+        return portPairGroup.getPortPairs() != null
+                ? Collections.unmodifiableList(new ArrayList<>(portPairGroup.getPortPairs()))
+                : Collections.emptyList();
+    }
+
+    private static NetworkElementImpl toNetworkElement(Map<String, Port> ports, String portId, String parentId) {
+        Port port = portId != null ? ports.get(portId) : null;
+        return port != null ? RedirectionApiUtils.toNetworkElement(port, parentId) : null;
+    }
+
+    private static void addIfNotNull(Set<String> ids, String id) {
+        if (id != null) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * The attributes of a port chain held by the view.
+     */
+    public static final class Chain {
+        private final String id;
+        private final String projectId;
+        private final List<String> portPairGroupIds;
+        private final List<String> flowClassifierIds;
+
+        Chain(PortChain portChain) {
+            this.id = portChain.getId();
+            this.projectId = portChain.getTenantId();
+            this.portPairGroupIds = portChain.getPortPairGroups() != null
+                    ? Collections.unmodifiableList(new ArrayList<>(portChain.getPortPairGroups()))
+                    : Collections.emptyList();
+            this.flowClassifierIds = portChain.getFlowClassifiers() != null
+                    ? Collections.unmodifiableList(new ArrayList<>(portChain.getFlowClassifiers()))
+                    : Collections.emptyList();
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getProjectId() {
+            return this.projectId;
+        }
+
+        public List<String> getPortPairGroupIds() {
+            return this.portPairGroupIds;
+        }
+
+        public List<String> getFlowClassifierIds() {
+            return this.flowClassifierIds;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.id, this.projectId, this.portPairGroupIds, this.flowClassifierIds);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Chain)) {
+                return false;
+            }
+            Chain other = (Chain) obj;
+            return Objects.equals(this.id, other.id) && Objects.equals(this.projectId, other.projectId)
+                    && this.portPairGroupIds.equals(other.portPairGroupIds)
+                    && this.flowClassifierIds.equals(other.flowClassifierIds);
+        }
+    }
+
+    /**
+     * The attributes of a flow classifier held by the view.
+     */
+    public static final class Hook {
+        private final String id;
+        private final String protectedPortId;
+        private final String destinationIpPrefix;
+
+        Hook(FlowClassifier flowClassifier) {
+            this.id = flowClassifier.getId();
+            this.protectedPortId = flowClassifier.getLogicalDestinationPort();
+            this.destinationIpPrefix = flowClassifier.getDestinationIpPrefix();
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * @return the inspected port of a per-port hook, null for an aggregate hook
+         */
+        public String getProtectedPortId() {
+            return this.protectedPortId;
+        }
+
+        /**
+         * @return the block of an aggregate hook, null for a per-port hook
+         */
+        public String getDestinationIpPrefix() {
+            return this.destinationIpPrefix;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.id, this.protectedPortId, this.destinationIpPrefix);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Hook)) {
+                return false;
+            }
+            Hook other = (Hook) obj;
+            return Objects.equals(this.id, other.id) && Objects.equals(this.protectedPortId, other.protectedPortId)
+                    && Objects.equals(this.destinationIpPrefix, other.destinationIpPrefix);
+        }
+    }
+
+    /**
+     * An entry of the view picked for verification.
+     */
+    public static final class Sample {
+        private final ResourceType type;
+        private final String id;
+        private final Object value;
+        private final long ageMillis;
+
+        Sample(ResourceType type, String id, Cached cached, long now) {
+            this.type = type;
+            this.id = id;
+            this.value = cached.value;
+            this.ageMillis = now - cached.loadedAtMillis;
+        }
+
+        public ResourceType getType() {
+            return this.type;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * @return the time since the entry was loaded
+         */
+        public long getAgeMillis() {
+            return this.ageMillis;
+        }
+
+        /**
+         * @return the project of a port chain entry, or null for the other types
+         */
+        public String getProjectId() {
+            return this.value instanceof Chain ? ((Chain) this.value).projectId : null;
+        }
+
+        /**
+         * @return the flow classifiers of a port chain entry, or an empty list for the other types
+         */
+        public List<String> getFlowClassifierIds() {
+            return this.value instanceof Chain ? ((Chain) this.value).flowClassifierIds : Collections.emptyList();
+        }
+    }
+
+    private static final class Cached {
+        private final Object value;
+        private final long loadedAtMillis;
+
+        Cached(Object value, long loadedAtMillis) {
+            this.value = value;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+    }
+}
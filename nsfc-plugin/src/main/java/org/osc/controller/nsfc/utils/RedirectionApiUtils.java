@@ -16,19 +16,28 @@
  *******************************************************************************/
 package org.osc.controller.nsfc.utils;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.osc.controller.nsfc.utils.FilteredListings.EGRESS;
+import static org.osc.controller.nsfc.utils.FilteredListings.INGRESS;
+import static org.osc.controller.nsfc.utils.NegativeCache.ResourceType.PORT_PAIR;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.openstack4j.api.Builders;
 import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.IP;
+import org.openstack4j.model.network.ext.Ethertype;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
 import org.openstack4j.model.network.ext.PortPair;
 import org.openstack4j.model.network.ext.PortPairGroup;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.sdk.controller.element.InspectionPortElement;
 import org.osc.sdk.controller.element.NetworkElement;
 import org.slf4j.Logger;
@@ -37,12 +46,32 @@ import org.slf4j.LoggerFactory;
 public class RedirectionApiUtils {
 
     private static final Logger LOG = LoggerFactory.getLogger(RedirectionApiUtils.class);
-    private static final String QUERY_PARAM_ROUTER_DEVICE_OWNER = "network:router_interface";
+    static final String QUERY_PARAM_ROUTER_DEVICE_OWNER = "network:router_interface";
 
     private OsCalls osCalls;
+    private GatewayPortIndex gatewayPortIndex;
 
     public RedirectionApiUtils(OsCalls osCalls) {
+        this(osCalls, new GatewayPortIndex());
+    }
+
+    /**
+     * @param gatewayPortIndex the default gateway ports, shared by the callers on the same VC
+     */
+    public RedirectionApiUtils(OsCalls osCalls, GatewayPortIndex gatewayPortIndex) {
         this.osCalls = osCalls;
+        this.gatewayPortIndex = gatewayPortIndex;
+    }
+
+    public static NetworkElementImpl toNetworkElement(Port port, String parentId) {
+        List<String> ips = new ArrayList<>(port.getFixedIps() != null ? port.getFixedIps().size() : 0);
+        if (port.getFixedIps() != null) {
+            for (IP ip : port.getFixedIps()) {
+                ips.add(ip.getIpAddress());
+            }
+        }
+        List<String> macs = port.getMacAddress() != null ? singletonList(port.getMacAddress()) : emptyList();
+        return new NetworkElementImpl(port.getId(), macs, ips, parentId);
     }
 
     public Port fetchProtectedPort(FlowClassifier flowClassifier) {
@@ -50,23 +79,33 @@ public class RedirectionApiUtils {
     }
 
     /**
-     * Expensive call: Searches through the list port pairs from openstack.
+     * Lists the port pairs filtered on the ingress and egress ports.
      * @param ingress
      * @param egress
      *
      * @return PortPair
      */
     public PortPair fetchPortPairByNetworkElements(NetworkElement ingress, NetworkElement egress) {
-        String ingressId = ingress != null ? ingress.getElementId() : null;
-        String egressId = egress != null ? egress.getElementId() : null;
-
-        List<? extends PortPair> portPairs = this.osCalls.listPortPairs();
-
-        return portPairs.stream()
-                        .filter(pp -> Objects.equals(ingressId, pp.getIngressId())
-                                            && Objects.equals(egressId, pp.getEgressId()))
-                        .findFirst()
-                        .orElse(null);
+        try (Span span = Span.child("query fetchPortPairByNetworkElements")) {
+            String ingressId = ingress != null ? ingress.getElementId() : null;
+            String egressId = egress != null ? egress.getElementId() : null;
+
+            // Neutron cannot filter on a missing port, those pairs are matched below
+            Map<String, List<String>> filters = new HashMap<>();
+            if (ingressId != null) {
+                filters.put(INGRESS, singletonList(ingressId));
+            }
+            if (egressId != null) {
+                filters.put(EGRESS, singletonList(egressId));
+            }
+            List<? extends PortPair> portPairs = this.osCalls.listPortPairs(filters);
+
+            return portPairs.stream()
+                            .filter(pp -> Objects.equals(ingressId, pp.getIngressId())
+                                                && Objects.equals(egressId, pp.getEgressId()))
+                            .findFirst()
+                            .orElse(null);
+        }
     }
 
     public PortPair fetchPortPairForInspectionPort(InspectionPortElement inspectionPort) {
@@ -78,77 +117,122 @@ public class RedirectionApiUtils {
         }
 
         if (portPair == null) {
-            LOG.warn("Failed to retrieve Port Pair by id! Trying by ingress and egress " + inspectionPort);
-
             NetworkElement ingress = inspectionPort.getIngressPort();
             NetworkElement egress = inspectionPort.getEgressPort();
 
+            // the scan found nothing for these ports a moment ago and no port pair has been created since
+            NegativeCache negativeCache = this.osCalls.getNegativeCache();
+            String lookupKey = (ingress != null ? ingress.getElementId() : null) + "/"
+                    + (egress != null ? egress.getElementId() : null);
+            if (negativeCache.isLookupMissing(PORT_PAIR, lookupKey)) {
+                return null;
+            }
+
+            LOG.warn("Failed to retrieve Port Pair by id! Trying by ingress and egress " + inspectionPort);
+
             portPair = fetchPortPairByNetworkElements(ingress, egress);
+
+            if (portPair == null) {
+                negativeCache.recordLookupMissing(PORT_PAIR, lookupKey);
+            }
         }
 
         return portPair;
     }
 
     public PortPairGroup fetchContainingPortPairGroup(String portPairId) {
-        List<? extends PortPairGroup> portPairGroups = this.osCalls.listPortPairGroups();
-        Optional<? extends PortPairGroup> ppgOpt = portPairGroups.stream()
-                                        .filter(ppg -> ppg.getPortPairs().contains(portPairId))
-                                        .findFirst();
-        return ppgOpt.orElse(null);
+        try (Span span = Span.child("scan fetchContainingPortPairGroup")) {
+            List<? extends PortPairGroup> portPairGroups = this.osCalls.listPortPairGroups();
+            Optional<? extends PortPairGroup> ppgOpt = portPairGroups.stream()
+                                            .filter(ppg -> ppg.getPortPairs().contains(portPairId))
+                                            .findFirst();
+            return ppgOpt.orElse(null);
+        }
     }
 
     public PortChain fetchContainingPortChain(String portPairGroupId) {
-        List<? extends PortChain> portChains = this.osCalls.listPortChains();
-        Optional<? extends PortChain> pcOpt = portChains.stream()
-                                        .filter(pc -> pc.getPortPairGroups().contains(portPairGroupId))
-                                        .findFirst();
-        return pcOpt.orElse(null);
+        try (Span span = Span.child("scan fetchContainingPortChain")) {
+            List<? extends PortChain> portChains = this.osCalls.listPortChains();
+            Optional<? extends PortChain> pcOpt = portChains.stream()
+                                            .filter(pc -> pc.getPortPairGroups().contains(portPairGroupId))
+                                            .findFirst();
+            return pcOpt.orElse(null);
+        }
     }
 
     public PortChain fetchContainingPortChainForFC(String flowClassifierId) {
-        List<? extends PortChain> portChains = this.osCalls.listPortChains();
-        Optional<? extends PortChain> pcOpt = portChains.stream()
-                                        .filter(pc -> pc.getFlowClassifiers() != null
-                                                          && pc.getFlowClassifiers().contains(flowClassifierId))
-                                        .findFirst();
-        return pcOpt.orElse(null);
+        try (Span span = Span.child("scan fetchContainingPortChainForFC")) {
+            List<? extends PortChain> portChains = this.osCalls.listPortChains();
+            Optional<? extends PortChain> pcOpt = portChains.stream()
+                                            .filter(pc -> pc.getFlowClassifiers() != null
+                                                              && pc.getFlowClassifiers().contains(flowClassifierId))
+                                            .findFirst();
+            return pcOpt.orElse(null);
+        }
     }
 
     public FlowClassifier buildFlowClassifier(String inspectedPortId, String defaultGatewayInterfacePortId) {
+        return buildFlowClassifier(inspectedPortId, defaultGatewayInterfacePortId, null);
+    }
+
+    public FlowClassifier buildFlowClassifier(String inspectedPortId, String defaultGatewayInterfacePortId,
+                                              String portChainId) {
         FlowClassifier flowClassifier;
 
         flowClassifier = Builders.flowClassifier()
                              .description("Flow Classifier created by OSC")
-                             .name("OSCFlowClassifier-" + UUID.randomUUID().toString().substring(0, 8))
+                             .name(ResourceNames.flowClassifierName(inspectedPortId, portChainId))
                              .logicalSourcePort(defaultGatewayInterfacePortId)
                              .logicalDestinationPort(inspectedPortId)
                              .build();
         return flowClassifier;
     }
     
+    /**
+     * @param cidr the IPv4 block of the inspected ports, all on the subnet of the router interface port
+     */
+    public FlowClassifier buildAggregateFlowClassifier(String cidr, String defaultGatewayInterfacePortId,
+                                                       String portChainId) {
+        return Builders.flowClassifier()
+                       .description("Aggregate Flow Classifier created by OSC")
+                       .name(ResourceNames.aggregateFlowClassifierName(portChainId, cidr))
+                       .ethertype(Ethertype.IPv4)
+                       .logicalSourcePort(defaultGatewayInterfacePortId)
+                       .destinationIpPrefix(cidr)
+                       .build();
+    }
+
     public Port fetchDefaultGatewayPort(String inspectedPortId) {
-    	Port inspectedPort = this.osCalls.getPort(inspectedPortId);
-    	List<? extends IP> fixedIPs = inspectedPort.getFixedIps().stream().collect(Collectors.toList());
-    	String subnetId = fixedIPs.get(0).getSubnetId();
-    	List<? extends Port> routerInterfacePorts = this.osCalls.listPorts().stream()
-    			                                        .filter(p -> p.getDeviceOwner() != null 
-                                                            && p.getDeviceOwner().equals(QUERY_PARAM_ROUTER_DEVICE_OWNER))
-                                                        .collect(Collectors.toList());
-
-        if (routerInterfacePorts.size() == 0) {
-    		return null;
-    	}
-    	
-    	Port defaultGatewayPort = routerInterfacePorts.stream()
-                                      .filter(p -> p.getFixedIps()
-                                          .stream()
-                                          .collect(Collectors.toList())
-                                          .get(0)
-                                          .getSubnetId()
-                                          .equals(subnetId))
-                                          .findAny()
-                                          .get();
-    	
-    	return defaultGatewayPort;
+        try (Span span = Span.child("fetchDefaultGatewayPort")) {
+            Port inspectedPort = this.osCalls.getPort(inspectedPortId);
+            if (firstSubnetId(inspectedPort) == null) {
+                return null;
+            }
+
+            return this.gatewayPortIndex.getGatewayPort(inspectedPort, this.osCalls);
+        }
+    }
+
+    /**
+     * @return the address of the fixed ip the gateway port is looked up by, if it is an IPv4 address
+     */
+    public static String firstIpv4Address(Port port) {
+        if (port == null || port.getFixedIps() == null) {
+            return null;
+        }
+        for (IP ip : port.getFixedIps()) {
+            return CidrBlocks.isIpv4(ip.getIpAddress()) ? ip.getIpAddress() : null;
+        }
+        return null;
+    }
+
+    static String firstSubnetId(Port port) {
+        if (port == null || port.getFixedIps() == null) {
+            return null;
+        }
+        for (IP ip : port.getFixedIps()) {
+            return ip.getSubnetId();
+        }
+        return null;
     }
 }
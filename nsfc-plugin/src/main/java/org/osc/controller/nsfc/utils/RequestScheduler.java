@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rate limits the openstack requests of a VC with a token bucket, serving waiting requests by priority.
+ *
+ * A request may take a token only when no request of a higher priority is waiting, so urgent mutations
+ * overtake queued reads and background reconciliation only uses what is left. A rate of zero or less
+ * disables the limit.
+ */
+public class RequestScheduler {
+
+    public enum Priority {
+        /** Creates, updates and deletes, e.g. removing the hook of a terminating VM */
+        MUTATION,
+        /** Reads answering a call from OSC */
+        INTERACTIVE,
+        /** Reconciliation and other reads nobody waits for */
+        BACKGROUND
+    }
+
+    private volatile double permitsPerSecond;
+    private double burst;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition tokenReleased = this.lock.newCondition();
+    private final int[] waiting = new int[Priority.values().length];
+    private final Map<Priority, LaneStats> stats = new EnumMap<>(Priority.class);
+
+    private double tokens;
+    private long refilledAtNanos;
+
+    /**
+     * @param permitsPerSecond sustained requests per second, zero or less for no limit
+     * @param burst requests allowed at once after a quiet period
+     */
+    public RequestScheduler(double permitsPerSecond, int burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAtNanos = System.nanoTime();
+        for (Priority priority : Priority.values()) {
+            this.stats.put(priority, new LaneStats());
+        }
+    }
+
+    /**
+     * @return a scheduler which never delays requests
+     */
+    public static RequestScheduler unlimited() {
+        return new RequestScheduler(0, 1);
+    }
+
+    /**
+     * Changes the limit without disturbing waiting requests, which are then served at the new rate. Tokens
+     * saved up above the new burst are dropped.
+     *
+     * @param permitsPerSecond sustained requests per second, zero or less for no limit
+     * @param burst requests allowed at once after a quiet period
+     */
+    public void setRate(double permitsPerSecond, int burst) {
+        this.lock.lock();
+        try {
+            refill();
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = Math.max(1, burst);
+            this.tokens = Math.min(this.tokens, this.burst);
+            this.tokenReleased.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public double getPermitsPerSecond() {
+        return this.permitsPerSecond;
+    }
+
+    /**
+     * @return the number of requests of the priority waiting for a token
+     */
+    public int getQueueDepth(Priority priority) {
+        this.lock.lock();
+        try {
+            return this.waiting[priority.ordinal()];
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getRequestCount(Priority priority) {
+        return this.stats.get(priority).requests.get();
+    }
+
+    public double getAverageWaitMillis(Priority priority) {
+        LaneStats lane = this.stats.get(priority);
+        long requests = lane.requests.get();
+        return requests == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(lane.waitNanos.get()) / 1000.0 / requests;
+    }
+
+    public long getMaxWaitMillis(Priority priority) {
+        return TimeUnit.NANOSECONDS.toMillis(this.stats.get(priority).maxWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RequestScheduler [permitsPerSecond=").append(this.permitsPerSecond);
+        for (Priority priority : Priority.values()) {
+            sb.append(", ").append(priority).append("=[queued=").append(getQueueDepth(priority))
+              .append(", requests=").append(getRequestCount(priority))
+              .append(", avgWaitMs=").append(String.format("%.2f", getAverageWaitMillis(priority)))
+              .append(", maxWaitMs=").append(getMaxWaitMillis(priority)).append(']');
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Blocks until a request of the given priority may be sent.
+     */
+    public void acquire(Priority priority) {
+        if (this.permitsPerSecond <= 0) {
+            this.stats.get(priority).record(0);
+            return;
+        }
+
+        long start = System.nanoTime();
+        this.lock.lock();
+        try {
+            this.waiting[priority.ordinal()]++;
+            try {
+                while (true) {
+                    if (this.permitsPerSecond <= 0) {
+                        // the limit was lifted while waiting
+                        break;
+                    }
+                    refill();
+                    if (!higherPriorityWaiting(priority) && this.tokens >= 1) {
+                        this.tokens -= 1;
+                        break;
+                    }
+
+                    long untilNextToken = (long) ((1 - this.tokens) / this.permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+                    this.tokenReleased.awaitNanos(Math.max(untilNextToken, TimeUnit.MILLISECONDS.toNanos(1)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to send a " + priority + " request", e);
+            } finally {
+                this.waiting[priority.ordinal()]--;
+                // lower priorities may now proceed
+                this.tokenReleased.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.stats.get(priority).record(System.nanoTime() - start);
+    }
+
+    private boolean higherPriorityWaiting(Priority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (this.waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (this.permitsPerSecond <= 0) {
+            this.tokens = this.burst;
+            this.refilledAtNanos = now;
+            return;
+        }
+        double elapsedSeconds = (now - this.refilledAtNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        this.tokens = Math.min(this.burst, this.tokens + elapsedSeconds * this.permitsPerSecond);
+        this.refilledAtNanos = now;
+    }
+
+    private static final class LaneStats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        void record(long waitedNanos) {
+            this.requests.incrementAndGet();
+            this.waitNanos.addAndGet(waitedNanos);
+            this.maxWaitNanos.accumulateAndGet(waitedNanos, Math::max);
+        }
+    }
+}
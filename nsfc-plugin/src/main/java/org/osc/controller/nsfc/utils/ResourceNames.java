@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Deterministic names for the openstack objects created by OSC.
+ *
+ * Names are derived from the inputs that define the object, so a retried call computes the same
+ * name as its earlier attempt and can find what that attempt created.
+ */
+public final class ResourceNames {
+
+    public static final String PORT_PAIR_PREFIX = "OSCPortPair-";
+    public static final String PORT_PAIR_GROUP_PREFIX = "OSCPortPairGroup-";
+    public static final String PORT_CHAIN_PREFIX = "OSCPortChain-";
+    public static final String FLOW_CLASSIFIER_PREFIX = "OSCFlowClassifier-";
+    public static final String AGGREGATE_FLOW_CLASSIFIER_PREFIX = "OSCAggregateFlowClassifier-";
+
+    private static final int DIGEST_CHARS = 16;
+
+    private ResourceNames() {
+    }
+
+    /**
+     * @return whether the name is one given by OSC to the objects it creates
+     */
+    public static boolean isOscName(String name) {
+        return name != null && (name.startsWith(PORT_PAIR_PREFIX) || name.startsWith(PORT_PAIR_GROUP_PREFIX)
+                || name.startsWith(PORT_CHAIN_PREFIX) || name.startsWith(FLOW_CLASSIFIER_PREFIX)
+                || name.startsWith(AGGREGATE_FLOW_CLASSIFIER_PREFIX));
+    }
+
+    public static String portPairName(String ingressId, String egressId) {
+        return PORT_PAIR_PREFIX + digest(ingressId, egressId);
+    }
+
+    /**
+     * @param portPairId the port pair the group is created for
+     */
+    public static String portPairGroupName(String portPairId) {
+        return PORT_PAIR_GROUP_PREFIX + digest(portPairId);
+    }
+
+    public static String portChainName(List<String> portPairGroupIds) {
+        return PORT_CHAIN_PREFIX + digest(portPairGroupIds.toArray(new String[portPairGroupIds.size()]));
+    }
+
+    public static String flowClassifierName(String inspectedPortId, String portChainId) {
+        return FLOW_CLASSIFIER_PREFIX + digest(inspectedPortId, portChainId);
+    }
+
+    /**
+     * @param cidr the destination block of the classifier, which the port chain holds at most once
+     */
+    public static String aggregateFlowClassifierName(String portChainId, String cidr) {
+        return AGGREGATE_FLOW_CLASSIFIER_PREFIX + digest(portChainId, cidr);
+    }
+
+    private static String digest(String... parts) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for (String part : parts) {
+            if (part != null) {
+                sha.update(part.getBytes(StandardCharsets.UTF_8));
+            }
+            // separator, so that ("ab", "c") and ("a", "bc") differ
+            sha.update((byte) 0);
+        }
+
+        byte[] hash = sha.digest();
+        StringBuilder hex = new StringBuilder(DIGEST_CHARS);
+        for (int i = 0; i < DIGEST_CHARS / 2; i++) {
+            hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
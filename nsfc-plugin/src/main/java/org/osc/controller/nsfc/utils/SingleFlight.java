@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical calls into one.
+ *
+ * The first caller for a key runs the call; callers arriving while it is in flight wait for and share its
+ * result or exception. Nothing is kept once the call completes, so this never serves stale data.
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sharedCalls = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> current = this.inFlight.putIfAbsent(key, flight);
+
+        if (current != null) {
+            this.sharedCalls.incrementAndGet();
+            try {
+                return (T) current.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            T result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return the number of calls answered by another caller's request
+     */
+    public long getSharedCalls() {
+        return this.sharedCalls.get();
+    }
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A timed step of a traced operation.
+ *
+ * Root spans are started by a {@link Tracer} for each redirection api operation. Openstack calls and scans
+ * attach child spans to the current span of the thread with {@link #child(String)}, which does nothing
+ * outside a traced operation.
+ */
+public class Span implements AutoCloseable {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private static final Span NOOP = new Span(null, null, null, null) {
+        @Override
+        public Span setAttribute(String key, Object value) {
+            return this;
+        }
+
+        @Override
+        public void setError(Throwable error) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Tracer tracer;
+    private final Span parent;
+    private final String name;
+    private final String traceId;
+    private final String spanId;
+    private final long startEpochNanos;
+    private final long startNanos;
+    private final Map<String, Object> attributes = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<Span> children = Collections.synchronizedList(new ArrayList<>());
+
+    private final Span previous;
+    private volatile long durationNanos = -1;
+    private volatile String error;
+
+    private Span(Tracer tracer, Span parent, String name, Span previous) {
+        this.tracer = tracer;
+        this.parent = parent;
+        this.name = name;
+        this.previous = previous;
+        this.traceId = parent != null ? parent.traceId : randomHex(16);
+        this.spanId = randomHex(8);
+        this.startEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+    }
+
+    static Span root(Tracer tracer, String name) {
+        if (CURRENT.get() != null) {
+            // an operation called from within another one
+            return child(name);
+        }
+
+        Span span = new Span(tracer, null, name, null);
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * Starts a span under the current span of the thread, or a span recording nothing if there is none.
+     */
+    public static Span child(String name) {
+        Span parent = CURRENT.get();
+        if (parent == null || parent == NOOP) {
+            return NOOP;
+        }
+
+        Span span = new Span(parent.tracer, parent, name, parent);
+        parent.children.add(span);
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * @return the call, run with the current span of this thread as the current span of the thread running it
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> call) {
+        Span span = CURRENT.get();
+        if (span == null) {
+            return call;
+        }
+
+        return () -> {
+            Span previous = CURRENT.get();
+            CURRENT.set(span);
+            try {
+                return call.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public Span setAttribute(String key, Object value) {
+        this.attributes.put(key, value);
+        return this;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error.getClass().getSimpleName() + ": " + error.getMessage();
+    }
+
+    @Override
+    public void close() {
+        if (this.durationNanos >= 0) {
+            return;
+        }
+
+        this.durationNanos = System.nanoTime() - this.startNanos;
+        if (CURRENT.get() == this) {
+            restore(this.previous);
+        }
+        if (this.parent == null) {
+            this.tracer.finish(this);
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getTraceId() {
+        return this.traceId;
+    }
+
+    public String getSpanId() {
+        return this.spanId;
+    }
+
+    public String getParentSpanId() {
+        return this.parent != null ? this.parent.spanId : null;
+    }
+
+    public long getStartEpochNanos() {
+        return this.startEpochNanos;
+    }
+
+    public long getDurationNanos() {
+        return this.durationNanos;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+
+    public Map<String, Object> getAttributes() {
+        synchronized (this.attributes) {
+            return new LinkedHashMap<>(this.attributes);
+        }
+    }
+
+    public List<Span> getChildren() {
+        synchronized (this.children) {
+            return new ArrayList<>(this.children);
+        }
+    }
+
+    /**
+     * @return the span and its descendants, one per line, indented by depth
+     */
+    public String toTreeString() {
+        StringBuilder tree = new StringBuilder();
+        appendTree(tree, 0);
+        return tree.toString();
+    }
+
+    private void appendTree(StringBuilder tree, int depth) {
+        for (int i = 0; i < depth; i++) {
+            tree.append("  ");
+        }
+        tree.append(this.name).append(' ')
+            .append(this.durationNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(this.durationNanos) + "ms" : "unfinished");
+        Map<String, Object> attributes = getAttributes();
+        if (!attributes.isEmpty()) {
+            tree.append(' ').append(attributes);
+        }
+        if (this.error != null) {
+            tree.append(" error=").append(this.error);
+        }
+        tree.append('\n');
+        for (Span child : getChildren()) {
+            child.appendTree(tree, depth + 1);
+        }
+    }
+
+    private static void restore(Span previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    private static String randomHex(int bytes) {
+        StringBuilder hex = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i++) {
+            hex.append(String.format("%02x", ThreadLocalRandom.current().nextInt(256)));
+        }
+        return hex.toString();
+    }
+}
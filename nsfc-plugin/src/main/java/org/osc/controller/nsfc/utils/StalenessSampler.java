@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static org.osc.controller.nsfc.utils.NegativeCache.ResourceType.*;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies from random samples that the local state of a VC still matches openstack.
+ *
+ * Each round compares a random sample of the port chains, port pair groups, port pairs and flow classifiers
+ * held by the port chain view with openstack, and checks the inspection hook index against the sampled chains.
+ * The age of the sampled entries and the mismatches are kept as metrics. A stale entry is dropped; when the
+ * mismatch rate of a type, or of the hook index partition of a project, exceeds the threshold over a window of
+ * {@link #WINDOW_SAMPLES} samples, that type or partition alone is dropped and fetched again as it is used.
+ */
+public class StalenessSampler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StalenessSampler.class);
+
+    static final int WINDOW_SAMPLES = 20;
+    private static final int AGE_HISTORY = 1024;
+    private static final int DEFAULT_SAMPLE_SIZE = 5;
+    private static final double DEFAULT_MISMATCH_THRESHOLD = 0.2;
+
+    private static final ResourceType[] SAMPLED_TYPES = { PORT_CHAIN, PORT_PAIR_GROUP, PORT_PAIR, FLOW_CLASSIFIER };
+
+    private final PortChainView portChainView;
+    private final InspectionHookIndex hookIndex;
+    private final Random random = new Random();
+
+    private final Map<ResourceType, TypeStats> stats = new EnumMap<>(ResourceType.class);
+    private final Map<String, Window> hookIndexWindows = new ConcurrentHashMap<>();
+    private final AtomicLong hookIndexSamples = new AtomicLong();
+    private final AtomicLong hookIndexMismatches = new AtomicLong();
+    private final AtomicLong hookIndexInvalidations = new AtomicLong();
+
+    // Ring of the ages of the latest samples, guarded by itself so metrics can be read during a round
+    private final long[] ages = new long[AGE_HISTORY];
+    private long ageCount;
+
+    private volatile int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private volatile double mismatchThreshold = DEFAULT_MISMATCH_THRESHOLD;
+    private volatile OsCalls osCalls;
+
+    public StalenessSampler(PortChainView portChainView, InspectionHookIndex hookIndex) {
+        this.portChainView = portChainView;
+        this.hookIndex = hookIndex;
+        for (ResourceType type : SAMPLED_TYPES) {
+            this.stats.put(type, new TypeStats());
+        }
+    }
+
+    /**
+     * @param osCalls the calls the rounds verify with, until the next call. Rounds are skipped until it is set.
+     */
+    public void setOsCalls(OsCalls osCalls) {
+        this.osCalls = osCalls;
+    }
+
+    /**
+     * @param sampleSize the number of entries of each type verified per round
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @param mismatchThreshold the fraction of mismatched samples in a window above which the sampled state is
+     * invalidated
+     */
+    public void setMismatchThreshold(double mismatchThreshold) {
+        this.mismatchThreshold = mismatchThreshold;
+    }
+
+    /**
+     * Runs one round of verification. A round stops at the first failed request, leaving the rest to the next.
+     */
+    public synchronized void sample() {
+        OsCalls osCalls = this.osCalls;
+        if (osCalls == null || this.sampleSize <= 0) {
+            return;
+        }
+
+        try {
+            OsCalls calls = osCalls.forCurrentThread();
+            for (ResourceType type : SAMPLED_TYPES) {
+                for (PortChainView.Sample sample : this.portChainView.sample(type, this.sampleSize, this.random)) {
+                    verify(sample, calls);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to verify the local topology state, will retry on the next round", e);
+        }
+    }
+
+    private void verify(PortChainView.Sample sample, OsCalls calls) {
+        boolean current = this.portChainView.verify(sample, calls);
+        recordAge(sample.getAgeMillis());
+
+        ResourceType type = sample.getType();
+        TypeStats typeStats = this.stats.get(type);
+        typeStats.samples.incrementAndGet();
+        if (!current) {
+            typeStats.mismatches.incrementAndGet();
+            LOG.debug("Stale {} {} in the port chain view, loaded {} ms ago", type, sample.getId(),
+                    sample.getAgeMillis());
+            this.portChainView.invalidate(type, sample.getId());
+        }
+
+        if (typeStats.window.record(!current, this.mismatchThreshold)) {
+            LOG.warn("Mismatch rate of {} in the port chain view above {}, invalidating them", type,
+                    this.mismatchThreshold);
+            typeStats.invalidations.incrementAndGet();
+            this.portChainView.invalidateType(type);
+        }
+
+        if (current && type == PORT_CHAIN) {
+            verifyHookIndex(sample);
+        }
+    }
+
+    /**
+     * The classifiers of a verified chain must not be indexed under another chain.
+     */
+    private void verifyHookIndex(PortChainView.Sample portChain) {
+        boolean consistent = true;
+        for (String hookId : portChain.getFlowClassifierIds()) {
+            String indexedPortChainId = this.hookIndex.getPortChainId(hookId);
+            if (indexedPortChainId != null && !indexedPortChainId.equals(portChain.getId())) {
+                consistent = false;
+                break;
+            }
+        }
+
+        this.hookIndexSamples.incrementAndGet();
+        if (!consistent) {
+            this.hookIndexMismatches.incrementAndGet();
+        }
+
+        String projectId = portChain.getProjectId() != null ? portChain.getProjectId()
+                : TenantPartitions.UNKNOWN_PROJECT;
+        Window window = this.hookIndexWindows.computeIfAbsent(projectId, id -> new Window());
+        if (window.record(!consistent, this.mismatchThreshold)) {
+            LOG.warn("Mismatch rate of the inspection hook index of project {} above {}, invalidating it", projectId,
+                    this.mismatchThreshold);
+            this.hookIndexInvalidations.incrementAndGet();
+            this.hookIndex.invalidate(projectId);
+            this.hookIndexWindows.remove(projectId, window);
+        }
+    }
+
+    private void recordAge(long ageMillis) {
+        synchronized (this.ages) {
+            this.ages[(int) (this.ageCount % AGE_HISTORY)] = ageMillis;
+            this.ageCount++;
+        }
+    }
+
+    public long getSampleCount(ResourceType type) {
+        TypeStats typeStats = this.stats.get(type);
+        return typeStats != null ? typeStats.samples.get() : 0;
+    }
+
+    public long getMismatchCount(ResourceType type) {
+        TypeStats typeStats = this.stats.get(type);
+        return typeStats != null ? typeStats.mismatches.get() : 0;
+    }
+
+    /**
+     * @return the number of times all the entries of the type were invalidated
+     */
+    public long getInvalidationCount(ResourceType type) {
+        TypeStats typeStats = this.stats.get(type);
+        return typeStats != null ? typeStats.invalidations.get() : 0;
+    }
+
+    public long getHookIndexSampleCount() {
+        return this.hookIndexSamples.get();
+    }
+
+    public long getHookIndexMismatchCount() {
+        return this.hookIndexMismatches.get();
+    }
+
+    /**
+     * @return the number of times a project partition of the inspection hook index was invalidated
+     */
+    public long getHookIndexInvalidationCount() {
+        return this.hookIndexInvalidations.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the age at the percentile of the latest {@value #AGE_HISTORY} sampled entries, or 0 if none was
+     * sampled
+     */
+    public long getAgePercentileMillis(double percentile) {
+        long[] sorted;
+        synchronized (this.ages) {
+            sorted = Arrays.copyOf(this.ages, (int) Math.min(this.ageCount, AGE_HISTORY));
+        }
+        int count = sorted.length;
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("StalenessSampler [");
+        for (ResourceType type : SAMPLED_TYPES) {
+            sb.append(type).append("=[samples=").append(getSampleCount(type))
+              .append(", mismatches=").append(getMismatchCount(type))
+              .append(", invalidations=").append(getInvalidationCount(type)).append("], ");
+        }
+        return sb.append("HOOK_INDEX=[samples=").append(getHookIndexSampleCount())
+                 .append(", mismatches=").append(getHookIndexMismatchCount())
+                 .append(", invalidations=").append(getHookIndexInvalidationCount())
+                 .append("], p50AgeMs=").append(getAgePercentileMillis(50))
+                 .append(", p99AgeMs=").append(getAgePercentileMillis(99))
+                 .append(", maxAgeMs=").append(getAgePercentileMillis(100)).append(']').toString();
+    }
+
+    private static final class TypeStats {
+        private final AtomicLong samples = new AtomicLong();
+        private final AtomicLong mismatches = new AtomicLong();
+        private final AtomicLong invalidations = new AtomicLong();
+        private final Window window = new Window();
+    }
+
+    /**
+     * Consecutive windows of {@link StalenessSampler#WINDOW_SAMPLES} samples.
+     */
+    private static final class Window {
+        private int samples;
+        private int mismatches;
+
+        /**
+         * @return true if the sample completes a window whose mismatch rate is above the threshold
+         */
+        synchronized boolean record(boolean mismatch, double threshold) {
+            this.samples++;
+            if (mismatch) {
+                this.mismatches++;
+            }
+            if (this.samples < WINDOW_SAMPLES) {
+                return false;
+            }
+
+            boolean exceeded = (double) this.mismatches / this.samples > threshold;
+            this.samples = 0;
+            this.mismatches = 0;
+            return exceeded;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Plugin-side state partitioned by Neutron project id.
+ *
+ * Each project gets its own partition, created on first use, so loading, locking and evicting the state of one
+ * tenant never touches another's. Partitions idle for longer than the idle timeout are dropped and reloaded on
+ * their next use; beyond the maximum number of partitions the least recently used one is dropped.
+ *
+ * @param <P> the partition type, which does its own locking and loading
+ */
+public class TenantPartitions<P> {
+
+    /**
+     * Partition of objects whose project is not known.
+     */
+    public static final String UNKNOWN_PROJECT = "";
+
+    private static final long DEFAULT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int DEFAULT_MAX_PARTITIONS = 1000;
+
+    private final ConcurrentMap<String, Partition<P>> partitions = new ConcurrentHashMap<>();
+    private final Function<String, P> factory;
+    private final long idleMillis;
+    private final int maxPartitions;
+
+    public TenantPartitions(Function<String, P> factory) {
+        this(factory, DEFAULT_IDLE_MILLIS, DEFAULT_MAX_PARTITIONS);
+    }
+
+    public TenantPartitions(Function<String, P> factory, long idleMillis, int maxPartitions) {
+        this.factory = factory;
+        this.idleMillis = idleMillis;
+        this.maxPartitions = maxPartitions;
+    }
+
+    /**
+     * @return the partition of the project, created empty if it does not exist or was idle too long
+     */
+    public P get(String projectId) {
+        String key = projectId != null ? projectId : UNKNOWN_PROJECT;
+        long now = System.currentTimeMillis();
+
+        Partition<P> partition = this.partitions.compute(key, (k, current) ->
+                current != null && now - current.lastAccess < this.idleMillis ? current
+                        : new Partition<>(this.factory.apply(k)));
+        partition.lastAccess = now;
+
+        if (this.partitions.size() > this.maxPartitions) {
+            evictLeastRecentlyUsed();
+        }
+        return partition.value;
+    }
+
+    /**
+     * @return the partition of the project if it is held, without creating or touching it
+     */
+    public P peek(String projectId) {
+        Partition<P> partition = this.partitions.get(projectId != null ? projectId : UNKNOWN_PROJECT);
+        return partition != null ? partition.value : null;
+    }
+
+    /**
+     * Visits every held partition with its project id.
+     */
+    public void forEach(BiConsumer<String, P> action) {
+        for (Map.Entry<String, Partition<P>> entry : this.partitions.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue().value);
+        }
+    }
+
+    /**
+     * @return the first non-null result of the lookup over the held partitions, or null
+     */
+    public <R> R find(Function<P, R> lookup) {
+        for (Partition<P> partition : this.partitions.values()) {
+            R result = lookup.apply(partition.value);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    public void invalidate(String projectId) {
+        this.partitions.remove(projectId != null ? projectId : UNKNOWN_PROJECT);
+    }
+
+    public void invalidateAll() {
+        this.partitions.clear();
+    }
+
+    /**
+     * Drops the partitions idle for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        this.partitions.values().removeIf(p -> now - p.lastAccess >= this.idleMillis);
+    }
+
+    public int size() {
+        return this.partitions.size();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        while (this.partitions.size() > this.maxPartitions) {
+            Map.Entry<String, Partition<P>> oldest = null;
+            for (Map.Entry<String, Partition<P>> entry : this.partitions.entrySet()) {
+                if (oldest == null || entry.getValue().lastAccess < oldest.getValue().lastAccess) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null || !this.partitions.remove(oldest.getKey(), oldest.getValue())) {
+                return;
+            }
+        }
+    }
+
+    private static final class Partition<P> {
+        private final P value;
+        private volatile long lastAccess;
+
+        Partition(P value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Set;
+
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+
+/**
+ * A change of one SFC object, as published by a {@link TopologyFeed}.
+ */
+public final class TopologyChange {
+
+    public enum Kind {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final String source;
+    private final long sequence;
+    private final ResourceType resourceType;
+    private final Kind kind;
+    private final String resourceId;
+    private final boolean external;
+    private final long timestamp;
+    private final Set<String> portIds;
+
+    TopologyChange(String source, long sequence, ResourceType resourceType, Kind kind, String resourceId,
+            boolean external, long timestamp, Set<String> portIds) {
+        this.source = source;
+        this.sequence = sequence;
+        this.resourceType = resourceType;
+        this.kind = kind;
+        this.resourceId = resourceId;
+        this.external = external;
+        this.timestamp = timestamp;
+        this.portIds = portIds;
+    }
+
+    /**
+     * @return the VC, and region if any, whose objects changed
+     */
+    public String getSource() {
+        return this.source;
+    }
+
+    /**
+     * @return the position of the change in the feed, increasing by one with every change
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public ResourceType getResourceType() {
+        return this.resourceType;
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    public String getResourceId() {
+        return this.resourceId;
+    }
+
+    /**
+     * @return true if the change was made outside the plugin and detected by its reads
+     */
+    public boolean isExternal() {
+        return this.external;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @return the ports the object refers to, before and after the change, such as the ingress and egress of a
+     * port pair
+     */
+    public Set<String> getPortIds() {
+        return this.portIds;
+    }
+
+    @Override
+    public String toString() {
+        return "TopologyChange [source=" + this.source + ", sequence=" + this.sequence + ", resourceType="
+                + this.resourceType + ", kind=" + this.kind + ", resourceId=" + this.resourceId + ", external="
+                + this.external + "]";
+    }
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.openstack4j.model.common.Resource;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+import org.osc.controller.nsfc.utils.TopologyChange.Kind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ordered stream of the changes to the port pairs, port pair groups, port chains and flow classifiers of a VC.
+ *
+ * Changes come from the mutations made through {@link OsCalls}, and from its reads: a full listing or a GET
+ * which shows an object appearing, changing or disappearing since it was last seen reports an external change.
+ * Listings only report changes once the type has been listed before, so the first listing just records what
+ * exists.
+ *
+ * Listeners are called in sequence order, while the feed is locked, so they must hand the change off quickly
+ * rather than make requests. The most recent changes are kept so that a consumer can catch up
+ * with {@link #changesSince(long)}; a consumer finding a gap in the sequence must re-read the topology.
+ */
+public class TopologyFeed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyFeed.class);
+
+    private static final int DEFAULT_CAPACITY = 10000;
+    private static final Set<ResourceType> TRACKED_TYPES = EnumSet.of(ResourceType.PORT_PAIR,
+            ResourceType.PORT_PAIR_GROUP, ResourceType.PORT_CHAIN, ResourceType.FLOW_CLASSIFIER);
+
+    private final String source;
+    private final int capacity;
+    private final Deque<TopologyChange> history = new ArrayDeque<>();
+    private final Map<ResourceType, Map<String, Integer>> known = new EnumMap<>(ResourceType.class);
+    private final Map<ResourceType, Map<String, Set<String>>> portIds = new EnumMap<>(ResourceType.class);
+    private final Set<ResourceType> listed = EnumSet.noneOf(ResourceType.class);
+    private final List<Consumer<TopologyChange>> listeners = new CopyOnWriteArrayList<>();
+
+    private long sequence;
+
+    public TopologyFeed() {
+        this("");
+    }
+
+    /**
+     * @param source the VC, and region if any, the feed reports the changes of
+     */
+    public TopologyFeed(String source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    public TopologyFeed(String source, int capacity) {
+        this.source = source;
+        this.capacity = capacity;
+        for (ResourceType type : TRACKED_TYPES) {
+            this.known.put(type, new HashMap<>());
+            this.portIds.put(type, new HashMap<>());
+        }
+    }
+
+    public void addListener(Consumer<TopologyChange> listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<TopologyChange> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * @return the kept changes after the given sequence number, oldest first
+     */
+    public synchronized List<TopologyChange> changesSince(long sequence) {
+        List<TopologyChange> changes = new ArrayList<>();
+        for (TopologyChange change : this.history) {
+            if (change.getSequence() > sequence) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * @return the sequence number of the latest change, 0 before the first
+     */
+    public synchronized long getLatestSequence() {
+        return this.sequence;
+    }
+
+    public void created(ResourceType type, Resource resource) {
+        mutated(type, Kind.CREATED, resource);
+    }
+
+    public void updated(ResourceType type, Resource resource) {
+        mutated(type, Kind.UPDATED, resource);
+    }
+
+    public synchronized void deleted(ResourceType type, String id) {
+        if (isTracked(type)) {
+            this.known.get(type).remove(id);
+            publish(type, Kind.DELETED, id, false, touchedPorts(type, id, null));
+        }
+    }
+
+    /**
+     * Records the result of a GET, reporting an external change if the object differs from when it was last seen.
+     *
+     * @param resource the object, or null if it was not found
+     * @return the object
+     */
+    public synchronized <T extends Resource> T observe(ResourceType type, String id, T resource) {
+        if (!isTracked(type) || id == null) {
+            return resource;
+        }
+
+        Map<String, Integer> fingerprints = this.known.get(type);
+        Set<String> ports = touchedPorts(type, id, resource);
+        if (resource == null) {
+            if (fingerprints.remove(id) != null) {
+                publish(type, Kind.DELETED, id, true, ports);
+            }
+            return resource;
+        }
+
+        int fingerprint = fingerprint(resource);
+        Integer previous = fingerprints.put(id, fingerprint);
+        if (previous == null && this.listed.contains(type)) {
+            publish(type, Kind.CREATED, id, true, ports);
+        } else if (previous != null && previous != fingerprint) {
+            publish(type, Kind.UPDATED, id, true, ports);
+        }
+        return resource;
+    }
+
+    /**
+     * Records a full listing, reporting the objects created, updated and deleted since the previous one.
+     *
+     * @return the listing
+     */
+    public synchronized <T extends Resource> List<T> observeAll(ResourceType type, List<T> resources) {
+        if (!isTracked(type) || resources == null) {
+            return resources;
+        }
+
+        Map<String, Integer> fingerprints = this.known.get(type);
+        boolean report = !this.listed.add(type);
+        Set<String> missing = new HashSet<>(fingerprints.keySet());
+
+        for (T resource : resources) {
+            int fingerprint = fingerprint(resource);
+            Integer previous = fingerprints.put(resource.getId(), fingerprint);
+            Set<String> ports = touchedPorts(type, resource.getId(), resource);
+            missing.remove(resource.getId());
+            if (report && previous == null) {
+                publish(type, Kind.CREATED, resource.getId(), true, ports);
+            } else if (report && previous != fingerprint) {
+                publish(type, Kind.UPDATED, resource.getId(), true, ports);
+            }
+        }
+
+        for (String id : missing) {
+            fingerprints.remove(id);
+            Set<String> ports = touchedPorts(type, id, null);
+            if (report) {
+                publish(type, Kind.DELETED, id, true, ports);
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Records a filtered listing, reporting the listed objects created or updated since they were last seen. The
+     * objects missing from the listing are not reported, they may just not match the filters.
+     *
+     * @return the listing
+     */
+    public synchronized <T extends Resource> List<T> observeSome(ResourceType type, List<T> resources) {
+        if (!isTracked(type) || resources == null) {
+            return resources;
+        }
+
+        for (T resource : resources) {
+            observe(type, resource.getId(), resource);
+        }
+        return resources;
+    }
+
+    private synchronized void mutated(ResourceType type, Kind kind, Resource resource) {
+        if (isTracked(type) && resource != null) {
+            this.known.get(type).put(resource.getId(), fingerprint(resource));
+            publish(type, kind, resource.getId(), false, touchedPorts(type, resource.getId(), resource));
+        }
+    }
+
+    /**
+     * Records the ports the object now refers to.
+     *
+     * @param resource the object, or null if it is gone
+     * @return the ports the object referred to before and after the change
+     */
+    private Set<String> touchedPorts(ResourceType type, String id, Resource resource) {
+        Map<String, Set<String>> portIdsById = this.portIds.get(type);
+        Set<String> ports = resource != null ? portIdsOf(resource) : Collections.emptySet();
+        Set<String> previous = ports.isEmpty() ? portIdsById.remove(id) : portIdsById.put(id, ports);
+        if (previous == null || previous.equals(ports)) {
+            return ports;
+        }
+
+        Set<String> touched = new HashSet<>(ports);
+        touched.addAll(previous);
+        return touched;
+    }
+
+    private void publish(ResourceType type, Kind kind, String id, boolean external, Set<String> ports) {
+        TopologyChange change = new TopologyChange(this.source, ++this.sequence, type, kind, id, external,
+                System.currentTimeMillis(), ports);
+
+        this.history.addLast(change);
+        if (this.history.size() > this.capacity) {
+            this.history.removeFirst();
+        }
+
+        for (Consumer<TopologyChange> listener : this.listeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                LOG.warn("Topology change listener failed on {}", change, e);
+            }
+        }
+    }
+
+    private static boolean isTracked(ResourceType type) {
+        return TRACKED_TYPES.contains(type);
+    }
+
+    /**
+     * @return a hash of the attributes of the object that make up the topology
+     */
+    private static int fingerprint(Resource resource) {
+        if (resource instanceof PortPair) {
+            PortPair portPair = (PortPair) resource;
+            return Objects.hash(portPair.getName(), portPair.getIngressId(), portPair.getEgressId());
+        }
+        if (resource instanceof PortPairGroup) {
+            PortPairGroup portPairGroup = (PortPairGroup) resource;
+            return Objects.hash(portPairGroup.getName(), orEmpty(portPairGroup.getPortPairs()));
+        }
+        if (resource instanceof PortChain) {
+            PortChain portChain = (PortChain) resource;
+            return Objects.hash(portChain.getName(), orEmpty(portChain.getPortPairGroups()),
+                    orEmpty(portChain.getFlowClassifiers()));
+        }
+        if (resource instanceof FlowClassifier) {
+            FlowClassifier flowClassifier = (FlowClassifier) resource;
+            return Objects.hash(flowClassifier.getName(), flowClassifier.getLogicalSourcePort(),
+                    flowClassifier.getLogicalDestinationPort());
+        }
+        return Objects.hashCode(resource.getId());
+    }
+
+    private static Set<String> portIdsOf(Resource resource) {
+        Set<String> ports = new HashSet<>();
+        if (resource instanceof PortPair) {
+            ports.add(((PortPair) resource).getIngressId());
+            ports.add(((PortPair) resource).getEgressId());
+        } else if (resource instanceof FlowClassifier) {
+            ports.add(((FlowClassifier) resource).getLogicalSourcePort());
+            ports.add(((FlowClassifier) resource).getLogicalDestinationPort());
+        }
+        ports.remove(null);
+        return Collections.unmodifiableSet(ports);
+    }
+
+    // reads initialize missing collections, listings may not
+    private static List<String> orEmpty(List<String> ids) {
+        return ids != null ? ids : Collections.emptyList();
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.List;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.model.network.options.PortListOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the topology of a VC ahead of its first operations.
+ *
+ * The router interface ports and all the port pairs, port pair groups, port chains and flow classifiers are
+ * listed concurrently, and each lookup index of the VC is then built from the listings as soon as the ones it
+ * needs have arrived, concurrently with the others. The operations which follow find the indexes loaded and
+ * the port chain view filled instead of discovering the topology one lookup at a time.
+ */
+public class TopologyPrefetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyPrefetcher.class);
+
+    private final VcContext vcContext;
+
+    public TopologyPrefetcher(VcContext vcContext) {
+        this.vcContext = vcContext;
+    }
+
+    /**
+     * Blocks until the indexes are built. Must not be called from the read executor of the VC, whose threads
+     * run the listings.
+     */
+    public void prefetch(OsCalls osCalls) {
+        long startMillis = System.currentTimeMillis();
+        PortChainView portChainView = this.vcContext.getPortChainView();
+        long version = portChainView.getVersion();
+
+        OperationGraph graph = new OperationGraph(osCalls, this.vcContext.getReadExecutor());
+        OperationGraph.Step<List<? extends Port>> routerPorts = graph.step(calls -> calls.listPorts(
+                PortListOptions.create().deviceOwner(RedirectionApiUtils.QUERY_PARAM_ROUTER_DEVICE_OWNER)));
+        OperationGraph.Step<List<? extends PortPair>> portPairs = graph.step(calls -> calls.listPortPairs());
+        OperationGraph.Step<List<? extends PortPairGroup>> portPairGroups = graph.step(
+                calls -> calls.listPortPairGroups());
+        OperationGraph.Step<List<? extends PortChain>> portChains = graph.step(calls -> calls.listPortChains());
+        OperationGraph.Step<List<? extends FlowClassifier>> flowClassifiers = graph.step(
+                calls -> calls.listFlowClassifiers());
+
+        graph.step(calls -> this.vcContext.getGatewayPortIndex().load(routerPorts.get()), routerPorts);
+        graph.step(calls -> {
+            this.vcContext.getInspectionHookIndex().ensureLoaded(flowClassifiers.get(), portChains.get());
+            return null;
+        }, flowClassifiers, portChains);
+        graph.step(calls -> {
+            for (PortChain portChain : portChains.get()) {
+                if (portChain.getFlowClassifiers() != null && !portChain.getFlowClassifiers().isEmpty()) {
+                    this.vcContext.getAggregateHookIndex().get(portChain.getId()).ensureLoaded(portChain,
+                            flowClassifiers.get());
+                }
+            }
+            return null;
+        }, flowClassifiers, portChains);
+        graph.step(calls -> {
+            indexNames(portPairs.get(), portPairGroups.get(), portChains.get(), flowClassifiers.get());
+            return null;
+        }, portPairs, portPairGroups, portChains, flowClassifiers);
+        graph.step(calls -> {
+            portChainView.prime(version, portChains.get(), portPairGroups.get(), portPairs.get(),
+                    flowClassifiers.get());
+            return null;
+        }, portPairs, portPairGroups, portChains, flowClassifiers);
+
+        graph.await();
+
+        LOG.info("Prefetched {} router interface ports, {} port pairs, {} port pair groups, {} port chains and {} "
+                + "flow classifiers in {} ms", routerPorts.get().size(), portPairs.get().size(),
+                portPairGroups.get().size(), portChains.get().size(), flowClassifiers.get().size(),
+                System.currentTimeMillis() - startMillis);
+    }
+
+    private void indexNames(List<? extends PortPair> portPairs, List<? extends PortPairGroup> portPairGroups,
+            List<? extends PortChain> portChains, List<? extends FlowClassifier> flowClassifiers) {
+        NameIndex nameIndex = this.vcContext.getNameIndex();
+        for (PortPair portPair : portPairs) {
+            if (ResourceNames.isOscName(portPair.getName())) {
+                nameIndex.put(portPair.getName(), portPair.getId());
+            }
+        }
+        for (PortPairGroup portPairGroup : portPairGroups) {
+            if (ResourceNames.isOscName(portPairGroup.getName())) {
+                nameIndex.put(portPairGroup.getName(), portPairGroup.getId());
+            }
+        }
+        for (PortChain portChain : portChains) {
+            if (ResourceNames.isOscName(portChain.getName())) {
+                nameIndex.put(portChain.getName(), portChain.getId());
+            }
+        }
+        for (FlowClassifier flowClassifier : flowClassifiers) {
+            if (ResourceNames.isOscName(flowClassifier.getName())) {
+                nameIndex.put(flowClassifier.getName(), flowClassifier.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records a trace of spans for every redirection api operation.
+ *
+ * Finished traces are appended to a file as OTLP-JSON lines, one ExportTraceServiceRequest per trace, or
+ * logged at debug level when there is no file. The span tree of any operation slower than the threshold is
+ * logged as a warning.
+ */
+public class Tracer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Tracer.class);
+
+    private static final long DEFAULT_SLOW_THRESHOLD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private volatile long slowThresholdNanos;
+    private volatile File exportFile;
+    private BufferedWriter writer;
+
+    public Tracer() {
+        this(DEFAULT_SLOW_THRESHOLD_MILLIS, null);
+    }
+
+    /**
+     * @param slowThresholdMillis operations taking at least this long have their span tree logged
+     * @param exportFile the file to append OTLP-JSON traces to, or null to log them
+     */
+    public Tracer(long slowThresholdMillis, File exportFile) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.exportFile = exportFile;
+    }
+
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    /**
+     * Switches the export to another file, or to the log if null.
+     */
+    public synchronized void setExportFile(File exportFile) {
+        if (Objects.equals(exportFile, this.exportFile)) {
+            return;
+        }
+        close();
+        this.exportFile = exportFile;
+    }
+
+    /**
+     * Starts the root span of an operation, or a child span if the thread is already in an operation.
+     */
+    public Span start(String operation) {
+        return Span.root(this, operation);
+    }
+
+    void finish(Span root) {
+        if (root.getDurationNanos() >= this.slowThresholdNanos) {
+            LOG.warn("Slow operation {} took {}ms:\n{}", root.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(root.getDurationNanos()), root.toTreeString());
+        }
+
+        if (this.exportFile == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Trace {}:\n{}", root.getTraceId(), root.toTreeString());
+            }
+            return;
+        }
+
+        String json = toOtlpJson(root);
+        synchronized (this) {
+            // the file may have been switched meanwhile, the trace then goes to the new one
+            File file = this.exportFile;
+            if (file == null) {
+                return;
+            }
+            try {
+                if (this.writer == null) {
+                    this.writer = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(file, true), StandardCharsets.UTF_8));
+                }
+                this.writer.write(json);
+                this.writer.newLine();
+                this.writer.flush();
+            } catch (IOException e) {
+                LOG.warn("Failed to export trace {} to {}", root.getTraceId(), file, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.writer != null) {
+            try {
+                this.writer.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close trace export file {}", this.exportFile, e);
+            }
+            this.writer = null;
+        }
+    }
+
+    static String toOtlpJson(Span root) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[")
+            .append("{\"key\":\"service.name\",\"value\":{\"stringValue\":\"nsfc-plugin\"}}]},")
+            .append("\"scopeSpans\":[{\"scope\":{\"name\":\"").append(Tracer.class.getName()).append("\"},")
+            .append("\"spans\":[");
+        appendSpans(json, root, true);
+        return json.append("]}]}]}").toString();
+    }
+
+    private static void appendSpans(StringBuilder json, Span span, boolean first) {
+        if (!first) {
+            json.append(',');
+        }
+
+        long start = span.getStartEpochNanos();
+        json.append("{\"traceId\":\"").append(span.getTraceId())
+            .append("\",\"spanId\":\"").append(span.getSpanId()).append('"');
+        if (span.getParentSpanId() != null) {
+            json.append(",\"parentSpanId\":\"").append(span.getParentSpanId()).append('"');
+        }
+        json.append(",\"name\":");
+        appendString(json, span.getName());
+        json.append(",\"startTimeUnixNano\":\"").append(start)
+            .append("\",\"endTimeUnixNano\":\"").append(start + Math.max(0, span.getDurationNanos()))
+            .append("\",\"attributes\":[");
+
+        boolean firstAttribute = true;
+        for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+            if (!firstAttribute) {
+                json.append(',');
+            }
+            firstAttribute = false;
+            json.append("{\"key\":");
+            appendString(json, attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof Integer || value instanceof Long) {
+                json.append(",\"value\":{\"intValue\":\"").append(value).append("\"}}");
+            } else if (value instanceof Boolean) {
+                json.append(",\"value\":{\"boolValue\":").append(value).append("}}");
+            } else {
+                json.append(",\"value\":{\"stringValue\":");
+                appendString(json, String.valueOf(value));
+                json.append("}}");
+            }
+        }
+        json.append("],\"status\":");
+        if (span.getError() != null) {
+            json.append("{\"code\":2,\"message\":");
+            appendString(json, span.getError());
+            json.append('}');
+        } else {
+            json.append("{\"code\":1}");
+        }
+        json.append('}');
+
+        for (Span child : span.getChildren()) {
+            appendSpans(json, child, false);
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+}
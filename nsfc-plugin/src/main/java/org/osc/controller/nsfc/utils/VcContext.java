@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * State shared by all the redirection api instances created for the same virtualization connector.
+ */
+public class VcContext implements AutoCloseable {
+
+    private final OperationJournal journal;
+    private final Executor readExecutor;
+    private final RequestScheduler requestScheduler;
+    private final Tracer tracer;
+    private final AtomicBoolean journalRecovered = new AtomicBoolean();
+    private final AtomicBoolean prefetched = new AtomicBoolean();
+
+    private final InspectionHookIndex inspectionHookIndex = new InspectionHookIndex();
+    private final AggregateHookIndex aggregateHookIndex = new AggregateHookIndex();
+    private final DevicePortIndex devicePortIndex = new DevicePortIndex();
+    private final GatewayPortIndex gatewayPortIndex = new GatewayPortIndex();
+    private final PortAddressIndex portAddressIndex = new PortAddressIndex();
+    private final NameIndex nameIndex = new NameIndex();
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final NegativeCache negativeCache = new NegativeCache();
+    private final TopologyFeed topologyFeed;
+    private final PortChainView portChainView;
+    private final StalenessSampler stalenessSampler;
+    private volatile FilteredListings filteredListings = new FilteredListings();
+
+    public VcContext() {
+        this(OperationJournal.disabled());
+    }
+
+    public VcContext(OperationJournal journal) {
+        this(journal, Runnable::run);
+    }
+
+    /**
+     * @param readExecutor runs the concurrent Neutron reads of the redirection api
+     */
+    public VcContext(OperationJournal journal, Executor readExecutor) {
+        this(journal, readExecutor, RequestScheduler.unlimited(), new Tracer());
+    }
+
+    /**
+     * @param requestScheduler rate limits the openstack requests of the VC
+     * @param tracer records the traces of the redirection api operations
+     */
+    public VcContext(OperationJournal journal, Executor readExecutor, RequestScheduler requestScheduler,
+            Tracer tracer) {
+        this(journal, readExecutor, requestScheduler, tracer, new TopologyFeed());
+    }
+
+    /**
+     * @param topologyFeed publishes the changes to the SFC objects of the VC
+     */
+    public VcContext(OperationJournal journal, Executor readExecutor, RequestScheduler requestScheduler,
+            Tracer tracer, TopologyFeed topologyFeed) {
+        this.topologyFeed = topologyFeed;
+        this.topologyFeed.addListener(this.devicePortIndex::onTopologyChange);
+        this.portChainView = new PortChainView(topologyFeed);
+        this.stalenessSampler = new StalenessSampler(this.portChainView, this.inspectionHookIndex);
+        this.journal = journal;
+        this.readExecutor = readExecutor;
+        this.requestScheduler = requestScheduler;
+        this.tracer = tracer;
+    }
+
+    public OperationJournal getJournal() {
+        return this.journal;
+    }
+
+    public Executor getReadExecutor() {
+        return this.readExecutor;
+    }
+
+    /**
+     * @return true exactly once, for the caller which should replay the journal of this VC
+     */
+    public boolean claimJournalRecovery() {
+        return this.journalRecovered.compareAndSet(false, true);
+    }
+
+    /**
+     * @return true exactly once, for the caller which should prefetch the topology of this VC
+     */
+    public boolean claimPrefetch() {
+        return this.prefetched.compareAndSet(false, true);
+    }
+
+    public InspectionHookIndex getInspectionHookIndex() {
+        return this.inspectionHookIndex;
+    }
+
+    public AggregateHookIndex getAggregateHookIndex() {
+        return this.aggregateHookIndex;
+    }
+
+    public DevicePortIndex getDevicePortIndex() {
+        return this.devicePortIndex;
+    }
+
+    public GatewayPortIndex getGatewayPortIndex() {
+        return this.gatewayPortIndex;
+    }
+
+    public PortAddressIndex getPortAddressIndex() {
+        return this.portAddressIndex;
+    }
+
+    public NameIndex getNameIndex() {
+        return this.nameIndex;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return this.singleFlight;
+    }
+
+    public RequestScheduler getRequestScheduler() {
+        return this.requestScheduler;
+    }
+
+    public Tracer getTracer() {
+        return this.tracer;
+    }
+
+    public NegativeCache getNegativeCache() {
+        return this.negativeCache;
+    }
+
+    public TopologyFeed getTopologyFeed() {
+        return this.topologyFeed;
+    }
+
+    public PortChainView getPortChainView() {
+        return this.portChainView;
+    }
+
+    public StalenessSampler getStalenessSampler() {
+        return this.stalenessSampler;
+    }
+
+    public FilteredListings getFilteredListings() {
+        return this.filteredListings;
+    }
+
+    /**
+     * Replaces the Neutron queries of the filtered listings, for tests.
+     */
+    public void setFilteredListings(FilteredListings filteredListings) {
+        this.filteredListings = filteredListings;
+    }
+
+    @Override
+    public void close() {
+        this.journal.close();
+    }
+}
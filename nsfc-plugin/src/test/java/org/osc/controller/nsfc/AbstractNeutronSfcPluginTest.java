@@ -40,6 +40,7 @@ import org.openstack4j.model.network.ext.PortPair;
 import org.openstack4j.model.network.ext.PortPairGroup;
 import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.VcContext;
 
 public abstract class AbstractNeutronSfcPluginTest {
     @Mock
@@ -73,6 +74,14 @@ public abstract class AbstractNeutronSfcPluginTest {
     public void tearDown() throws Exception {
     }
 
+    /**
+     * @return the context, with its filtered listings served from the test data
+     */
+    protected static VcContext withTestListings(VcContext vcContext) {
+        vcContext.setFilteredListings(filteredListings);
+        return vcContext;
+    }
+
     protected void persistIngress() {
         ingressPort = portService.create(Builders.port().macAddress(ingressPortElement.getMacAddresses().get(0))
                                  .fixedIp(ingressPortElement.getPortIPs().get(0), "mySubnet").build());
@@ -154,7 +163,7 @@ public abstract class AbstractNeutronSfcPluginTest {
         return ppgList;
     }
 
-    private NetworkElementImpl constructNetworkElementElement(Port port, String parentId) {
+    protected NetworkElementImpl constructNetworkElementElement(Port port, String parentId) {
         List<String> ips;
         if (port.getFixedIps() != null) {
             ips = port.getFixedIps().stream().map(ip -> ip.getIpAddress()).collect(Collectors.toList());
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.osc.controller.nsfc.utils.CidrBlocks;
+
+public class CidrBlocksTest {
+
+    @Test
+    public void testCidrBlocks_Cover_MergesContiguousAddressesIntoAlignedBlocks() {
+        // Arrange.
+        List<Long> addresses = new ArrayList<>();
+        for (long address = CidrBlocks.toLong("10.0.0.2"); address <= CidrBlocks.toLong("10.0.3.254"); address++) {
+            addresses.add(address);
+        }
+        addresses.add(CidrBlocks.toLong("10.0.9.9"));
+
+        // Act.
+        List<String> blocks = CidrBlocks.cover(addresses);
+
+        // Assert.
+        assertEquals(asList("10.0.0.2/31", "10.0.0.4/30", "10.0.0.8/29", "10.0.0.16/28", "10.0.0.32/27",
+                "10.0.0.64/26", "10.0.0.128/25", "10.0.1.0/24", "10.0.2.0/24", "10.0.3.0/25", "10.0.3.128/26",
+                "10.0.3.192/27", "10.0.3.224/28", "10.0.3.240/29", "10.0.3.248/30", "10.0.3.252/31",
+                "10.0.3.254/32", "10.0.9.9/32"), blocks);
+    }
+
+    @Test
+    public void testCidrBlocks_AddAddresses_IsInverseOfCover() {
+        // Arrange.
+        TreeSet<Long> addresses = new TreeSet<>();
+        for (String address : asList("192.168.1.5", "192.168.1.6", "192.168.1.7", "192.168.1.9", "192.168.2.0")) {
+            addresses.add(CidrBlocks.toLong(address));
+        }
+
+        // Act.
+        TreeSet<Long> expanded = new TreeSet<>();
+        for (String cidr : CidrBlocks.cover(addresses)) {
+            CidrBlocks.addAddresses(cidr, expanded);
+        }
+
+        // Assert.
+        assertEquals(addresses, expanded);
+        assertTrue(CidrBlocks.contains("192.168.1.6/31", "192.168.1.7"));
+        assertFalse(CidrBlocks.contains("192.168.1.6/31", "192.168.1.8"));
+        assertFalse(CidrBlocks.contains("192.168.1.6/31", "fe80::1"));
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.TestData.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.Port;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.utils.DevicePortIndex;
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.VcContext;
+
+public class DevicePortIndexTest extends AbstractNeutronSfcPluginTest {
+
+    private VcContext vcContext;
+
+    private DevicePortIndex index;
+
+    private OsCalls osCalls;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        this.vcContext = withTestListings(new VcContext());
+        this.index = this.vcContext.getDevicePortIndex();
+        this.osCalls = new OsCalls(this.osClient, this.vcContext);
+    }
+
+    @Test
+    public void testIndex_GetPorts_CachedPorts_NotListedAgain() throws Exception {
+        // Arrange.
+        addPort("device1", "10.0.0.1");
+        this.index.getPorts("device1", this.osCalls);
+        addPort("device1", "10.0.0.2");
+
+        // Act.
+        List<NetworkElementImpl> ports = this.index.getPorts("device1", this.osCalls);
+
+        // Assert.
+        assertEquals(1, ports.size());
+    }
+
+    @Test
+    public void testIndex_GetPorts_PortPairOfDevicePortCreated_ChangeSeenBeforeTtl() throws Exception {
+        // Arrange.
+        Port port = addPort("device1", "10.0.0.1");
+        this.index.getPorts("device1", this.osCalls);
+        Port changedPort = Builders.port().deviceId("device1").fixedIp("10.0.0.9", "mySubnet").build();
+        changedPort.setId(port.getId());
+        portService.update(changedPort);
+
+        // Act.
+        this.osCalls.createPortPair(Builders.portPair().ingressId(port.getId()).egressId(port.getId()).build());
+        List<NetworkElementImpl> ports = this.index.getPorts("device1", this.osCalls);
+
+        // Assert.
+        assertEquals(1, ports.size());
+        assertEquals("10.0.0.9", ports.get(0).getPortIPs().get(0));
+    }
+
+    @Test
+    public void testIndex_GetPorts_ExternalChangeToPortPairOfDevicePort_ChangeSeenBeforeTtl() throws Exception {
+        // Arrange.
+        Port port = addPort("device1", "10.0.0.1");
+        Port otherPort = addPort("device2", "10.0.0.2");
+        this.index.getPorts("device1", this.osCalls);
+        this.osCalls.listPortPairs();
+        portService.delete(port.getId());
+        Port newPort = addPort("device1", "10.0.0.3");
+        portPairService.create(Builders.portPair().ingressId(port.getId()).egressId(otherPort.getId()).build());
+
+        // Act.
+        this.osCalls.listPortPairs();
+        List<NetworkElementImpl> ports = this.index.getPorts("device1", this.osCalls);
+
+        // Assert.
+        assertEquals(1, ports.size());
+        assertEquals(newPort.getId(), ports.get(0).getElementId());
+    }
+
+    @Test
+    public void testIndex_GetPorts_CachedPortFoundMissing_ChangeSeenBeforeTtl() throws Exception {
+        // Arrange.
+        Port port = addPort("device1", "10.0.0.1");
+        this.index.getPorts("device1", this.osCalls);
+        portService.delete(port.getId());
+        Port newPort = addPort("device1", "10.0.0.2");
+
+        // Act.
+        Port missingPort = this.osCalls.getPort(port.getId());
+        List<NetworkElementImpl> ports = this.index.getPorts("device1", this.osCalls);
+
+        // Assert.
+        assertNull(missingPort);
+        assertTrue(this.vcContext.getNegativeCache().isMissing(ResourceType.PORT, port.getId()));
+        assertEquals(1, ports.size());
+        assertEquals(newPort.getId(), ports.get(0).getElementId());
+    }
+
+    private static Port addPort(String deviceId, String ipAddress) {
+        return portService.create(Builders.port().deviceId(deviceId).fixedIp(ipAddress, "mySubnet").build());
+    }
+}
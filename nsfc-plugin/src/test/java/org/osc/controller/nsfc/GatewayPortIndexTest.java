@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.api.networking.PortService;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.options.PortListOptions;
+import org.osc.controller.nsfc.utils.GatewayPortIndex;
+import org.osc.controller.nsfc.utils.OsCalls;
+
+public class GatewayPortIndexTest extends AbstractNeutronSfcPluginTest {
+
+    @Mock
+    private PortService listedPortService;
+
+    private final List<Port> routerPorts = new ArrayList<>();
+
+    private OsCalls osCalls;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        Mockito.when(this.networkingService.port()).thenReturn(this.listedPortService);
+        Mockito.doReturn(this.routerPorts).when(this.listedPortService).list(Mockito.any(PortListOptions.class));
+        this.osCalls = new OsCalls(this.osClient);
+    }
+
+    @Test
+    public void testIndex_GetGatewayPort_UnknownSubnet_RefreshesPorts() throws Exception {
+        // Arrange.
+        GatewayPortIndex index = new GatewayPortIndex(60000, 0);
+        addRouterPort("10.0.0.1", "subnet1");
+        index.getGatewayPort(inspectedPort("10.0.0.5", "subnet1"), this.osCalls);
+        addRouterPort("10.0.1.1", "subnet2");
+
+        // Act.
+        Port gatewayPort = index.getGatewayPort(inspectedPort("10.0.1.5", "subnet2"), this.osCalls);
+
+        // Assert.
+        assertNotNull(gatewayPort);
+        assertEquals("10.0.1.1", gatewayPort.getFixedIps().iterator().next().getIpAddress());
+        Mockito.verify(this.listedPortService, Mockito.times(2)).list(Mockito.any(PortListOptions.class));
+    }
+
+    @Test
+    public void testIndex_GetGatewayPort_UnknownSubnetOfRecentPorts_NoRefresh() throws Exception {
+        // Arrange.
+        GatewayPortIndex index = new GatewayPortIndex(60000, 60000);
+        addRouterPort("10.0.0.1", "subnet1");
+        index.getGatewayPort(inspectedPort("10.0.0.5", "subnet1"), this.osCalls);
+        addRouterPort("10.0.1.1", "subnet2");
+
+        // Act.
+        Port gatewayPort = index.getGatewayPort(inspectedPort("10.0.1.5", "subnet2"), this.osCalls);
+        Port againGatewayPort = index.getGatewayPort(inspectedPort("10.0.1.6", "subnet2"), this.osCalls);
+
+        // Assert.
+        assertNull(gatewayPort);
+        assertNull(againGatewayPort);
+        Mockito.verify(this.listedPortService, Mockito.times(1)).list(Mockito.any(PortListOptions.class));
+    }
+
+    private void addRouterPort(String ipAddress, String subnetId) {
+        this.routerPorts.add(Builders.port().deviceOwner("network:router_interface").fixedIp(ipAddress, subnetId)
+                .build());
+    }
+
+    private static Port inspectedPort(String ipAddress, String subnetId) {
+        return Builders.port().fixedIp(ipAddress, subnetId).build();
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.exceptions.ConnectionException;
+import org.openstack4j.api.networking.ext.PortChainService;
+import org.osc.controller.nsfc.utils.HealthProbe;
+
+public class HealthProbeTest extends AbstractNeutronSfcPluginTest {
+
+    @Mock
+    private PortChainService probedPortChainService;
+
+    private HealthProbe healthProbe;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        Mockito.when(this.sfcService.portchains()).thenReturn(this.probedPortChainService);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        if (this.healthProbe != null) {
+            this.healthProbe.close();
+        }
+    }
+
+    @Test
+    public void testProbe_SfcAnswersNotFound_IsHealthyWithoutListing() throws Exception {
+        // Arrange.
+        this.healthProbe = new HealthProbe(60000);
+
+        // Act.
+        HealthProbe.Result result = this.healthProbe.getResult("vc/region", () -> this.osClient);
+
+        // Assert.
+        assertTrue(result.isHealthy());
+        assertTrue(result.getSfcLatencyMillis() >= 0);
+        Mockito.verify(this.probedPortChainService).get(Mockito.anyString());
+        Mockito.verify(this.probedPortChainService, Mockito.never()).list();
+    }
+
+    @Test
+    public void testProbe_KeystoneUnreachable_IsUnhealthy() throws Exception {
+        // Arrange.
+        this.healthProbe = new HealthProbe(60000);
+
+        // Act.
+        HealthProbe.Result result = this.healthProbe.getResult("vc/region", () -> {
+            throw new ConnectionException("connection refused", 0, null);
+        });
+
+        // Assert.
+        assertFalse(result.isHealthy());
+        assertFalse(result.isKeystoneReachable());
+        assertEquals(-1, result.getSfcLatencyMillis());
+        assertEquals("connection refused", result.getError());
+    }
+
+    @Test
+    public void testProbe_SfcUnreachable_IsUnhealthy() throws Exception {
+        // Arrange.
+        this.healthProbe = new HealthProbe(60000);
+        Mockito.when(this.probedPortChainService.get(Mockito.anyString()))
+                .thenThrow(new ConnectionException("connection refused", 0, null));
+
+        // Act.
+        HealthProbe.Result result = this.healthProbe.getResult("vc/region", () -> this.osClient);
+
+        // Assert.
+        assertFalse(result.isHealthy());
+        assertTrue(result.isKeystoneReachable());
+        assertFalse(result.isSfcReachable());
+    }
+
+    @Test
+    public void testProbe_GetResult_ServedFromLatestProbe() throws Exception {
+        // Arrange.
+        this.healthProbe = new HealthProbe(60000);
+        AtomicInteger probes = new AtomicInteger();
+        HealthProbe.Result first = this.healthProbe.getResult("vc/region", () -> {
+            probes.incrementAndGet();
+            return this.osClient;
+        });
+
+        // Act.
+        HealthProbe.Result second = this.healthProbe.getResult("vc/region", () -> {
+            probes.incrementAndGet();
+            return this.osClient;
+        });
+
+        // Assert.
+        assertSame(first, second);
+        assertEquals(1, probes.get());
+    }
+
+    @Test
+    public void testProbe_IdleKey_StopsBeingProbed() throws Exception {
+        // Arrange.
+        this.healthProbe = new HealthProbe(10);
+        AtomicInteger probes = new AtomicInteger();
+        this.healthProbe.getResult("vc/region", () -> {
+            probes.incrementAndGet();
+            return this.osClient;
+        });
+
+        // Act.
+        // idle after 10 intervals of 10ms
+        Thread.sleep(500);
+        int probesWhenIdle = probes.get();
+        Thread.sleep(200);
+
+        // Assert.
+        assertTrue(probesWhenIdle > 1);
+        assertEquals(probesWhenIdle, probes.get());
+    }
+}
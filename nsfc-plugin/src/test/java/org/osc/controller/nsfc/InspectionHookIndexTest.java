@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.TestData.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.osc.controller.nsfc.utils.FilteredListings;
+import org.osc.controller.nsfc.utils.InspectionHookIndex;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.VcContext;
+
+public class InspectionHookIndexTest extends AbstractNeutronSfcPluginTest {
+
+    private FilteredListings listings;
+
+    private OsCalls osCalls;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        VcContext vcContext = new VcContext();
+        this.listings = Mockito.spy(filteredListings);
+        vcContext.setFilteredListings(this.listings);
+        this.osCalls = new OsCalls(this.osClient, vcContext);
+    }
+
+    @Test
+    public void testIndex_EnsureLoaded_OfProject_ListsOnlyTheProject() throws Exception {
+        // Arrange.
+        InspectionHookIndex index = new InspectionHookIndex();
+        FlowClassifier hook = persistHook("project1", "inspected1");
+        PortChain chain = persistChain("project1", hook);
+        FlowClassifier otherHook = persistHook("project2", "inspected2");
+        persistChain("project2", otherHook);
+
+        // Act.
+        index.ensureLoaded("project1", this.osCalls);
+        index.ensureLoaded("project1", this.osCalls);
+
+        // Assert.
+        assertEquals(hook.getId(), index.getHookId("project1", "inspected1", chain.getId()));
+        assertNull(index.getHookId(otherHook.getLogicalDestinationPort(), otherHook.getId()));
+        Mockito.verify(this.listings).listFlowClassifiers(Mockito.eq(projectFilter("project1")));
+        Mockito.verify(this.listings).listPortChains(Mockito.eq(projectFilter("project1")));
+        Mockito.verifyNoMoreInteractions(this.listings);
+    }
+
+    @Test
+    public void testIndex_EnsureLoaded_OfUnknownProject_LoadsEveryProject() throws Exception {
+        // Arrange.
+        InspectionHookIndex index = new InspectionHookIndex();
+        FlowClassifier hook = persistHook(null, "inspected1");
+        persistChain(null, hook);
+        FlowClassifier otherHook = persistHook("project2", "inspected2");
+        PortChain otherChain = persistChain("project2", otherHook);
+
+        // Act.
+        index.ensureLoaded(null, this.osCalls);
+        index.ensureLoaded("project2", this.osCalls);
+
+        // Assert.
+        assertEquals(otherHook.getId(), index.getHookId("project2", "inspected2", otherChain.getId()));
+        Mockito.verifyZeroInteractions(this.listings);
+    }
+
+    private FlowClassifier persistHook(String projectId, String inspectedPortId) {
+        return flowClassifierService.create(Builders.flowClassifier().projectId(projectId)
+                .logicalDestinationPort(inspectedPortId).build());
+    }
+
+    private PortChain persistChain(String projectId, FlowClassifier hook) {
+        return portChainService.create(Builders.portChain().projectId(projectId)
+                .flowClassifiers(new ArrayList<>(singletonList(hook.getId()))).build());
+    }
+
+    private static Map<String, List<String>> projectFilter(String projectId) {
+        return singletonMap(FilteredListings.PROJECT_ID, singletonList(projectId));
+    }
+}
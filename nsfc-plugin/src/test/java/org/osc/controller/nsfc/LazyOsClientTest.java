@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.model.identity.v3.Token;
+import org.osc.controller.nsfc.utils.LazyOsClient;
+
+public class LazyOsClientTest {
+
+    @Test
+    public void testLazyOsClient_Get_AuthenticatesOnceOnFirstUse() throws Exception {
+        // Arrange.
+        OSClientV3 osClient = Mockito.mock(OSClientV3.class);
+        AtomicInteger authentications = new AtomicInteger();
+        LazyOsClient lazyOsClient = new LazyOsClient(() -> {
+            authentications.incrementAndGet();
+            return osClient;
+        });
+
+        // Act.
+        boolean authenticatedBeforeUse = lazyOsClient.isAuthenticated();
+        OSClientV3 first = lazyOsClient.get();
+        OSClientV3 second = lazyOsClient.get();
+
+        // Assert.
+        assertFalse(authenticatedBeforeUse);
+        assertSame(osClient, first);
+        assertSame(osClient, second);
+        assertEquals(1, authentications.get());
+    }
+
+    @Test
+    public void testLazyOsClient_ExpiringToken_Reauthenticates() throws Exception {
+        // Arrange.
+        Token token = Mockito.mock(Token.class);
+        Mockito.when(token.getExpires()).thenReturn(new Date(System.currentTimeMillis() + 1000));
+        OSClientV3 osClient = Mockito.mock(OSClientV3.class);
+        Mockito.when(osClient.getToken()).thenReturn(token);
+        AtomicInteger authentications = new AtomicInteger();
+        LazyOsClient lazyOsClient = new LazyOsClient(() -> {
+            authentications.incrementAndGet();
+            return osClient;
+        });
+        lazyOsClient.authenticate();
+
+        // Act.
+        lazyOsClient.authenticate();
+
+        // Assert.
+        assertFalse(lazyOsClient.isAuthenticated());
+        assertEquals(2, authentications.get());
+    }
+
+    @Test
+    public void testLazyOsClient_RegionClients_ShareOneAuthentication() throws Exception {
+        // Arrange.
+        OSClientV3 osClient = Mockito.mock(OSClientV3.class);
+        AtomicInteger authentications = new AtomicInteger();
+        LazyOsClient lazyOsClient = new LazyOsClient(() -> {
+            authentications.incrementAndGet();
+            return osClient;
+        });
+        LazyOsClient regionOne = lazyOsClient.forRegion("RegionOne");
+        LazyOsClient regionTwo = lazyOsClient.forRegion("RegionTwo");
+
+        // Act.
+        regionOne.get();
+        regionTwo.get();
+
+        // Assert.
+        assertEquals(1, authentications.get());
+        assertTrue(lazyOsClient.isAuthenticated());
+        assertEquals("RegionTwo", regionTwo.getRegion());
+    }
+}
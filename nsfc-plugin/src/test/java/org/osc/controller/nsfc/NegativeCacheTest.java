@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.utils.NegativeCache.ResourceType.*;
+
+import org.junit.Test;
+import org.osc.controller.nsfc.utils.NegativeCache;
+
+public class NegativeCacheTest {
+
+    @Test
+    public void testNegativeCache_Created_ForgetsIdAndLookupMissesOfType() throws Exception {
+        // Arrange.
+        NegativeCache negativeCache = new NegativeCache(60000);
+        negativeCache.recordMissing(PORT_PAIR, "pp-1");
+        negativeCache.recordLookupMissing(PORT_PAIR, "ingress/egress");
+        negativeCache.recordMissing(FLOW_CLASSIFIER, "fc-1");
+
+        // Act.
+        negativeCache.created(PORT_PAIR, "pp-1");
+
+        // Assert.
+        assertFalse(negativeCache.isMissing(PORT_PAIR, "pp-1"));
+        assertFalse(negativeCache.isLookupMissing(PORT_PAIR, "ingress/egress"));
+        assertTrue(negativeCache.isMissing(FLOW_CLASSIFIER, "fc-1"));
+    }
+
+    @Test
+    public void testNegativeCache_ExpiredMiss_IsForgotten() throws Exception {
+        // Arrange.
+        NegativeCache negativeCache = new NegativeCache(1);
+        negativeCache.recordMissing(PORT_CHAIN, "pc-1");
+
+        // Act.
+        Thread.sleep(5);
+
+        // Assert.
+        assertFalse(negativeCache.isMissing(PORT_CHAIN, "pc-1"));
+    }
+}
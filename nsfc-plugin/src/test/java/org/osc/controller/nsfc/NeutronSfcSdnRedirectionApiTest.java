@@ -23,18 +23,26 @@ import static org.osc.controller.nsfc.TestData.*;
 import static org.osc.sdk.controller.FailurePolicyType.NA;
 import static org.osc.sdk.controller.TagEncapsulationType.VLAN;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.core.StringStartsWith;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.MockitoAnnotations;
 import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
 import org.openstack4j.model.network.ext.PortPairGroup;
@@ -44,6 +52,13 @@ import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.entities.PortPairElement;
 import org.osc.controller.nsfc.entities.PortPairGroupElement;
 import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+import org.osc.controller.nsfc.utils.OperationJournal;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.ResourceNames;
+import org.osc.controller.nsfc.utils.StalenessSampler;
+import org.osc.controller.nsfc.utils.TopologyPrefetcher;
+import org.osc.controller.nsfc.utils.VcContext;
 import org.osc.sdk.controller.DefaultNetworkPort;
 import org.osc.sdk.controller.element.Element;
 import org.osc.sdk.controller.element.InspectionHookElement;
@@ -52,6 +67,12 @@ import org.osc.sdk.controller.element.NetworkElement;
 
 public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTest {
 
+    private static final String INSPECTED_MAC = "fa:16:3e:ca:37:38";
+    private static final String INSPECTED_IP = "172.16.3.8";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private NeutronSfcSdnRedirectionApi redirApi;
 
     @Before
@@ -59,7 +80,7 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
     public void setup() throws Exception {
         MockitoAnnotations.initMocks(this);
         super.setup();
-        this.redirApi = new NeutronSfcSdnRedirectionApi(this.osClient);
+        this.redirApi = new NeutronSfcSdnRedirectionApi(this.osClient, withTestListings(new VcContext()));
     }
 
     // Inspection port tests
@@ -247,7 +268,94 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertTrue(portPairGroup.getPortPairs().contains(inspectionPortElement2.getElementId()));
     }
 
+    @Test
+    public void testApi_RemoveInspectionPorts_UpdatesSharedGroupAndDeletesEmptiedGroup() throws Exception {
+        // Arrange.
+        Element first = this.redirApi.registerInspectionPort(new PortPairElement(null, null,
+                new NetworkElementImpl("Ingress1", asList("IngressMac1"), asList("IngressIP1"), null),
+                new NetworkElementImpl("Egress1", asList("EgressMac1"), asList("EgressIP1"), null)));
+        PortPairGroupElement sharedGroup = new PortPairGroupElement(first.getParentId());
+        Element second = this.redirApi.registerInspectionPort(new PortPairElement(null, sharedGroup,
+                new NetworkElementImpl("Ingress2", asList("IngressMac2"), asList("IngressIP2"), null),
+                new NetworkElementImpl("Egress2", asList("EgressMac2"), asList("EgressIP2"), null)));
+        Element third = this.redirApi.registerInspectionPort(new PortPairElement(null, null,
+                new NetworkElementImpl("Ingress3", asList("IngressMac3"), asList("IngressIP3"), null),
+                new NetworkElementImpl("Egress3", asList("EgressMac3"), asList("EgressIP3"), null)));
+
+        NetworkElement chain = this.redirApi.registerNetworkElement(asList((NetworkElement) sharedGroup,
+                new PortPairGroupElement(third.getParentId())));
+
+        // Act.
+        this.redirApi.removeInspectionPorts(asList((PortPairElement) first, (PortPairElement) third));
+
+        // Assert.
+        assertNull(portPairService.get(first.getElementId()));
+        assertNotNull(portPairService.get(second.getElementId()));
+        assertNull(portPairService.get(third.getElementId()));
+
+        assertEquals(asList(second.getElementId()),
+                portPairGroupService.get(first.getParentId()).getPortPairs());
+        assertNull(portPairGroupService.get(third.getParentId()));
+        assertEquals(asList(first.getParentId()), portChainService.get(chain.getElementId()).getPortPairGroups());
+    }
+
     // Inspection hooks tests
+    @Test
+    public void testApi_InstallAggregatedInspectionHooks_MergesSubnetPortsIntoOneBlock() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        NetworkElement neighbourPortElement = persistNeighbourPort();
+        persistIngress();
+        persistEgress();
+        persistdefaultGatewayPort();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        // Act.
+        Map<String, String> hookIds = this.redirApi.installAggregatedInspectionHooks(
+                asList(inspectedPortElement, neighbourPortElement), sfc);
+
+        // Assert.
+        String hookId = hookIds.get(inspectedPortElement.getElementId());
+        assertNotNull(hookId);
+        assertEquals(hookId, hookIds.get(neighbourPortElement.getElementId()));
+        assertEquals(1, this.osClient.sfc().flowclassifiers().list().size());
+
+        FlowClassifier flowClassifier = this.osClient.sfc().flowclassifiers().get(hookId);
+        assertEquals("10.4.5.6/31", flowClassifier.getDestinationIpPrefix());
+        assertEquals(defaultGatewayPort.getId(), flowClassifier.getLogicalSourcePort());
+        assertEquals(asList(hookId), portChainService.get(sfc.getElementId()).getFlowClassifiers());
+        assertEquals(hookId, this.redirApi.getInspectionHook(neighbourPortElement, sfc).getHookId());
+    }
+
+    @Test
+    public void testApi_RemoveAggregatedInspectionHooks_SplitsBlock() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        NetworkElement neighbourPortElement = persistNeighbourPort();
+        persistIngress();
+        persistEgress();
+        persistdefaultGatewayPort();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+        String aggregateHookId = this.redirApi.installAggregatedInspectionHooks(
+                asList(inspectedPortElement, neighbourPortElement), sfc).get(inspectedPortElement.getElementId());
+
+        // Act.
+        this.redirApi.removeAggregatedInspectionHooks(asList(neighbourPortElement), sfc);
+
+        // Assert.
+        assertNull(this.osClient.sfc().flowclassifiers().get(aggregateHookId));
+        List<? extends FlowClassifier> flowClassifiers = this.osClient.sfc().flowclassifiers().list();
+        assertEquals(1, flowClassifiers.size());
+        assertEquals("10.4.5.6/32", flowClassifiers.get(0).getDestinationIpPrefix());
+        assertEquals(asList(flowClassifiers.get(0).getId()),
+                portChainService.get(sfc.getElementId()).getFlowClassifiers());
+        assertNull(this.redirApi.getInspectionHook(neighbourPortElement, sfc));
+    }
+
     @Test
     public void testApi_InstallInspectionHook_VerifySucceeds() throws Exception {
         // Arrange.
@@ -277,6 +385,103 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertEquals(sfc.getElementId(), inspectionHook.getServiceFunctionChain().getElementId());
     }
 
+    @Test
+    public void testApi_ProvisionServiceChain_CreatesPairsGroupChainAndHooks() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistdefaultGatewayPort();
+
+        PortPairGroupElement providedGroup = new PortPairGroupElement();
+        providedGroup.getPortPairs().add(new PortPairElement(null, null, ingressPortElement, egressPortElement));
+
+        // Act.
+        ServiceFunctionChainElement chain = this.redirApi.provisionServiceChain(asList(providedGroup),
+                asList(inspectedPortElement));
+
+        // Assert.
+        PortChain portChain = portChainService.get(chain.getElementId());
+        assertNotNull(portChain);
+        assertEquals(1, chain.getPortPairGroups().size());
+
+        PortPairGroupElement group = chain.getPortPairGroups().get(0);
+        assertEquals(asList(group.getElementId()), portChain.getPortPairGroups());
+        assertEquals(chain.getElementId(), group.getParentId());
+        assertEquals(1, group.getPortPairs().size());
+        String portPairId = group.getPortPairs().get(0).getElementId();
+        assertEquals(asList(portPairId), portPairGroupService.get(group.getElementId()).getPortPairs());
+        assertEquals(ingressPortElement.getElementId(), portPairService.get(portPairId).getIngressId());
+
+        assertEquals(1, chain.getInspectionHooks().size());
+        FlowClassifierElement hook = chain.getInspectionHooks().iterator().next();
+        assertEquals(asList(hook.getHookId()), portChain.getFlowClassifiers());
+        assertEquals(inspectedPortElement.getElementId(), hook.getInspectedPort().getElementId());
+        assertEquals(defaultGatewayPort.getId(),
+                this.osClient.sfc().flowclassifiers().get(hook.getHookId()).getLogicalSourcePort());
+    }
+
+    @Test
+    public void testApi_ProvisionServiceChainRetried_ReusesExistingObjects() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistdefaultGatewayPort();
+
+        PortPairGroupElement providedGroup = new PortPairGroupElement();
+        providedGroup.getPortPairs().add(new PortPairElement(null, null, ingressPortElement, egressPortElement));
+        ServiceFunctionChainElement first = this.redirApi.provisionServiceChain(asList(providedGroup),
+                asList(inspectedPortElement));
+
+        // Act.
+        ServiceFunctionChainElement second = this.redirApi.provisionServiceChain(asList(providedGroup),
+                asList(inspectedPortElement));
+
+        // Assert.
+        assertEquals(first.getElementId(), second.getElementId());
+        assertEquals(1, portChainService.list().size());
+        assertEquals(1, portPairGroupService.list().size());
+        assertEquals(1, portPairService.list().size());
+        assertEquals(1, this.osClient.sfc().flowclassifiers().list().size());
+    }
+
+    @Test
+    public void testApi_InstallInspectionHook_HookNotInNameIndex_ReturnsExistingHook() throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        persistdefaultGatewayPort();
+        FlowClassifier flowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .logicalDestinationPort(inspectedPort.getId()).build());
+        portChainService.get(portChain.getId()).getFlowClassifiers().add(flowClassifier.getId());
+
+        // Act.
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+        // Assert.
+        assertEquals(flowClassifier.getId(), hookId);
+        assertEquals(1, flowClassifierService.list().size());
+        assertEquals(asList(flowClassifier.getId()), portChainService.get(portChain.getId()).getFlowClassifiers());
+    }
+
+    @Test
+    public void testApi_InstallInspectionHook_DetachedHookNotInNameIndex_ReusesHookFoundByName() throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        persistdefaultGatewayPort();
+        FlowClassifier flowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .name(ResourceNames.flowClassifierName(inspectedPort.getId(), portChain.getId()))
+                .logicalDestinationPort(inspectedPort.getId()).build());
+
+        // Act.
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+        // Assert.
+        assertEquals(flowClassifier.getId(), hookId);
+        assertEquals(1, flowClassifierService.list().size());
+        assertEquals(asList(flowClassifier.getId()), portChainService.get(portChain.getId()).getFlowClassifiers());
+    }
+
     @Test
     public void testApi_InstallInspectionHook_WithNoInspectedPort_VerifyFails() throws Exception {
 
@@ -362,6 +567,107 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertNull(this.redirApi.getInspectionHook(hookId));
     }
 
+    @Test
+    public void testApi_GetInspectionHookByPorts_VerifySucceeds() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+        persistdefaultGatewayPort();
+
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+        // Act.
+        InspectionHookElement foundHook = this.redirApi.getInspectionHook(inspectedPortElement, sfc);
+
+        // Assert.
+        assertNotNull(foundHook);
+        assertEquals(hookId, foundHook.getHookId());
+        assertEquals(sfc.getElementId(), foundHook.getInspectionPort().getElementId());
+        assertEquals(inspectedPortElement.getElementId(), foundHook.getInspectedPort().getElementId());
+    }
+
+    @Test
+    public void testApi_GetInspectionHookByPorts_HookCreatedOutsidePlugin_VerifySucceeds() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        FlowClassifier flowClassifier = Builders.flowClassifier()
+                .logicalDestinationPort(inspectedPortElement.getElementId()).build();
+        flowClassifier = flowClassifierService.create(flowClassifier);
+        portChain.getFlowClassifiers().add(flowClassifier.getId());
+
+        // Act.
+        InspectionHookElement foundHook = this.redirApi.getInspectionHook(inspectedPortElement, sfc);
+
+        // Assert.
+        assertNotNull(foundHook);
+        assertEquals(flowClassifier.getId(), foundHook.getHookId());
+    }
+
+    @Test
+    public void testApi_GetInspectionHookByPorts_HookCreatedOutsidePluginAfterIndexLoaded_VerifySucceeds()
+            throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        NetworkElement neighbourPortElement = persistNeighbourPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+        persistdefaultGatewayPort();
+
+        // loads the hook index of the project
+        this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+        assertNull(this.redirApi.getInspectionHook(neighbourPortElement, sfc));
+
+        FlowClassifier flowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .logicalDestinationPort(neighbourPortElement.getElementId()).build());
+        portChainService.get(portChain.getId()).getFlowClassifiers().add(flowClassifier.getId());
+
+        // Act.
+        InspectionHookElement foundHook = this.redirApi.getInspectionHook(neighbourPortElement, sfc);
+        this.redirApi.removeInspectionHook(neighbourPortElement, sfc);
+
+        // Assert.
+        assertNotNull(foundHook);
+        assertEquals(flowClassifier.getId(), foundHook.getHookId());
+        assertNull(flowClassifierService.get(flowClassifier.getId()));
+        assertFalse(portChainService.get(portChain.getId()).getFlowClassifiers().contains(flowClassifier.getId()));
+    }
+
+    @Test
+    public void testApi_RemoveInspectionHookByPorts_InspectionHookDisappears() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+        persistdefaultGatewayPort();
+
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+        assertNotNull(this.redirApi.getInspectionHook(inspectedPortElement, sfc));
+
+        // Act.
+        this.redirApi.removeInspectionHook(inspectedPortElement, sfc);
+
+        // Assert.
+        assertNull(this.redirApi.getInspectionHook(hookId));
+        assertNull(this.redirApi.getInspectionHook(inspectedPortElement, sfc));
+        assertFalse(portChainService.get(portChain.getId()).getFlowClassifiers().contains(hookId));
+    }
+
     @Test
     public void testApi_RegisterNetworkElementWithNullPPGList_ThrowsIllegalArgumentException() throws Exception {
         // Arrange
@@ -402,6 +708,26 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertNotNull(portChainService.get(neResponse.getElementId()));
     }
 
+    @Test
+    public void testApi_RegisterNetworkElementRetried_ReturnsSamePortChain() throws Exception {
+        // Arrange
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+
+        List<NetworkElement> neList = new ArrayList<NetworkElement>();
+        neList.add(new PortPairGroupElement(portPairGroup.getId()));
+        NetworkElement firstResponse = this.redirApi.registerNetworkElement(neList);
+
+        // Act
+        NetworkElement neResponse = this.redirApi.registerNetworkElement(neList);
+
+        // Assert
+        assertEquals(firstResponse.getElementId(), neResponse.getElementId());
+        assertEquals(1, portChainService.list().size());
+    }
+
     @Test
     public void testApi_UpdateNetworkElementWithNullSfc_ThrowsIllegalArgumentException() throws Exception {
         // Arrange
@@ -656,4 +982,446 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         // Assert.
         assertNotNull("SFC chain List is Empty", neResponseList);
     }
+
+    @Test
+    public void testApi_GetExpandedNetworkElements_VerifySuccessful() throws Exception {
+        // Arrange
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        DefaultNetworkPort ne = new DefaultNetworkPort();
+        ne.setElementId(portChain.getId());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        NeutronSfcSdnRedirectionApi redirApi = new NeutronSfcSdnRedirectionApi(this.osClient,
+                withTestListings(new VcContext(OperationJournal.disabled(), executor)));
+
+        try {
+            // Act
+            List<PortPairGroupElement> ppgElements = redirApi.getExpandedNetworkElements(ne);
+
+            // Assert.
+            assertEquals(1, ppgElements.size());
+            assertEquals(portPairGroup.getId(), ppgElements.get(0).getElementId());
+            assertEquals(portChain.getId(), ppgElements.get(0).getParentId());
+            assertEquals(1, ppgElements.get(0).getPortPairs().size());
+
+            PortPairElement portPairElement = ppgElements.get(0).getPortPairs().get(0);
+            assertEquals(portPair.getId(), portPairElement.getElementId());
+            assertEquals(ingressPort.getId(), portPairElement.getIngressPort().getElementId());
+            assertEquals(ingressPortElement.getMacAddresses(), portPairElement.getIngressPort().getMacAddresses());
+            assertEquals(egressPort.getId(), portPairElement.getEgressPort().getElementId());
+            assertEquals(egressPortElement.getPortIPs(), portPairElement.getEgressPort().getPortIPs());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testApi_GetNetworkElements_ServedFromChainViewUntilChainChanges() throws Exception {
+        // Arrange
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        DefaultNetworkPort ne = new DefaultNetworkPort();
+        ne.setElementId(portChain.getId());
+
+        VcContext vcContext = withTestListings(new VcContext());
+        NeutronSfcSdnRedirectionApi redirApi = new NeutronSfcSdnRedirectionApi(this.osClient, vcContext);
+        assertEquals(1, redirApi.getNetworkElements(ne).size());
+
+        // changed behind the back of the plugin
+        PortChain emptyChain = Builders.portChain().portPairGroups(new ArrayList<>())
+                .flowClassifiers(new ArrayList<>()).build();
+        portChainService.update(portChain.getId(), emptyChain);
+
+        // Act
+        List<NetworkElement> cachedElements = redirApi.getNetworkElements(ne);
+        vcContext.getTopologyFeed().updated(ResourceType.PORT_CHAIN, emptyChain);
+        List<NetworkElement> refreshedElements = redirApi.getNetworkElements(ne);
+
+        // Assert.
+        assertEquals(1, cachedElements.size());
+        assertEquals(portPairGroup.getId(), cachedElements.get(0).getElementId());
+        assertTrue(refreshedElements.isEmpty());
+    }
+
+    @Test
+    public void testPrefetch_LoadsIndexesAndChainView() throws Exception {
+        // Arrange
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+        persistdefaultGatewayPort();
+
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+        DefaultNetworkPort ne = new DefaultNetworkPort();
+        ne.setElementId(portChain.getId());
+
+        VcContext vcContext = withTestListings(new VcContext());
+
+        // Act
+        new TopologyPrefetcher(vcContext).prefetch(new OsCalls(this.osClient, vcContext));
+
+        // Assert.
+        assertEquals(hookId, vcContext.getInspectionHookIndex().getHookId(inspectedPortElement.getElementId(),
+                portChain.getId()));
+        assertEquals(hookId, vcContext.getNameIndex().getId(
+                ResourceNames.flowClassifierName(inspectedPortElement.getElementId(), portChain.getId())));
+
+        // the chain is served from the view, without a request
+        portChainService.update(portChain.getId(), Builders.portChain().portPairGroups(new ArrayList<>())
+                .flowClassifiers(new ArrayList<>()).build());
+        List<NetworkElement> elements = new NeutronSfcSdnRedirectionApi(this.osClient, vcContext)
+                .getNetworkElements(ne);
+        assertEquals(1, elements.size());
+        assertEquals(portPairGroup.getId(), elements.get(0).getElementId());
+    }
+
+    @Test
+    public void testStalenessSampler_StaleChain_IsCountedAndDropped() throws Exception {
+        // Arrange
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        DefaultNetworkPort ne = new DefaultNetworkPort();
+        ne.setElementId(portChain.getId());
+
+        VcContext vcContext = withTestListings(new VcContext());
+        NeutronSfcSdnRedirectionApi redirApi = new NeutronSfcSdnRedirectionApi(this.osClient, vcContext);
+        redirApi.getNetworkElements(ne);
+
+        portChainService.update(portChain.getId(), Builders.portChain().portPairGroups(new ArrayList<>())
+                .flowClassifiers(new ArrayList<>()).build());
+
+        StalenessSampler sampler = vcContext.getStalenessSampler();
+        sampler.setOsCalls(new OsCalls(this.osClient, vcContext));
+
+        // Act
+        sampler.sample();
+
+        // Assert.
+        assertEquals(1, sampler.getSampleCount(ResourceType.PORT_CHAIN));
+        assertEquals(1, sampler.getMismatchCount(ResourceType.PORT_CHAIN));
+        assertTrue(redirApi.getNetworkElements(ne).isEmpty());
+    }
+
+    @Test
+    public void testApi_GetNetworkElementByDeviceOwnerId_VerifySuccessful() throws Exception {
+        // Arrange
+        Port port = portService.create(Builders.port().deviceId("device-1").macAddress(INSPECTED_MAC)
+                .fixedIp(INSPECTED_IP, "mySubnet").build());
+        portService.create(Builders.port().deviceId("device-2").macAddress("aa:aa:aa:aa:aa:02").build());
+
+        // Act
+        NetworkElement element = this.redirApi.getNetworkElementByDeviceOwnerId("device-1");
+
+        // Assert.
+        assertNotNull(element);
+        assertEquals(port.getId(), element.getElementId());
+        assertEquals(asList(INSPECTED_MAC), element.getMacAddresses());
+        assertEquals(asList(INSPECTED_IP), element.getPortIPs());
+        assertNull(this.redirApi.getNetworkElementByDeviceOwnerId("no-such-device"));
+    }
+
+    @Test
+    public void testApi_GetNetworkElementByDeviceOwnerId_ModifiedByCaller_CachedElementUnchanged()
+            throws Exception {
+        // Arrange
+        Port port = portService.create(Builders.port().deviceId("device-1").macAddress(INSPECTED_MAC)
+                .fixedIp(INSPECTED_IP, "mySubnet").build());
+        NetworkElementImpl element = (NetworkElementImpl) this.redirApi.getNetworkElementByDeviceOwnerId("device-1");
+
+        // Act
+        element.setElementId("modified");
+        element.getMacAddresses().add("aa:aa:aa:aa:aa:aa");
+        NetworkElement cached = this.redirApi.getNetworkElementByDeviceOwnerId("device-1");
+
+        // Assert.
+        assertNotSame(element, cached);
+        assertEquals(port.getId(), cached.getElementId());
+        assertEquals(asList(INSPECTED_MAC), cached.getMacAddresses());
+    }
+
+    @Test
+    public void testApi_GetNetworkElementsByDeviceOwnerIds_VerifySuccessful() throws Exception {
+        // Arrange
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            portService.create(Builders.port().deviceId("device-" + i).macAddress("aa:aa:aa:aa:aa:0" + i).build());
+            deviceIds.add("device-" + i);
+        }
+        deviceIds.add("no-such-device");
+
+        // Act
+        Map<String, NetworkElement> elements = this.redirApi.getNetworkElementsByDeviceOwnerIds(deviceIds);
+
+        // Assert.
+        assertEquals(10, elements.size());
+        assertEquals(asList("aa:aa:aa:aa:aa:07"), elements.get("device-7").getMacAddresses());
+        assertFalse(elements.containsKey("no-such-device"));
+    }
+
+    // Recovery tests
+    @Test
+    public void testApi_Recover_RegisterInspectionPort_UngroupedPortPair_IsDeleted() throws Exception {
+        // Arrange.
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        journalUnfinishedOperation("registerInspectionPort", asList(ingressPort.getId(), egressPort.getId(), null),
+                "portPairCreated", portPair.getId());
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNull(portPairService.get(portPair.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_RegisterInspectionPort_PortPairCreatedWithoutStepRecord_IsDeleted()
+            throws Exception {
+        // Arrange.
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        journalUnfinishedOperation("registerInspectionPort", asList(ingressPort.getId(), egressPort.getId(), null));
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNull(portPairService.get(portPair.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_RegisterInspectionPort_PortPairGroupedWithoutStepRecord_IsKept() throws Exception {
+        // Arrange.
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        journalUnfinishedOperation("registerInspectionPort", asList(ingressPort.getId(), egressPort.getId(), null),
+                "portPairCreated", portPair.getId());
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNotNull(portPairService.get(portPair.getId()));
+        assertEquals(asList(portPair.getId()), portPairGroupService.get(portPairGroup.getId()).getPortPairs());
+    }
+
+    @Test
+    public void testApi_Recover_RemoveInspectionPort_PortPairLeft_IsRemoved() throws Exception {
+        // Arrange.
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        journalUnfinishedOperation("removeInspectionPort", asList(portPair.getId(), ingressPort.getId(),
+                egressPort.getId()));
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNull(portPairService.get(portPair.getId()));
+        assertNull(portPairGroupService.get(portPairGroup.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_InstallInspectionHook_ClassifierOutsideChain_IsDeleted() throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        FlowClassifier flowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .logicalDestinationPort(inspectedPort.getId()).build());
+        journalUnfinishedOperation("installInspectionHook", asList(inspectedPort.getId(), portChain.getId()),
+                "flowClassifierCreated", flowClassifier.getId());
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNull(flowClassifierService.get(flowClassifier.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_InstallInspectionHook_ClassifierInChainWithoutStepRecord_IsKept() throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        FlowClassifier flowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .logicalDestinationPort(inspectedPort.getId()).build());
+        portChainService.get(portChain.getId()).getFlowClassifiers().add(flowClassifier.getId());
+        journalUnfinishedOperation("installInspectionHook", asList(inspectedPort.getId(), portChain.getId()),
+                "flowClassifierCreated", flowClassifier.getId());
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNotNull(flowClassifierService.get(flowClassifier.getId()));
+        assertTrue(portChainService.get(portChain.getId()).getFlowClassifiers().contains(flowClassifier.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_InstallInspectionHook_ClassifierCreatedWithoutStepRecord_IsDeleted()
+            throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        FlowClassifier flowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .name(ResourceNames.flowClassifierName(inspectedPort.getId(), portChain.getId()))
+                .logicalDestinationPort(inspectedPort.getId()).build());
+        journalUnfinishedOperation("installInspectionHook", asList(inspectedPort.getId(), portChain.getId()));
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNull(flowClassifierService.get(flowClassifier.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_AggregateInspectionHooks_ChainNotUpdated_NewBlocksAreDeleted() throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        FlowClassifier detached = flowClassifierService.create(Builders.flowClassifier()
+                .destinationIpPrefix("10.4.5.0/24").build());
+        portChainService.get(portChain.getId()).getFlowClassifiers().add(detached.getId());
+        FlowClassifier created = flowClassifierService.create(Builders.flowClassifier()
+                .destinationIpPrefix("10.4.5.0/30").build());
+        journalUnfinishedOperation("aggregateInspectionHooks", asList(portChain.getId(), detached.getId(), ""),
+                "flowClassifiersCreated", created.getId());
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNotNull(flowClassifierService.get(detached.getId()));
+        assertNull(flowClassifierService.get(created.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_AggregateInspectionHooks_BlockCreatedWithoutStepRecord_IsDeleted() throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        String blockName = ResourceNames.aggregateFlowClassifierName(portChain.getId(), "10.4.5.4/30");
+        FlowClassifier created = flowClassifierService.create(Builders.flowClassifier().name(blockName)
+                .destinationIpPrefix("10.4.5.4/30").build());
+        FlowClassifier unrelated = flowClassifierService.create(Builders.flowClassifier().name("unrelated")
+                .destinationIpPrefix("10.4.5.0/30").build());
+        journalUnfinishedOperation("aggregateInspectionHooks", asList(portChain.getId(), "", blockName));
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNull(flowClassifierService.get(created.getId()));
+        assertNotNull(flowClassifierService.get(unrelated.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_AggregateInspectionHooks_ChainUpdatedWithoutStepRecord_DetachedHooksAreDeleted()
+            throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        FlowClassifier detached = flowClassifierService.create(Builders.flowClassifier()
+                .destinationIpPrefix("10.4.5.0/24").build());
+        FlowClassifier created = flowClassifierService.create(Builders.flowClassifier()
+                .destinationIpPrefix("10.4.5.0/30").build());
+        portChainService.get(portChain.getId()).getFlowClassifiers().add(created.getId());
+        journalUnfinishedOperation("aggregateInspectionHooks", asList(portChain.getId(), detached.getId(), ""),
+                "flowClassifiersCreated", created.getId());
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertNull(flowClassifierService.get(detached.getId()));
+        assertNotNull(flowClassifierService.get(created.getId()));
+    }
+
+    @Test
+    public void testApi_Recover_UpdateNetworkElement_ChainClearedWithoutStepRecord_GroupsAreRestored()
+            throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        portChainService.update(portChain.getId(), Builders.portChain().portPairGroups(new ArrayList<>())
+                .flowClassifiers(new ArrayList<>()).build());
+        journalUnfinishedOperation("updateNetworkElement", asList(portChain.getId(), portPairGroup.getId()));
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertEquals(asList(portPairGroup.getId()), portChainService.get(portChain.getId()).getPortPairGroups());
+    }
+
+    @Test
+    public void testApi_Recover_UpdateNetworkElement_ChainNotCleared_IsUnchanged() throws Exception {
+        // Arrange.
+        persistRecoveryPortChain();
+        journalUnfinishedOperation("updateNetworkElement", asList(portChain.getId(), "another-group"));
+
+        // Act.
+        recoverUnfinishedOperations();
+
+        // Assert.
+        assertEquals(asList(portPairGroup.getId()), portChainService.get(portChain.getId()).getPortPairGroups());
+    }
+
+    private void persistRecoveryPortChain() {
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+    }
+
+    /**
+     * Journals an operation which a crash interrupted after the given steps.
+     *
+     * @param steps the names and values of the recorded steps
+     */
+    private void journalUnfinishedOperation(String type, List<String> args, String... steps) throws IOException {
+        OperationJournal journal = new OperationJournal(new File(this.folder.getRoot(), "vc.journal"));
+        OperationJournal.Operation op = journal.begin(type, args.toArray(new String[args.size()]));
+        for (int i = 0; i < steps.length; i += 2) {
+            op.step(steps[i], steps[i + 1]);
+        }
+        journal.close();
+    }
+
+    private void recoverUnfinishedOperations() throws Exception {
+        File file = new File(this.folder.getRoot(), "vc.journal");
+        OperationJournal journal = new OperationJournal(file);
+        new NeutronSfcSdnRedirectionApi(this.osClient, withTestListings(new VcContext(journal)))
+                .recoverUnfinishedOperations();
+        journal.close();
+
+        OperationJournal reopened = new OperationJournal(file);
+        assertTrue("operation left unresolved", reopened.recover().isEmpty());
+        reopened.close();
+    }
+
+    private NetworkElement persistNeighbourPort() {
+        Port neighbourPort = portService.create(Builders.port().macAddress("fa:16:3e:ca:37:39")
+                .fixedIp("10.4.5.7", "mySubnet").build());
+        return constructNetworkElementElement(neighbourPort, null);
+    }
 }
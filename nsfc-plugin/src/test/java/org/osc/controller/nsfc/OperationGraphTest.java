@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.osc.controller.nsfc.utils.OperationGraph;
+import org.osc.controller.nsfc.utils.OsCalls;
+
+public class OperationGraphTest {
+
+    private final OsCalls osCalls = new OsCalls(Mockito.mock(OSClientV3.class));
+
+    @Test
+    public void testOperationGraph_IndependentSteps_RunConcurrently() throws Exception {
+        // Arrange.
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        OperationGraph graph = new OperationGraph(this.osCalls, executor);
+
+        try {
+            // Act.
+            OperationGraph.Step<Boolean> first = graph.step(calls -> meet(bothStarted));
+            OperationGraph.Step<Boolean> second = graph.step(calls -> meet(bothStarted));
+            graph.await();
+
+            // Assert.
+            assertTrue(first.get());
+            assertTrue(second.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOperationGraph_DependentStep_SeesResultsOfDependencies() {
+        // Arrange.
+        OperationGraph graph = new OperationGraph(this.osCalls, Runnable::run);
+        OperationGraph.Step<Integer> left = graph.step(calls -> 2);
+        OperationGraph.Step<Integer> right = graph.step(calls -> 3);
+
+        // Act.
+        OperationGraph.Step<Integer> sum = graph.step(calls -> left.get() + right.get(), left, right);
+
+        // Assert.
+        assertEquals(Integer.valueOf(5), sum.get());
+    }
+
+    @Test
+    public void testOperationGraph_FailedDependency_FailsDependentStepWithoutRunningIt() {
+        // Arrange.
+        OperationGraph graph = new OperationGraph(this.osCalls, Runnable::run);
+        boolean[] ran = new boolean[1];
+        OperationGraph.Step<Object> failing = graph.step(calls -> {
+            throw new IllegalStateException("lookup failed");
+        });
+
+        // Act.
+        OperationGraph.Step<Object> dependent = graph.step(calls -> ran[0] = true, failing);
+
+        // Assert.
+        try {
+            dependent.get();
+            fail("Expected the failure of the dependency");
+        } catch (IllegalStateException e) {
+            assertEquals("lookup failed", e.getMessage());
+        }
+        assertFalse(ran[0]);
+    }
+
+    private static boolean meet(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osc.controller.nsfc.utils.OperationJournal;
+import org.osc.controller.nsfc.utils.OperationJournal.PendingOperation;
+
+public class OperationJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testJournal_Recover_ReturnsOnlyUnfinishedOperations() throws Exception {
+        // Arrange.
+        File file = new File(this.folder.getRoot(), "vc.journal");
+        OperationJournal journal = new OperationJournal(file);
+
+        try (OperationJournal.Operation op = journal.begin("finished", "arg")) {
+            op.step("created", "id-1");
+        }
+
+        // never closed: simulates a crash in the middle of the operation
+        OperationJournal.Operation unfinished = journal.begin("unfinished", "arg\twith\ttabs", null);
+        unfinished.step("created", "id-2");
+        journal.close();
+
+        // Act.
+        OperationJournal reopened = new OperationJournal(file);
+        List<PendingOperation> pending = reopened.recover();
+
+        // Assert.
+        assertEquals(1, pending.size());
+        assertEquals("unfinished", pending.get(0).getType());
+        assertEquals("arg\twith\ttabs", pending.get(0).getArgs().get(0));
+        assertEquals("id-2", pending.get(0).getStep("created"));
+        assertFalse(pending.get(0).hasStep("updated"));
+        reopened.close();
+    }
+
+    @Test
+    public void testJournal_Resolve_OperationNotRecoveredAgain() throws Exception {
+        // Arrange.
+        File file = new File(this.folder.getRoot(), "vc.journal");
+        OperationJournal journal = new OperationJournal(file);
+        journal.begin("unfinished").step("created", "id-1");
+        journal.close();
+
+        OperationJournal reopened = new OperationJournal(file);
+        List<PendingOperation> pending = reopened.recover();
+        assertEquals(1, pending.size());
+
+        // Act.
+        reopened.resolve(pending.get(0));
+        reopened.close();
+
+        // Assert.
+        OperationJournal again = new OperationJournal(file);
+        assertTrue(again.recover().isEmpty());
+        again.close();
+    }
+
+    @Test
+    public void testJournal_Disabled_RecordsNothing() throws Exception {
+        // Arrange.
+        OperationJournal journal = OperationJournal.disabled();
+
+        // Act.
+        try (OperationJournal.Operation op = journal.begin("anything")) {
+            op.step("created", "id-1");
+        }
+
+        // Assert.
+        assertFalse(journal.isEnabled());
+        assertTrue(journal.recover().isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void testJournal_CloseWhileAppending_AppendsReturnOrFail() throws Exception {
+        // Arrange.
+        OperationJournal journal = new OperationJournal(new File(this.folder.getRoot(), "vc.journal"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Runnable appendUntilClosed = () -> {
+            while (true) {
+                journal.begin("concurrent").close();
+            }
+        };
+        List<Future<?>> appends = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            appends.add(executor.submit(appendUntilClosed));
+        }
+
+        // Act.
+        Thread.sleep(50);
+        journal.close();
+
+        // Assert.
+        try {
+            for (Future<?> append : appends) {
+                try {
+                    append.get(10, TimeUnit.SECONDS);
+                    fail("append returned without an error");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
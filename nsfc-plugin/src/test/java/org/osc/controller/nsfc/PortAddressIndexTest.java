@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.TestData.*;
+import static org.osc.controller.nsfc.utils.FilteredListings.FIXED_IPS;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.Port;
+import org.osc.controller.nsfc.utils.FilteredListings;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.PortAddressIndex;
+import org.osc.controller.nsfc.utils.VcContext;
+
+public class PortAddressIndexTest extends AbstractNeutronSfcPluginTest {
+
+    private FilteredListings listings;
+
+    private OsCalls osCalls;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        VcContext vcContext = new VcContext();
+        this.listings = Mockito.spy(filteredListings);
+        vcContext.setFilteredListings(this.listings);
+        this.osCalls = new OsCalls(this.osClient, vcContext);
+    }
+
+    @Test
+    public void testIndex_GetPortsByIp_ListsOnlyTheAddresses() throws Exception {
+        // Arrange.
+        PortAddressIndex index = new PortAddressIndex(60000, 50);
+        for (int i = 0; i < 10; i++) {
+            addPort("10.0.0." + i);
+        }
+
+        // Act.
+        Map<String, Port> portsByIp = index.getPortsByIp(asList("10.0.0.1", "10.0.0.5", "10.0.0.9"), this.osCalls);
+        Map<String, Port> againByIp = index.getPortsByIp(asList("10.0.0.5", "10.0.0.9"), this.osCalls);
+
+        // Assert.
+        assertEquals(3, portsByIp.size());
+        assertEquals("10.0.0.5", portsByIp.get("10.0.0.5").getFixedIps().iterator().next().getIpAddress());
+        assertEquals(2, againByIp.size());
+        Mockito.verify(this.listings).listPorts(Mockito.eq(singletonMap(FIXED_IPS,
+                asList("ip_address=10.0.0.1", "ip_address=10.0.0.5", "ip_address=10.0.0.9"))));
+        Mockito.verifyNoMoreInteractions(this.listings);
+    }
+
+    @Test
+    public void testIndex_GetPortsByIp_ManyAddresses_ListedInChunks() throws Exception {
+        // Arrange.
+        PortAddressIndex index = new PortAddressIndex(60000, 2);
+        for (int i = 0; i < 5; i++) {
+            addPort("10.0.0." + i);
+        }
+
+        // Act.
+        Map<String, Port> portsByIp = index.getPortsByIp(
+                asList("10.0.0.0", "10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4"), this.osCalls);
+
+        // Assert.
+        assertEquals(5, portsByIp.size());
+        Mockito.verify(this.listings, Mockito.times(3)).listPorts(Mockito.anyMap());
+    }
+
+    @Test
+    public void testIndex_GetPortsByIp_ExpiredAddress_ListedAgain() throws Exception {
+        // Arrange.
+        PortAddressIndex index = new PortAddressIndex(0, 50);
+        Port port = addPort("10.0.0.1");
+        index.getPortsByIp(asList("10.0.0.1"), this.osCalls);
+        portService.delete(port.getId());
+        addPort("10.0.0.1");
+
+        // Act.
+        Map<String, Port> portsByIp = index.getPortsByIp(asList("10.0.0.1"), this.osCalls);
+
+        // Assert.
+        assertNotEquals(port.getId(), portsByIp.get("10.0.0.1").getId());
+        Mockito.verify(this.listings, Mockito.times(2)).listPorts(Mockito.anyMap());
+    }
+
+    @Test
+    public void testIndex_GetPortsByIp_UnresolvedAddress_IsNotListedAgain() throws Exception {
+        // Arrange.
+        PortAddressIndex index = new PortAddressIndex(60000, 50);
+        addPort("10.0.0.1");
+        index.getPortsByIp(asList("10.0.0.1", "10.0.0.99"), this.osCalls);
+
+        // Act.
+        Map<String, Port> portsByIp = index.getPortsByIp(asList("10.0.0.1", "10.0.0.99"), this.osCalls);
+
+        // Assert.
+        assertEquals(1, portsByIp.size());
+        assertFalse(portsByIp.containsKey("10.0.0.99"));
+        Mockito.verify(this.listings, Mockito.times(1)).listPorts(Mockito.anyMap());
+    }
+
+    @Test
+    public void testIndex_GetPortsByIp_FilteredListingRefused_ListsAllPorts() throws Exception {
+        // Arrange.
+        PortAddressIndex index = new PortAddressIndex(60000, 50);
+        addPort("10.0.0.1");
+        addPort("10.0.0.2");
+        Mockito.doThrow(new RuntimeException("Bad Request")).when(this.listings)
+                .listPorts(Mockito.anyMap());
+
+        // Act.
+        Map<String, Port> portsByIp = index.getPortsByIp(asList("10.0.0.1", "10.0.0.2"), this.osCalls);
+
+        // Assert.
+        assertEquals(2, portsByIp.size());
+    }
+
+    private static Port addPort(String ipAddress) {
+        return portService.create(Builders.port().fixedIp(ipAddress, "mySubnet").build());
+    }
+}
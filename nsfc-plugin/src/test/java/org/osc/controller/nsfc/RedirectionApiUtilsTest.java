@@ -35,6 +35,7 @@ import org.openstack4j.model.network.ext.PortPairGroup;
 import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.utils.OsCalls;
 import org.osc.controller.nsfc.utils.RedirectionApiUtils;
+import org.osc.controller.nsfc.utils.VcContext;
 
 @RunWith(MockitoJUnitRunner.class)
 public class RedirectionApiUtilsTest extends AbstractNeutronSfcPluginTest {
@@ -48,7 +49,7 @@ public class RedirectionApiUtilsTest extends AbstractNeutronSfcPluginTest {
     public void setup() throws Exception {
         super.setup();
 
-        this.osCalls = new OsCalls(this.osClient);
+        this.osCalls = new OsCalls(this.osClient, withTestListings(new VcContext()));
         this.utils = new RedirectionApiUtils(this.osCalls);
     }
 
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.utils.RequestScheduler.Priority.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+import org.osc.controller.nsfc.utils.RequestScheduler;
+import org.osc.controller.nsfc.utils.RequestScheduler.Priority;
+
+public class RequestSchedulerTest {
+
+    @Test
+    public void testScheduler_MutationOvertakesQueuedBackgroundRead() throws Exception {
+        // Arrange.
+        RequestScheduler scheduler = new RequestScheduler(5, 1);
+        List<Priority> served = new CopyOnWriteArrayList<>();
+        scheduler.acquire(INTERACTIVE);
+
+        Thread background = new Thread(() -> {
+            scheduler.acquire(BACKGROUND);
+            served.add(BACKGROUND);
+        });
+        background.start();
+        while (scheduler.getQueueDepth(BACKGROUND) == 0) {
+            Thread.yield();
+        }
+
+        // Act.
+        scheduler.acquire(MUTATION);
+        served.add(MUTATION);
+        background.join(5000);
+
+        // Assert.
+        assertEquals(asList(MUTATION, BACKGROUND), served);
+        assertEquals(1, scheduler.getRequestCount(BACKGROUND));
+        assertTrue(scheduler.getMaxWaitMillis(BACKGROUND) >= scheduler.getMaxWaitMillis(MUTATION));
+    }
+
+    @Test
+    public void testScheduler_Unlimited_NeverWaits() throws Exception {
+        // Arrange.
+        RequestScheduler scheduler = RequestScheduler.unlimited();
+
+        // Act.
+        for (int i = 0; i < 1000; i++) {
+            scheduler.acquire(BACKGROUND);
+        }
+
+        // Assert.
+        assertEquals(1000, scheduler.getRequestCount(BACKGROUND));
+        assertEquals(0, scheduler.getQueueDepth(BACKGROUND));
+    }
+
+    @Test
+    public void testScheduler_SetRate_ReleasesWaitingRequest() throws Exception {
+        // Arrange.
+        RequestScheduler scheduler = new RequestScheduler(0.01, 1);
+        scheduler.acquire(INTERACTIVE);
+
+        Thread waiting = new Thread(() -> scheduler.acquire(BACKGROUND));
+        waiting.start();
+        while (scheduler.getQueueDepth(BACKGROUND) == 0) {
+            Thread.yield();
+        }
+
+        // Act.
+        scheduler.setRate(0, 1);
+        waiting.join(5000);
+
+        // Assert.
+        assertFalse(waiting.isAlive());
+        assertEquals(1, scheduler.getRequestCount(BACKGROUND));
+        assertEquals(0, scheduler.getQueueDepth(BACKGROUND));
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.osc.controller.nsfc.utils.SingleFlight;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testSingleFlight_ConcurrentIdenticalCalls_ShareOneCall() throws Exception {
+        // Arrange.
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("getPortChain:1", () -> {
+                calls.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return "chain";
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            // Act.
+            Thread releaser = new Thread(() -> {
+                while (singleFlight.getSharedCalls() == 0) {
+                    Thread.yield();
+                }
+                release.countDown();
+            });
+            releaser.start();
+            String follower = singleFlight.execute("getPortChain:1", () -> {
+                calls.incrementAndGet();
+                return "other";
+            });
+
+            // Assert.
+            assertEquals("chain", follower);
+            assertEquals("chain", leader.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+            assertEquals(1, singleFlight.getSharedCalls());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSingleFlight_CompletedCall_IsNotReused() throws Exception {
+        // Arrange.
+        SingleFlight singleFlight = new SingleFlight();
+        singleFlight.execute("listPorts", () -> "first");
+
+        // Act.
+        String result = singleFlight.execute("listPorts", () -> "second");
+
+        // Assert.
+        assertEquals("second", result);
+        assertEquals(0, singleFlight.getSharedCalls());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.ops4j.pax.exam.CoreOptions.*;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openstack4j.api.Apis;
+import org.openstack4j.api.Builders;
+import org.openstack4j.api.networking.ext.ServiceFunctionChainService;
+import org.openstack4j.openstack.OSFactory;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.ops4j.pax.exam.util.PathUtils;
+import org.osc.controller.nsfc.api.NeutronSfcSdnControllerApi;
+import org.osc.sdk.controller.api.SdnControllerApi;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the startup cost of the plugin: the resolve of the openstack4j bundle, the activation of the plugin
+ * component and the class loading of the first openstack4j use.
+ *
+ * The class has its own framework launch, in which the openstack4j and plugin bundles are installed but not
+ * started, so each step is measured from a cold state. The plugin and openstack4j types are only referenced from
+ * nested classes, which are loaded once the bundles are resolved.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class StartupCostIntegrationTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupCostIntegrationTest.class);
+
+    private static final String UBER_BUNDLE = "nsfc-uber-openstack4j";
+    private static final String PLUGIN_BUNDLE = "sdn-controller-nsfc-plugin";
+
+    @Inject
+    BundleContext context;
+
+    @org.ops4j.pax.exam.Configuration
+    public Option[] config() {
+
+        return options(
+                bundle("reference:file:" + PathUtils.getBaseDir() + "/target/classes/").noStart(),
+                mavenBundle("org.osc.plugin", UBER_BUNDLE).versionAsInProject().noStart(),
+
+                mavenBundle("com.fasterxml.jackson.core", "jackson-databind").versionAsInProject(),
+                mavenBundle("com.fasterxml.jackson.core", "jackson-annotations").versionAsInProject(),
+                mavenBundle("com.fasterxml.jackson.core", "jackson-core").versionAsInProject(),
+                mavenBundle("com.fasterxml.jackson.jaxrs", "jackson-jaxrs-base").versionAsInProject(),
+                mavenBundle("com.fasterxml.jackson.jaxrs", "jackson-jaxrs-json-provider").versionAsInProject(),
+                mavenBundle("com.fasterxml", "classmate").versionAsInProject(),
+
+                mavenBundle("org.glassfish.jersey.core", "jersey-client").versionAsInProject(),
+                mavenBundle("org.glassfish.jersey.core", "jersey-common").versionAsInProject(),
+                mavenBundle("org.glassfish.jersey.bundles.repackaged", "jersey-guava").versionAsInProject(),
+                mavenBundle("org.glassfish.hk2", "hk2-api").versionAsInProject(),
+                mavenBundle("org.glassfish.hk2", "hk2-locator").versionAsInProject(),
+                mavenBundle("org.glassfish.hk2", "hk2-utils").versionAsInProject(),
+                mavenBundle("org.glassfish.hk2", "osgi-resource-locator").versionAsInProject(),
+                mavenBundle("javax.annotation", "javax.annotation-api").versionAsInProject(),
+                mavenBundle("org.glassfish.hk2.external", "aopalliance-repackaged").versionAsInProject(),
+                mavenBundle("javax.ws.rs", "javax.ws.rs-api").versionAsInProject(),
+                mavenBundle("org.glassfish.jersey.media", "jersey-media-json-jackson").versionAsInProject(),
+
+                mavenBundle("org.apache.felix", "org.apache.felix.scr").versionAsInProject(),
+
+                mavenBundle("org.osc.api", "sdn-controller-api").versionAsInProject(),
+
+                mavenBundle("org.osgi", "org.osgi.core").versionAsInProject(),
+
+                systemPackage("javax.naming"), systemPackage("javax.annotation"),
+                systemPackage("javax.xml.stream;version=1.0"), systemPackage("javax.xml.stream.events;version=1.0"),
+                systemPackage("javax.xml.stream.util;version=1.0"), systemPackage("javax.transaction;version=1.1"),
+                systemPackage("javax.transaction.xa;version=1.1"),
+
+                mavenBundle("org.javassist", "javassist").versionAsInProject(),
+
+                mavenBundle("org.slf4j", "slf4j-api").versionAsInProject(),
+                mavenBundle("ch.qos.logback", "logback-core").versionAsInProject(),
+                mavenBundle("ch.qos.logback", "logback-classic").versionAsInProject(),
+
+                mavenBundle("org.apache.directory.studio", "org.apache.commons.lang").versionAsInProject(),
+                mavenBundle("com.google.guava","guava").versionAsInProject(),
+
+                bootClasspathLibrary(mavenBundle("org.apache.geronimo.specs", "geronimo-jta_1.1_spec", "1.1.1"))
+                        .beforeFramework(),
+                junitBundles());
+    }
+
+    @Test
+    public void measureStartupCost() throws Exception {
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        Bundle openstack4j = findBundle(UBER_BUNDLE);
+        Bundle plugin = findBundle(PLUGIN_BUNDLE);
+        Assert.assertEquals(Bundle.INSTALLED, openstack4j.getState());
+        Assert.assertEquals(Bundle.INSTALLED, plugin.getState());
+
+        // Resolve of the openstack4j bundle
+        FrameworkWiring frameworkWiring = this.context.getBundle(0).adapt(FrameworkWiring.class);
+        long start = System.nanoTime();
+        Assert.assertTrue(frameworkWiring.resolveBundles(Collections.singleton(openstack4j)));
+        long resolveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        int classCount = 0;
+        Enumeration<?> classes = openstack4j.findEntries("/", "*.class", true);
+        while (classes != null && classes.hasMoreElements()) {
+            classes.nextElement();
+            classCount++;
+        }
+        Set<String> exportedPackages = new HashSet<>();
+        for (BundleCapability export : openstack4j.adapt(BundleWiring.class)
+                .getCapabilities(BundleRevision.PACKAGE_NAMESPACE)) {
+            exportedPackages.add((String) export.getAttributes().get(BundleRevision.PACKAGE_NAMESPACE));
+        }
+
+        // Activation of the plugin component: the plugin bundle is resolved and started, and the component is
+        // activated when the tracker gets the service
+        long loadedBefore = classLoading.getTotalLoadedClassCount();
+        start = System.nanoTime();
+        plugin.start();
+        ServiceTracker<SdnControllerApi, SdnControllerApi> tracker = new ServiceTracker<>(this.context,
+                SdnControllerApi.class, null);
+        tracker.open();
+        try {
+            Assert.assertTrue(Activation.isPluginApi(tracker.waitForService(5000)));
+        } finally {
+            tracker.close();
+        }
+        long activationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long activationClasses = classLoading.getTotalLoadedClassCount() - loadedBefore;
+
+        // First call: building a request and resolving the services it goes through
+        loadedBefore = classLoading.getTotalLoadedClassCount();
+        long metaspaceBefore = metaspaceUsed();
+        start = System.nanoTime();
+        FirstCall.run();
+        long firstCallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long firstCallClasses = classLoading.getTotalLoadedClassCount() - loadedBefore;
+        long firstCallMetaspace = metaspaceUsed() - metaspaceBefore;
+
+        LOG.info("Startup cost: openstack4j bundle {} classes, {} exported packages, resolved in {} ms; activation "
+                + "{} ms, {} classes; first call {} ms, {} classes, {} KB metaspace", classCount,
+                exportedPackages.size(), resolveMillis, activationMillis, activationClasses, firstCallMillis,
+                firstCallClasses, firstCallMetaspace / 1024);
+
+        Assert.assertTrue(exportedPackages.contains("org.openstack4j.openstack.networking.domain.ext"));
+        Assert.assertFalse(exportedPackages.contains("org.openstack4j.openstack.compute.domain"));
+        Assert.assertNull(openstack4j.findEntries("/org/openstack4j/openstack/compute", "*.class", true));
+
+        // The default provider binds the stripped services, so it must not be packaged
+        Assert.assertFalse(exportedPackages.contains("org.openstack4j.openstack.provider"));
+        Assert.assertNull(openstack4j.getEntry("/org/openstack4j/openstack/provider/DefaultAPIProvider.class"));
+        try {
+            openstack4j.loadClass("org.openstack4j.openstack.provider.DefaultAPIProvider");
+            Assert.fail("The openstack4j default provider is loadable");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+
+    private Bundle findBundle(String symbolicName) {
+        for (Bundle bundle : this.context.getBundles()) {
+            if (symbolicName.equals(bundle.getSymbolicName())) {
+                return bundle;
+            }
+        }
+        throw new AssertionError("No bundle " + symbolicName);
+    }
+
+    private static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static final class Activation {
+
+        static boolean isPluginApi(SdnControllerApi api) {
+            return api instanceof NeutronSfcSdnControllerApi;
+        }
+    }
+
+    private static final class FirstCall {
+
+        static void run() {
+            Assert.assertEquals("startup", Builders.portChain().name("startup").build().getName());
+            Assert.assertNotNull(Apis.get(ServiceFunctionChainService.class).portchains());
+            OSFactory.builderV3();
+        }
+    }
+}
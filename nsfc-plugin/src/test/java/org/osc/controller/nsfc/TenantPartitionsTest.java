@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.osc.controller.nsfc.utils.TenantPartitions;
+
+public class TenantPartitionsTest {
+
+    @Test
+    public void testTenantPartitions_Get_CreatesOnePartitionPerProject() {
+        // Arrange.
+        AtomicInteger created = new AtomicInteger();
+        TenantPartitions<StringBuilder> partitions = new TenantPartitions<>(projectId -> {
+            created.incrementAndGet();
+            return new StringBuilder(projectId);
+        });
+
+        // Act.
+        StringBuilder first = partitions.get("tenant-a");
+        StringBuilder again = partitions.get("tenant-a");
+        StringBuilder other = partitions.get("tenant-b");
+        StringBuilder unknown = partitions.get(null);
+
+        // Assert.
+        assertSame(first, again);
+        assertNotSame(first, other);
+        assertEquals(TenantPartitions.UNKNOWN_PROJECT, unknown.toString());
+        assertEquals(3, created.get());
+        assertEquals(3, partitions.size());
+    }
+
+    @Test
+    public void testTenantPartitions_OverMaximum_EvictsLeastRecentlyUsed() throws Exception {
+        // Arrange.
+        TenantPartitions<StringBuilder> partitions = new TenantPartitions<>(StringBuilder::new, 60000, 2);
+        partitions.get("tenant-a");
+        Thread.sleep(5);
+        partitions.get("tenant-b");
+        Thread.sleep(5);
+        partitions.get("tenant-a");
+        Thread.sleep(5);
+
+        // Act.
+        partitions.get("tenant-c");
+
+        // Assert.
+        assertEquals(2, partitions.size());
+        assertNotNull(partitions.peek("tenant-a"));
+        assertNull(partitions.peek("tenant-b"));
+        assertNotNull(partitions.peek("tenant-c"));
+    }
+
+    @Test
+    public void testTenantPartitions_IdlePartition_IsReplacedOnNextUse() throws Exception {
+        // Arrange.
+        TenantPartitions<StringBuilder> partitions = new TenantPartitions<>(StringBuilder::new, 1, 10);
+        StringBuilder first = partitions.get("tenant-a");
+        Thread.sleep(5);
+
+        // Act.
+        StringBuilder second = partitions.get("tenant-a");
+
+        // Assert.
+        assertNotSame(first, second);
+        assertEquals(1, partitions.size());
+    }
+}
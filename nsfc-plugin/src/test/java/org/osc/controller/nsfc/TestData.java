@@ -18,12 +18,15 @@ package org.osc.controller.nsfc;
 
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
+import static org.osc.controller.nsfc.utils.FilteredListings.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.openstack4j.api.Builders;
 import org.openstack4j.api.networking.PortService;
@@ -32,6 +35,7 @@ import org.openstack4j.api.networking.ext.PortChainService;
 import org.openstack4j.api.networking.ext.PortPairGroupService;
 import org.openstack4j.api.networking.ext.PortPairService;
 import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.common.Resource;
 import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
@@ -43,6 +47,7 @@ import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.entities.PortPairElement;
 import org.osc.controller.nsfc.entities.PortPairGroupElement;
 import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.FilteredListings;
 
 class TestData {
 
@@ -87,6 +92,7 @@ class TestData {
     public static PortPairService portPairService;
     public static PortPairGroupService portPairGroupService;
     public static FlowClassifierService flowClassifierService;
+    public static FilteredListings filteredListings;
 
     public static void setupDataObjects() {
         ingressPortElement = new NetworkElementImpl();
@@ -128,6 +134,7 @@ class TestData {
         portPairService = new MockPortPairService();
         portPairGroupService = new MockPortPairGroupService();
         flowClassifierService = new MockFlowClassifierService();
+        filteredListings = new MockFilteredListings();
     }
 
     private static class CRUDMockService<T extends org.openstack4j.model.common.Resource> {
@@ -205,6 +212,65 @@ class TestData {
     private static class MockFlowClassifierService extends CRUDMockService<FlowClassifier> implements FlowClassifierService {
     }
 
+    /**
+     * Filters the objects of the mock services the way Neutron does: an object matches when, for every filter,
+     * it matches one of the values.
+     */
+    private static class MockFilteredListings extends FilteredListings {
+
+        @Override
+        public List<? extends FlowClassifier> listFlowClassifiers(Map<String, ? extends Collection<String>> filters) {
+            return filter(flowClassifierService.list(), filters);
+        }
+
+        @Override
+        public List<? extends PortChain> listPortChains(Map<String, ? extends Collection<String>> filters) {
+            return filter(portChainService.list(), filters);
+        }
+
+        @Override
+        public List<? extends PortPairGroup> listPortPairGroups(Map<String, ? extends Collection<String>> filters) {
+            return filter(portPairGroupService.list(), filters);
+        }
+
+        @Override
+        public List<? extends PortPair> listPortPairs(Map<String, ? extends Collection<String>> filters) {
+            return filter(portPairService.list(), filters);
+        }
+
+        @Override
+        public List<? extends Port> listPorts(Map<String, ? extends Collection<String>> filters) {
+            return filter(portService.list(), filters);
+        }
+
+        private static <T extends Resource> List<T> filter(List<? extends T> resources,
+                Map<String, ? extends Collection<String>> filters) {
+            return resources.stream()
+                    .filter(r -> filters.entrySet().stream()
+                            .allMatch(f -> f.getValue().stream().anyMatch(v -> matches(r, f.getKey(), v))))
+                    .collect(Collectors.toList());
+        }
+
+        private static boolean matches(Resource resource, String filter, String value) {
+            switch (filter) {
+            case PROJECT_ID:
+                return value.equals(resource.getTenantId());
+            case NAME:
+                return value.equals(resource.getName());
+            case INGRESS:
+                return value.equals(((PortPair) resource).getIngressId());
+            case EGRESS:
+                return value.equals(((PortPair) resource).getEgressId());
+            case FIXED_IPS:
+                Port port = (Port) resource;
+                return port.getFixedIps() != null
+                        && port.getFixedIps().stream().anyMatch(ip -> value.equals(ipAddress(ip.getIpAddress())));
+            default:
+                throw new IllegalArgumentException("Unsupported filter " + filter);
+            }
+        }
+    }
+
     static PortPairService mockPortPairService() {
         return new MockPortPairService();
     }
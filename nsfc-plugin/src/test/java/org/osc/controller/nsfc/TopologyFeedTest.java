@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.ext.PortPair;
+import org.osc.controller.nsfc.utils.NegativeCache.ResourceType;
+import org.osc.controller.nsfc.utils.TopologyChange;
+import org.osc.controller.nsfc.utils.TopologyChange.Kind;
+import org.osc.controller.nsfc.utils.TopologyFeed;
+
+public class TopologyFeedTest {
+
+    @Test
+    public void testTopologyFeed_Mutations_ArePublishedInOrder() {
+        // Arrange.
+        TopologyFeed feed = new TopologyFeed("vc");
+        List<TopologyChange> received = new ArrayList<>();
+        feed.addListener(received::add);
+
+        // Act.
+        feed.created(ResourceType.PORT_PAIR, portPair("pp1", "egress1"));
+        feed.deleted(ResourceType.PORT_PAIR, "pp1");
+
+        // Assert.
+        assertEquals(2, received.size());
+        assertEquals(Kind.CREATED, received.get(0).getKind());
+        assertEquals(Kind.DELETED, received.get(1).getKind());
+        assertEquals(1, received.get(0).getSequence());
+        assertEquals(2, received.get(1).getSequence());
+        assertFalse(received.get(0).isExternal());
+        assertEquals("vc", received.get(0).getSource());
+    }
+
+    @Test
+    public void testTopologyFeed_SecondListing_ReportsExternalChanges() {
+        // Arrange.
+        TopologyFeed feed = new TopologyFeed("vc");
+        feed.observeAll(ResourceType.PORT_PAIR, asList(portPair("pp1", "egress1"), portPair("pp2", "egress2")));
+        assertEquals(0, feed.getLatestSequence());
+
+        // Act.
+        feed.observeAll(ResourceType.PORT_PAIR, asList(portPair("pp1", "egress1-moved"), portPair("pp3", "egress3")));
+
+        // Assert.
+        List<TopologyChange> changes = feed.changesSince(0);
+        assertEquals(3, changes.size());
+        for (TopologyChange change : changes) {
+            assertTrue(change.isExternal());
+            switch (change.getResourceId()) {
+            case "pp1":
+                assertEquals(Kind.UPDATED, change.getKind());
+                break;
+            case "pp2":
+                assertEquals(Kind.DELETED, change.getKind());
+                break;
+            default:
+                assertEquals("pp3", change.getResourceId());
+                assertEquals(Kind.CREATED, change.getKind());
+            }
+        }
+    }
+
+    @Test
+    public void testTopologyFeed_OwnMutationThenRead_IsNotReportedAgain() {
+        // Arrange.
+        TopologyFeed feed = new TopologyFeed("vc");
+        PortPair portPair = portPair("pp1", "egress1");
+        feed.created(ResourceType.PORT_PAIR, portPair);
+
+        // Act.
+        feed.observe(ResourceType.PORT_PAIR, "pp1", portPair);
+        feed.observe(ResourceType.PORT_PAIR, "pp1", null);
+
+        // Assert.
+        List<TopologyChange> changes = feed.changesSince(1);
+        assertEquals(1, changes.size());
+        assertEquals(Kind.DELETED, changes.get(0).getKind());
+        assertTrue(changes.get(0).isExternal());
+    }
+
+    @Test
+    public void testTopologyFeed_BeyondCapacity_KeepsLatestChanges() {
+        // Arrange.
+        TopologyFeed feed = new TopologyFeed("vc", 2);
+
+        // Act.
+        for (int i = 0; i < 5; i++) {
+            feed.deleted(ResourceType.PORT_CHAIN, "chain" + i);
+        }
+
+        // Assert.
+        List<TopologyChange> changes = feed.changesSince(0);
+        assertEquals(2, changes.size());
+        assertEquals(4, changes.get(0).getSequence());
+        assertEquals(5, changes.get(1).getSequence());
+    }
+
+    private static PortPair portPair(String id, String egressId) {
+        return Builders.portPair().id(id).ingressId("ingress").egressId(egressId).build();
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osc.controller.nsfc.utils.Span;
+import org.osc.controller.nsfc.utils.Tracer;
+
+public class TracerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTracer_Operation_ExportsSpanTreeAsOtlpJson() throws Exception {
+        // Arrange.
+        File file = new File(this.folder.getRoot(), "traces.json");
+        Tracer tracer = new Tracer(10000, file);
+        Span root;
+
+        // Act.
+        try (Span operation = tracer.start("registerInspectionPort")) {
+            root = operation;
+            try (Span request = Span.child("neutron GET")) {
+                request.setAttribute("url.path", "/v2.0/sfc/port_pairs/\"1\"").setAttribute("result.found", false);
+            }
+            try (Span request = Span.child("neutron DELETE")) {
+                request.setAttribute("http.status_code", 404);
+            }
+        }
+        tracer.close();
+
+        // Assert.
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        String json = lines.get(0);
+        assertTrue(json.startsWith("{\"resourceSpans\":"));
+        assertTrue(json.contains("\"name\":\"registerInspectionPort\""));
+        assertTrue(json.contains("\"parentSpanId\":\"" + root.getSpanId() + "\""));
+        assertTrue(json.contains("\"stringValue\":\"/v2.0/sfc/port_pairs/\\\"1\\\"\""));
+        assertTrue(json.contains("\"boolValue\":false"));
+        assertTrue(json.contains("\"intValue\":\"404\""));
+    }
+
+    @Test
+    public void testSpan_OutsideOperation_RecordsNothing() throws Exception {
+        // Act.
+        try (Span span = Span.child("neutron GET")) {
+            span.setAttribute("url.path", "/v2.0/ports");
+
+            // Assert.
+            assertTrue(span.getAttributes().isEmpty());
+            assertNull(span.getName());
+        }
+    }
+
+    @Test
+    public void testSpan_ChildOnOtherThread_AttachesToPropagatedParent() throws Exception {
+        // Arrange.
+        Tracer tracer = new Tracer();
+
+        try (Span operation = tracer.start("getExpandedNetworkElements")) {
+            // Act.
+            Supplier<Void> call = Span.propagate(() -> {
+                Span.child("neutron GET").close();
+                return null;
+            });
+            Thread worker = new Thread(call::get);
+            worker.start();
+            worker.join(5000);
+
+            // Assert.
+            assertEquals(1, operation.getChildren().size());
+            assertEquals("neutron GET", operation.getChildren().get(0).getName());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.api;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.osc.controller.nsfc.utils.HealthProbe;
+import org.osc.controller.nsfc.utils.RequestScheduler;
+import org.osc.controller.nsfc.utils.VcContext;
+import org.osc.sdk.controller.element.VirtualizationConnectorElement;
+
+/**
+ * In the api package to drive the component life cycle methods.
+ */
+public class NeutronSfcSdnControllerApiTest {
+
+    private NeutronSfcSdnControllerApi api;
+
+    private VirtualizationConnectorElement vc;
+
+    @Before
+    public void setup() throws Exception {
+        this.api = new NeutronSfcSdnControllerApi();
+
+        // nothing listens for Keystone there
+        this.vc = Mockito.mock(VirtualizationConnectorElement.class);
+        Mockito.when(this.vc.getName()).thenReturn("vc");
+        Mockito.when(this.vc.getProviderIpAddress()).thenReturn("127.0.0.1");
+        Mockito.when(this.vc.getProviderUsername()).thenReturn("admin");
+        Mockito.when(this.vc.getProviderPassword()).thenReturn("admin123");
+        Mockito.when(this.vc.getProviderAdminTenantName()).thenReturn("admin");
+        Mockito.when(this.vc.getProviderAdminDomainId()).thenReturn("default");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.api.deactivate();
+    }
+
+    @Test
+    public void testApi_GetHealth_KeystoneUnreachable_ReportsUnhealthy() throws Exception {
+        // Act.
+        HealthProbe.Result result = this.api.getHealth(this.vc, "RegionOne");
+
+        // Assert.
+        assertFalse(result.isHealthy());
+        assertFalse(result.isKeystoneReachable());
+        assertNotNull(result.getError());
+    }
+
+    @Test
+    public void testApi_GetStatus_ServedFromLatestProbe() throws Exception {
+        // Arrange.
+        HealthProbe.Result probed = this.api.getHealth(this.vc, "RegionOne");
+
+        // Act.
+        this.api.getStatus(this.vc, "RegionOne");
+
+        // Assert.
+        assertSame(probed, this.api.getHealth(this.vc, "RegionOne"));
+        assertNotSame(probed, this.api.getHealth(this.vc, "RegionTwo"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_GetHealth_VcWithoutName_VerifyFails() throws Exception {
+        // Act.
+        this.api.getHealth(Mockito.mock(VirtualizationConnectorElement.class), "RegionOne");
+    }
+
+    @Test
+    public void testApi_Modified_AppliedInPlace() throws Exception {
+        // Arrange.
+        this.api.activate(null, config(new HashMap<>()));
+        VcContext vcContext = this.api.getVcContext(this.vc, "RegionOne");
+        RequestScheduler requestScheduler = vcContext.getRequestScheduler();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("read.threads", 3);
+        properties.put("rate.limit.per.second", 5.0);
+        properties.put("staleness.sample.interval.millis", 0L);
+
+        // Act.
+        this.api.modified(null, config(properties));
+
+        // Assert.
+        assertSame(vcContext, this.api.getVcContext(this.vc, "RegionOne"));
+        assertSame(requestScheduler, vcContext.getRequestScheduler());
+        assertEquals(5.0, requestScheduler.getPermitsPerSecond(), 0);
+        ThreadPoolExecutor readExecutor = (ThreadPoolExecutor) vcContext.getReadExecutor();
+        assertEquals(3, readExecutor.getCorePoolSize());
+        assertEquals(3, readExecutor.getMaximumPoolSize());
+        assertFalse(readExecutor.isShutdown());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_Modified_InvalidReadThreads_VerifyFails() throws Exception {
+        // Arrange.
+        this.api.activate(null, config(new HashMap<>()));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("read.threads", 0);
+
+        // Act.
+        this.api.modified(null, config(properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_Activate_NegativeRateLimit_VerifyFails() throws Exception {
+        // Arrange.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("rate.limit.per.second", -1.0);
+
+        // Act.
+        this.api.activate(null, config(properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_Activate_NaNRateLimit_VerifyFails() throws Exception {
+        // Arrange.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("rate.limit.per.second", Double.NaN);
+
+        // Act.
+        this.api.activate(null, config(properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_Modified_InvalidRateLimitBurst_VerifyFails() throws Exception {
+        // Arrange.
+        this.api.activate(null, config(new HashMap<>()));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("rate.limit.burst", 0);
+
+        // Act.
+        this.api.modified(null, config(properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_Modified_NegativeCacheTtl_VerifyFails() throws Exception {
+        // Arrange.
+        this.api.activate(null, config(new HashMap<>()));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("negative.cache.ttl.millis", -1L);
+
+        // Act.
+        this.api.modified(null, config(properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_Modified_NegativeChainViewTtl_VerifyFails() throws Exception {
+        // Arrange.
+        this.api.activate(null, config(new HashMap<>()));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("chain.view.ttl.millis", -1L);
+
+        // Act.
+        this.api.modified(null, config(properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApi_Modified_MismatchThresholdAboveOne_VerifyFails() throws Exception {
+        // Arrange.
+        this.api.activate(null, config(new HashMap<>()));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("staleness.mismatch.threshold", 1.5);
+
+        // Act.
+        this.api.modified(null, config(properties));
+    }
+
+    @Test
+    public void testDefaults_MatchConfigDefaults() throws Exception {
+        for (Method method : ControllerConfig.class.getDeclaredMethods()) {
+            // Act.
+            Object value = method.invoke(ControllerDefaults.CONFIG);
+
+            // Assert.
+            assertEquals(method.getName(), method.getDefaultValue(), value);
+        }
+    }
+
+    /**
+     * @return the configuration as DS builds it, with the properties named after the methods and the defaults
+     * of the methods
+     */
+    private static ControllerConfig config(Map<String, Object> properties) {
+        return (ControllerConfig) Proxy.newProxyInstance(ControllerConfig.class.getClassLoader(),
+                new Class<?>[] { ControllerConfig.class }, (proxy, method, args) -> {
+                    Object value = properties.get(method.getName().replace('_', '.'));
+                    return value != null ? value : method.getDefaultValue();
+                });
+    }
+}
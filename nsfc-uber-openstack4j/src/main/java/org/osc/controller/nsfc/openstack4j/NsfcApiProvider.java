@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.openstack4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openstack4j.api.APIProvider;
+import org.openstack4j.api.exceptions.ApiNotFoundException;
+import org.openstack4j.api.identity.v3.IdentityService;
+import org.openstack4j.api.identity.v3.TokenService;
+import org.openstack4j.api.networking.NetworkingService;
+import org.openstack4j.api.networking.PortService;
+import org.openstack4j.api.networking.ext.FlowClassifierService;
+import org.openstack4j.api.networking.ext.PortChainService;
+import org.openstack4j.api.networking.ext.PortPairGroupService;
+import org.openstack4j.api.networking.ext.PortPairService;
+import org.openstack4j.api.networking.ext.ServiceFunctionChainService;
+import org.openstack4j.openstack.identity.v3.internal.IdentityServiceImpl;
+import org.openstack4j.openstack.identity.v3.internal.TokenServiceImpl;
+import org.openstack4j.openstack.networking.internal.NetworkingServiceImpl;
+import org.openstack4j.openstack.networking.internal.PortServiceImpl;
+import org.openstack4j.openstack.networking.internal.ext.FlowClassifierServiceImpl;
+import org.openstack4j.openstack.networking.internal.ext.PortChainServiceImpl;
+import org.openstack4j.openstack.networking.internal.ext.PortPairGroupServiceImpl;
+import org.openstack4j.openstack.networking.internal.ext.PortPairServiceImpl;
+import org.openstack4j.openstack.networking.internal.ext.ServiceFunctionChainServiceImpl;
+
+/**
+ * Binds only the openstack4j services used by the plugin: identity v3, networking ports and the SFC extension.
+ *
+ * Registered through META-INF/services in place of the openstack4j default provider, which binds every
+ * service of every project. The default provider is stripped from this bundle with the implementation
+ * packages it refers to.
+ */
+public class NsfcApiProvider implements APIProvider {
+
+    private final Map<Class<?>, Class<?>> bindings = new HashMap<>();
+    private final Map<Class<?>, Object> instances = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() {
+        bind(IdentityService.class, IdentityServiceImpl.class);
+        bind(TokenService.class, TokenServiceImpl.class);
+        bind(NetworkingService.class, NetworkingServiceImpl.class);
+        bind(PortService.class, PortServiceImpl.class);
+        bind(ServiceFunctionChainService.class, ServiceFunctionChainServiceImpl.class);
+        bind(FlowClassifierService.class, FlowClassifierServiceImpl.class);
+        bind(PortChainService.class, PortChainServiceImpl.class);
+        bind(PortPairService.class, PortPairServiceImpl.class);
+        bind(PortPairGroupService.class, PortPairGroupServiceImpl.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(Class<T> api) {
+        Object instance = this.instances.get(api);
+        if (instance != null) {
+            return (T) instance;
+        }
+
+        Class<?> impl = this.bindings.get(api);
+        if (impl == null) {
+            throw new ApiNotFoundException("API Not found for: " + api.getName()
+                    + ", it is not included in the nsfc openstack4j bundle");
+        }
+
+        try {
+            instance = impl.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new ApiNotFoundException("API Not found for: " + api.getName(), e);
+        }
+        Object previous = this.instances.putIfAbsent(api, instance);
+        return (T) (previous != null ? previous : instance);
+    }
+
+    private void bind(Class<?> api, Class<?> impl) {
+        this.bindings.put(api, impl);
+    }
+}